@@ -11,6 +11,22 @@ LARROW : '<-';
 
 IN : 'in';
 
+FOR : 'for';
+
+SOLVE : 'solve';
+
+GIVEN : 'given';
+
+REPEAT : 'repeat';
+
+ROUNDS : 'rounds';
+
+THEN : 'then';
+
+UNTIL : 'until';
+
+RANGE : '..';
+
 NUMBER : [0-9]+;
 
 TRUE : 'true';
@@ -44,6 +60,8 @@ COLON : ':';
 
 COMMA : ',';
 
+AT : '@';
+
 // Relation symbols
 LT : '<';
 
@@ -12,10 +12,20 @@ jsim
 statement
     : expression
     | definition
+    | sweep
+    | solve
     ;
 
 definition
-    : DEFINE IDENTIFIER EQ definitionBody
+    : DEFINE identifier EQ definitionBody
+    ;
+
+sweep
+    : FOR identifier IN NUMBER RANGE NUMBER COLON expression
+    ;
+
+solve
+    : SOLVE identifier IN NUMBER RANGE NUMBER COLON expression AT NUMBER MOD
     ;
 
 definitionBody
@@ -39,7 +49,9 @@ expression
     | expression (LT|GT|LTE|GTE|EQ) expression
     | expression AND expression
     | expression OR expression
+    | expression GIVEN expression
     | letExpression
+    | repeatExpression
     | multiplicativeTerm
     | reference
     | literal
@@ -54,7 +66,11 @@ literal
     ;
 
 letExpression
-    : LET IDENTIFIER LARROW expression IN expression
+    : LET identifier LARROW expression IN expression
+    ;
+
+repeatExpression
+    : (REPEAT|ROUNDS) identifier LARROW expression THEN expression UNTIL expression
     ;
 
 multiplicativeTerm
@@ -62,7 +78,19 @@ multiplicativeTerm
     ;
 
 reference
+    : identifier
+    ;
+
+// Keywords added after the first release can still be used as identifiers, so that older scripts keep parsing
+identifier
     : IDENTIFIER
+    | FOR
+    | SOLVE
+    | GIVEN
+    | REPEAT
+    | ROUNDS
+    | THEN
+    | UNTIL
     ;
 
 booleanLiteral
@@ -79,6 +107,6 @@ dimension
     ;
 
 dimensionValue
-    : IDENTIFIER
+    : identifier
     | NUMBER
     ;
@@ -1,48 +1,137 @@
 package ca.mbarkley.jsim;
 
 import ca.mbarkley.jsim.cli.BatchProcessor;
+import ca.mbarkley.jsim.cli.JsonLinesProcessor;
+import ca.mbarkley.jsim.cli.JsonRequestHandler;
+import ca.mbarkley.jsim.cli.MatrixProcessor;
+import ca.mbarkley.jsim.cli.Server;
 import ca.mbarkley.jsim.cli.TerminalProcessor;
+import ca.mbarkley.jsim.cli.WatchProcessor;
+import ca.mbarkley.jsim.eval.CoalescingEvaluator;
+import ca.mbarkley.jsim.eval.DiskCache;
+import ca.mbarkley.jsim.eval.EvaluationBudget;
+import ca.mbarkley.jsim.eval.Planner;
+import ca.mbarkley.jsim.eval.ResultCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.cli.*;
-import org.jline.terminal.Terminal;
-import org.jline.terminal.TerminalBuilder;
 
 import java.io.Console;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
 
 public class Main {
 
     public static final int DESIRED_WIDTH = 120;
+    public static final int DEFAULT_PORT = 7878;
+    public static final int SERVER_CACHE_SIZE = 4096;
+    public static final long DEFAULT_DISK_CACHE_MEGABYTES = 256;
 
     public static void main(String[] args) throws IOException {
         try {
             final CommandLine commandLine = parseCommandLine(args);
+            final EvaluationBudget budget = budget(commandLine);
+            final Planner planner = planner(commandLine);
+            final DiskCache diskCache = diskCache(commandLine);
+            final int top = commandLine.hasOption("top") ? Integer.parseInt(commandLine.getOptionValue("top")) : 0;
 
-            if (commandLine.hasOption("c")) {
+            if (commandLine.hasOption("matrix")) {
+                final MatrixProcessor matrix = new MatrixProcessor(budget, planner, "csv".equals(commandLine.getOptionValue("matrix", "table")));
+                if (commandLine.hasOption("c")) {
+                    matrix.process(String.join(" ", commandLine.getArgs()));
+                } else {
+                    matrix.process(System.in);
+                }
+            } else if (commandLine.hasOption("c")) {
                 final String input = String.join(" ", commandLine.getArgs());
                 if (input.isEmpty()) {
                     System.err.println("No script specified with '-c' flag");
                 }
 
-                new BatchProcessor(DESIRED_WIDTH).process(input);
+                new BatchProcessor(DESIRED_WIDTH, commandLine.hasOption("profile"), commandLine.hasOption("stats"), top, budget, planner, diskCache).process(input);
             } else {
                 final Console console = System.console();
-                if (console != null) {
-                    new TerminalProcessor().process(TerminalBuilder.builder()
-                                                                   .name("jsim")
-                                                                   .jna(true)
-                                                                   .build());
+                final int workers = commandLine.hasOption("workers") ?
+                        Integer.parseInt(commandLine.getOptionValue("workers")) :
+                        Runtime.getRuntime().availableProcessors();
+                if (workers < 1) {
+                    throw new ParseException("Number of workers must be positive");
+                }
+                if (commandLine.hasOption("f")) {
+                    final List<Path> files = Arrays.stream(commandLine.getOptionValues("f"))
+                                                   .map(Paths::get)
+                                                   .collect(toList());
+                    new WatchProcessor(DESIRED_WIDTH, budget, planner, new PrintWriter(System.out, true)).watch(files);
+                } else if (commandLine.hasOption("serve")) {
+                    final ObjectMapper mapper = new ObjectMapper();
+                    final ResultCache resultCache = new ResultCache(SERVER_CACHE_SIZE);
+                    final int port = Integer.parseInt(commandLine.getOptionValue("serve", String.valueOf(DEFAULT_PORT)));
+                    final CoalescingEvaluator coalescer = new CoalescingEvaluator();
+                    final JsonRequestHandler handler = new JsonRequestHandler(mapper, budget, planner, resultCache, coalescer);
+                    final Server server = new Server(port, workers, mapper, handler, resultCache, coalescer);
+                    server.start();
+                    System.err.printf("Listening on http://localhost:%d\n", server.getPort());
+                } else if (commandLine.hasOption("jsonl")) {
+                    final ObjectMapper mapper = new ObjectMapper();
+                    new JsonLinesProcessor(new JsonRequestHandler(mapper, budget, planner), mapper, workers, commandLine.hasOption("ordered"))
+                            .process(System.in, System.out);
+                } else if (commandLine.hasOption("stream")) {
+                    new BatchProcessor(DESIRED_WIDTH, commandLine.hasOption("profile"), commandLine.hasOption("stats"), top, budget, planner, diskCache).processStreaming(System.in);
+                } else if (console != null) {
+                    new TerminalProcessor(budget, planner, commandLine.hasOption("progressive")).process();
                 } else {
-                    new BatchProcessor(DESIRED_WIDTH).process(System.in);
+                    new BatchProcessor(DESIRED_WIDTH, commandLine.hasOption("profile"), commandLine.hasOption("stats"), top, budget, planner, diskCache).process(System.in);
                 }
             }
 
-        } catch (ParseException e) {
+        } catch (ParseException | NumberFormatException e) {
             System.err.printf("Invalid arguments: %s\n", e.getMessage());
             System.exit(1);
         }
 
     }
 
+    private static DiskCache diskCache(CommandLine commandLine) {
+        if (commandLine.hasOption("cache-dir")) {
+            final long maxMegabytes = commandLine.hasOption("cache-size") ?
+                    Long.parseLong(commandLine.getOptionValue("cache-size")) :
+                    DEFAULT_DISK_CACHE_MEGABYTES;
+            return new DiskCache(Paths.get(commandLine.getOptionValue("cache-dir")), maxMegabytes * 1024 * 1024);
+        } else {
+            return DiskCache.NONE;
+        }
+    }
+
+    private static Planner planner(CommandLine commandLine) {
+        final double tolerance = commandLine.hasOption("accuracy") ?
+                Double.parseDouble(commandLine.getOptionValue("accuracy")) :
+                0.0;
+        final double approximationThreshold = commandLine.hasOption("approximate-above") ?
+                Double.parseDouble(commandLine.getOptionValue("approximate-above")) :
+                Planner.DEFAULT_APPROXIMATION_THRESHOLD;
+
+        return new Planner(tolerance, approximationThreshold);
+    }
+
+    private static EvaluationBudget budget(CommandLine commandLine) {
+        final long maxTimeMillis = commandLine.hasOption("max-time") ?
+                Long.parseLong(commandLine.getOptionValue("max-time")) :
+                EvaluationBudget.DEFAULT_MAX_TIME_MILLIS;
+        final long maxMemoryBytes = commandLine.hasOption("max-memory") ?
+                Long.parseLong(commandLine.getOptionValue("max-memory")) * 1024 * 1024 :
+                Runtime.getRuntime().maxMemory();
+        final EvaluationBudget.Overrun overrun = commandLine.hasOption("sample-on-overrun") ?
+                EvaluationBudget.Overrun.SAMPLE :
+                EvaluationBudget.Overrun.REJECT;
+
+        return new EvaluationBudget(maxTimeMillis, maxMemoryBytes, overrun, EvaluationBudget.DEFAULT_SAMPLES);
+    }
+
     private static CommandLine parseCommandLine(String[] args) throws ParseException {
         final Options options = options();
         final CommandLineParser argParser = new DefaultParser();
@@ -59,6 +148,102 @@ public class Main {
                                    .build());
 
         options.addOptionGroup(inputGroup);
+        options.addOption(Option.builder("f")
+                                .longOpt("watch")
+                                .argName("file")
+                                .hasArg()
+                                .desc("evaluate a script file, and again whenever it changes, recomputing only what changed (may be repeated)")
+                                .build());
+        options.addOption(Option.builder()
+                                .longOpt("stream")
+                                .desc("evaluate statements from standard input as they arrive instead of reading the whole script first")
+                                .build());
+        options.addOption(Option.builder()
+                                .longOpt("jsonl")
+                                .desc("read one JSON request per line from standard input and write one JSON response per line")
+                                .build());
+        options.addOption(Option.builder()
+                                .longOpt("serve")
+                                .argName("port")
+                                .hasArg()
+                                .optionalArg(true)
+                                .desc("serve JSON requests over HTTP on the loopback interface (default port " + DEFAULT_PORT + ")")
+                                .build());
+        options.addOption(Option.builder()
+                                .longOpt("workers")
+                                .argName("count")
+                                .hasArg()
+                                .desc("number of requests evaluated concurrently in JSON lines or server mode (defaults to the number of processors)")
+                                .build());
+        options.addOption(Option.builder()
+                                .longOpt("ordered")
+                                .desc("write JSON lines responses in the order of their requests instead of as they complete")
+                                .build());
+        options.addOption(Option.builder()
+                                .longOpt("profile")
+                                .desc("print per-node evaluation statistics after each result")
+                                .build());
+        options.addOption(Option.builder()
+                                .longOpt("stats")
+                                .desc("print the mean, standard deviation, skewness and kurtosis of each statement instead of its histogram")
+                                .build());
+        options.addOption(Option.builder()
+                                .longOpt("top")
+                                .argName("count")
+                                .hasArg()
+                                .desc("print only this many of the most likely outcomes of each statement, found without computing its whole distribution")
+                                .build());
+        options.addOption(Option.builder()
+                                .longOpt("matrix")
+                                .argName("format")
+                                .hasArg()
+                                .optionalArg(true)
+                                .desc("compare every pair of statements, printing P(A > B), P(A = B) and stochastic dominance as a table or csv (default table)")
+                                .build());
+        options.addOption(Option.builder()
+                                .longOpt("progressive")
+                                .desc("in the repl, show a sampled histogram right away and redraw it until the exact result is ready")
+                                .build());
+        options.addOption(Option.builder()
+                                .longOpt("max-time")
+                                .argName("milliseconds")
+                                .hasArg()
+                                .desc(String.format("reject statements expected to take longer than this to evaluate, default %d", EvaluationBudget.DEFAULT_MAX_TIME_MILLIS))
+                                .build());
+        options.addOption(Option.builder()
+                                .longOpt("max-memory")
+                                .argName("megabytes")
+                                .hasArg()
+                                .desc("reject statements expected to need more memory than this (defaults to the maximum heap size)")
+                                .build());
+        options.addOption(Option.builder()
+                                .longOpt("accuracy")
+                                .argName("tolerance")
+                                .hasArg()
+                                .desc("allow sampling sub-expressions when it is cheaper, keeping each probability within this absolute error with 95% confidence (e.g. 0.01)")
+                                .build());
+        options.addOption(Option.builder()
+                                .longOpt("approximate-above")
+                                .argName("support")
+                                .hasArg()
+                                .desc(String.format("approximate sums of dice with more possible outcomes than this from their cumulants (Edgeworth expansion), default %.0f", Planner.DEFAULT_APPROXIMATION_THRESHOLD))
+                                .build());
+        options.addOption(Option.builder()
+                                .longOpt("cache-dir")
+                                .argName("directory")
+                                .hasArg()
+                                .desc("reuse exact results from earlier runs stored in this directory, and store new ones there")
+                                .build());
+        options.addOption(Option.builder()
+                                .longOpt("cache-size")
+                                .argName("megabytes")
+                                .hasArg()
+                                .desc("delete the least recently used results when the cache directory grows beyond this size (default " + DEFAULT_DISK_CACHE_MEGABYTES + ")")
+                                .build());
+        options.addOption(Option.builder()
+                                .longOpt("sample-on-overrun")
+                                .desc("approximate statements that exceed the time or memory budget by sampling instead of rejecting them")
+                                .build());
         return options;
     }
 }
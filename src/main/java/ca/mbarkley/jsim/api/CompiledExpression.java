@@ -0,0 +1,76 @@
+package ca.mbarkley.jsim.api;
+
+import ca.mbarkley.jsim.eval.EvaluationBudget;
+import ca.mbarkley.jsim.eval.Planner;
+import ca.mbarkley.jsim.eval.ProgressiveEvaluation;
+import ca.mbarkley.jsim.model.EvaluationMonitor;
+import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.model.Type;
+import ca.mbarkley.jsim.prob.Distribution;
+
+/**
+ * A parsed expression that can be evaluated repeatedly and from any thread. Exact distributions are computed on
+ * first use and then reused, while approximate distributions are sampled again on every call.
+ */
+public final class CompiledExpression<T extends Comparable<T>> {
+    private final Expression<T> expression;
+    private final EvaluationBudget budget;
+    private final Planner planner;
+    private volatile Distribution<T> exactDistribution;
+
+    CompiledExpression(Expression<T> expression, EvaluationBudget budget, Planner planner) {
+        this.expression = expression;
+        this.budget = budget;
+        this.planner = planner;
+    }
+
+    public Type<T> getType() {
+        return expression.getType();
+    }
+
+    /**
+     * @throws ca.mbarkley.jsim.eval.EvaluationException.BudgetExceededException If the expression cannot be
+     * evaluated within the budget of the {@link JSim} instance that compiled it.
+     */
+    public Distribution<T> distribution() {
+        final Distribution<T> cached = exactDistribution;
+        if (cached != null) {
+            return cached;
+        }
+
+        synchronized (this) {
+            if (exactDistribution != null) {
+                return exactDistribution;
+            }
+
+            final EvaluationBudget.Result<T> result = budget.calculateResults(expression, EvaluationMonitor.NONE, planner);
+            final Distribution<T> distribution = Distribution.of(result.getResults());
+            if (!result.isSampled()) {
+                exactDistribution = distribution;
+            }
+
+            return distribution;
+        }
+    }
+
+    /**
+     * Starts evaluating in the background. The returned evaluation publishes sampled estimates as they sharpen,
+     * followed by the exact distribution if it fits the budget.
+     */
+    public ProgressiveEvaluation<T> progressive() {
+        return ProgressiveEvaluation.start(expression, budget, planner);
+    }
+
+    /**
+     * @return The probability of the given value, which must be of this expression's type.
+     */
+    @SuppressWarnings("unchecked")
+    public double probabilityOf(Object value) {
+        return distribution().probabilityOf((T) value);
+    }
+
+    @Override
+    public String toString() {
+        return expression.toString();
+    }
+}
@@ -0,0 +1,14 @@
+package ca.mbarkley.jsim.api;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * An immutable, parsed script holding one {@link CompiledExpression} per expression statement.
+ */
+@Value
+public class CompiledScript {
+    String source;
+    List<CompiledExpression<?>> expressions;
+}
@@ -0,0 +1,106 @@
+package ca.mbarkley.jsim.api;
+
+import ca.mbarkley.jsim.eval.Evaluation;
+import ca.mbarkley.jsim.eval.EvaluationBudget;
+import ca.mbarkley.jsim.eval.EvaluationException;
+import ca.mbarkley.jsim.eval.EvaluationException.InvalidSyntaxException;
+import ca.mbarkley.jsim.eval.LexicalScope;
+import ca.mbarkley.jsim.eval.Parser;
+import ca.mbarkley.jsim.eval.Planner;
+import ca.mbarkley.jsim.model.Expression;
+import org.antlr.v4.runtime.RecognitionException;
+
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.String.format;
+import static java.util.stream.Collectors.toUnmodifiableList;
+
+/**
+ * Entry point for embedding jsim in other applications. Scripts are compiled once into {@link CompiledScript}
+ * handles, which can then be evaluated any number of times without parsing again.
+ * <pre><code>
+ *     final JSim jsim = JSim.create().define("define attack = d20 + 5");
+ *     final CompiledExpression&lt;?&gt; hit = jsim.compileExpression("attack >= 15");
+ *     final double p = hit.probabilityOf(true);
+ * </code></pre>
+ * Instances are immutable and thread-safe: methods that change settings or add definitions return new instances.
+ */
+public final class JSim {
+    private final LexicalScope scope;
+    private final EvaluationBudget budget;
+    private final Planner planner;
+
+    private JSim(LexicalScope scope, EvaluationBudget budget, Planner planner) {
+        this.scope = scope;
+        this.budget = budget;
+        this.planner = planner;
+    }
+
+    /**
+     * @return An instance with no definitions that evaluates exactly, except for approximating very large sums of dice,
+     * within the memory available to the JVM.
+     */
+    public static JSim create() {
+        return new JSim(new LexicalScope(Map.of()), EvaluationBudget.forAvailableMemory(), Planner.DEFAULT);
+    }
+
+    public JSim withBudget(EvaluationBudget budget) {
+        return new JSim(scope, budget, planner);
+    }
+
+    public JSim withPlanner(Planner planner) {
+        return new JSim(scope, budget, planner);
+    }
+
+    /**
+     * @return An instance that also has the definitions in the given script, for use by later compiled scripts.
+     * @throws ca.mbarkley.jsim.eval.EvaluationException If the script is invalid, or has statements other than
+     * definitions.
+     */
+    public JSim define(String definitions) {
+        final Evaluation eval = parse(definitions);
+        if (!eval.getStatements().isEmpty()) {
+            throw new EvaluationException(format("Only definitions are supported by define, but found [%s]", eval.getStatements().get(0)));
+        }
+
+        return new JSim(eval.getContext(), budget, planner);
+    }
+
+    /**
+     * @throws ca.mbarkley.jsim.eval.EvaluationException If the script is invalid, or has sweep or solve statements.
+     */
+    public CompiledScript compile(String script) {
+        final List<CompiledExpression<?>> expressions = parse(script).getOnlyExpressions("by the API")
+                                                                     .stream()
+                                                                     .map(this::compiled)
+                                                                     .collect(toUnmodifiableList());
+
+        return new CompiledScript(script, expressions);
+    }
+
+    /**
+     * @return The last expression in the given script.
+     * @throws ca.mbarkley.jsim.eval.EvaluationException If the script is invalid or has no expressions.
+     */
+    public CompiledExpression<?> compileExpression(String script) {
+        final List<CompiledExpression<?>> expressions = compile(script).getExpressions();
+        if (expressions.isEmpty()) {
+            throw new EvaluationException(format("Script has no expressions: [%s]", script));
+        }
+
+        return expressions.get(expressions.size() - 1);
+    }
+
+    private <T extends Comparable<T>> CompiledExpression<T> compiled(Expression<T> expression) {
+        return new CompiledExpression<>(expression, budget, planner);
+    }
+
+    private Evaluation parse(String script) {
+        try {
+            return new Parser().parse(scope, script);
+        } catch (RecognitionException re) {
+            throw new InvalidSyntaxException(re.getOffendingToken().getLine(), re.getOffendingToken().getCharPositionInLine(), re);
+        }
+    }
+}
@@ -1,39 +1,91 @@
 package ca.mbarkley.jsim.cli;
 
+import ca.mbarkley.jsim.eval.BestFirstEnumerator;
+import ca.mbarkley.jsim.eval.DiskCache;
+import ca.mbarkley.jsim.eval.Evaluation;
+import ca.mbarkley.jsim.eval.EvaluationBudget;
+import ca.mbarkley.jsim.eval.EvaluationException;
+import ca.mbarkley.jsim.eval.LexicalScope;
 import ca.mbarkley.jsim.eval.Parser;
+import ca.mbarkley.jsim.eval.Planner;
+import ca.mbarkley.jsim.eval.Profiler;
+import ca.mbarkley.jsim.eval.Solve;
+import ca.mbarkley.jsim.eval.Statement;
+import ca.mbarkley.jsim.eval.StatisticsCalculator;
+import ca.mbarkley.jsim.eval.Sweep;
+import ca.mbarkley.jsim.eval.SweepEvaluator;
+import ca.mbarkley.jsim.model.EvaluationMonitor;
 import ca.mbarkley.jsim.model.Expression;
 import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Token;
 import org.apache.commons.io.IOUtils;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.List;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
 
 public class BatchProcessor {
     private final int desiredWidth;
+    private final boolean profile;
+    private final StatisticsCalculator statistics;
+    private final int top;
+    private final EvaluationBudget budget;
+    private final Planner planner;
+    private final DiskCache cache;
     private final Parser parser;
     private final Displayer displayer;
+    private final Statement.Visitor printer = new Statement.Visitor() {
+        @Override
+        public void visitExpression(Expression<?> expression) {
+            printResults(expression);
+        }
+
+        @Override
+        public void visitSweep(Sweep sweep) {
+            printSweep(sweep);
+        }
+
+        @Override
+        public void visitSolve(Solve solve) {
+            printSolution(solve);
+        }
+    };
 
     public BatchProcessor(int desiredWidth) {
+        this(desiredWidth, false, false, 0, EvaluationBudget.UNLIMITED, Planner.EXACT, DiskCache.NONE);
+    }
+
+    /**
+     * @param stats Print summary statistics of each statement instead of its histogram.
+     * @param top If positive, print only this many of the most likely outcomes of each statement.
+     */
+    public BatchProcessor(int desiredWidth, boolean profile, boolean stats, int top, EvaluationBudget budget, Planner planner, DiskCache cache) {
         this.desiredWidth = desiredWidth;
+        this.profile = profile;
+        this.statistics = stats ? new StatisticsCalculator(budget, planner) : null;
+        this.top = top;
+        this.budget = budget;
+        this.planner = planner;
+        this.cache = cache;
         parser = new Parser();
         displayer = new Displayer(() -> desiredWidth);
     }
 
     public void process(String input) {
         try {
-            final List<Expression<?>> stmts = parser.parse(input).getExpressions();
-            for (var stmt : stmts) {
-                final String cleanInput = stmt.toString();
-                final String sortedHistogram = displayer.createSortedHistogram(cleanInput, stmt.calculateResults()
-                                                                                               .values()
-                                                                                               .stream());
-
-                System.out.print(sortedHistogram);
+            final Evaluation eval = parser.parse(input);
+            for (var stmt : eval.getStatements()) {
+                stmt.accept(printer);
             }
         } catch (RecognitionException re) {
             System.err.printf("Invalid symbol: line %d, position %d\n", re.getOffendingToken().getLine(), re.getOffendingToken().getCharPositionInLine());
             System.exit(1);
+        } catch (EvaluationException ee) {
+            System.err.println(ee.getMessage());
+            System.exit(1);
         }
     }
 
@@ -45,4 +97,69 @@ public class BatchProcessor {
             System.exit(1);
         }
     }
+
+    /**
+     * Evaluates each statement as soon as it has been read, printing its results before reading the next one.
+     * Definitions are carried forward from one statement to the next.
+     */
+    public void processStreaming(InputStream in) {
+        final StatementReader reader = new StatementReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+        LexicalScope scope = new LexicalScope(Map.of());
+        StatementReader.Statement statement = null;
+        try {
+            for (var next = reader.next(); next.isPresent(); next = reader.next()) {
+                statement = next.get();
+                final Evaluation eval = parser.parse(scope, statement.getText());
+                scope = eval.getContext();
+                for (var stmt : eval.getStatements()) {
+                    stmt.accept(printer);
+                }
+                System.out.flush();
+            }
+        } catch (IOException e) {
+            System.err.printf("Error reading input: %s\n", e.getMessage());
+            System.exit(1);
+        } catch (RecognitionException re) {
+            final Token token = re.getOffendingToken();
+            final int position = token.getLine() == 1 ? statement.getColumn() + token.getCharPositionInLine() : token.getCharPositionInLine();
+            System.err.printf("Invalid symbol: line %d, position %d\n", statement.getLine() + token.getLine() - 1, position);
+            System.exit(1);
+        } catch (EvaluationException ee) {
+            System.err.println(ee.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private void printSweep(Sweep sweep) {
+        System.out.print(displayer.createSweepTable(sweep, new SweepEvaluator(budget, planner).evaluate(sweep)));
+    }
+
+    private void printSolution(Solve solve) {
+        System.out.print(displayer.createSolution(solve, new SweepEvaluator(budget, planner).solve(solve)));
+    }
+
+    private <T extends Comparable<T>> void printResults(Expression<T> stmt) {
+        if (statistics != null) {
+            System.out.print(displayer.createStatistics(stmt.toString(), statistics.calculate(stmt)));
+            return;
+        } else if (top > 0) {
+            System.out.print(displayer.createTopOutcomes(stmt.toString(), new BestFirstEnumerator(budget, planner).enumerate(stmt, top)));
+            return;
+        }
+
+        final Profiler profiler = new Profiler();
+        // Cached results have no evaluation to profile
+        final EvaluationBudget.Result<T> result = profile ?
+                budget.calculateResults(stmt, profiler, planner) :
+                cache.computeIfAbsent(stmt, () -> budget.calculateResults(stmt, EvaluationMonitor.NONE, planner));
+        final String cleanInput = result.isSampled() ? stmt + " (" + result.getApproximation() + ")" : stmt.toString();
+        final String sortedHistogram = displayer.createSortedHistogram(cleanInput, result.getResults()
+                                                                                         .values()
+                                                                                         .stream());
+
+        System.out.print(sortedHistogram);
+        if (profile) {
+            System.out.print(profiler.render(stmt));
+        }
+    }
 }
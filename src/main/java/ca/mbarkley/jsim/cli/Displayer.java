@@ -1,11 +1,23 @@
 package ca.mbarkley.jsim.cli;
 
+import ca.mbarkley.jsim.eval.BestFirstEnumerator.TopOutcomes;
+import ca.mbarkley.jsim.eval.EvaluationBudget;
+import ca.mbarkley.jsim.eval.ProgressiveEvaluation.Estimate;
+import ca.mbarkley.jsim.eval.Solve;
+import ca.mbarkley.jsim.eval.Sweep;
+import ca.mbarkley.jsim.prob.Comparison;
+import ca.mbarkley.jsim.prob.ComparisonMatrix;
+import ca.mbarkley.jsim.prob.Cumulants;
+import ca.mbarkley.jsim.prob.Distribution;
 import ca.mbarkley.jsim.prob.Event;
 import ca.mbarkley.jsim.util.FormatUtils;
 import lombok.RequiredArgsConstructor;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.function.IntSupplier;
 import java.util.stream.Stream;
 
@@ -16,12 +28,142 @@ import static java.util.stream.Collectors.toList;
 
 @RequiredArgsConstructor
 public class Displayer {
+    private static final int COLUMN_WIDTH = 8;
+
     private final IntSupplier desiredWidth;
 
     public <T extends Comparable<T>> String createSortedHistogram(String title, Stream<Event<T>> events) {
         return createSortedHistogram(title, events, comparing(Event::getValue, naturalOrder()));
     }
 
+    /**
+     * @return A histogram of the estimate, with the number of samples and the standard error in the title if the
+     * estimate is not exact.
+     */
+    public <T extends Comparable<T>> String createEstimateHistogram(String title, Estimate<T> estimate) {
+        final String estimateTitle = estimate.isExact() ? title : format("%s (sampled, %,d samples, +/- %s)",
+                                                                         title, estimate.getSamples(), FormatUtils.formatAsPercentage(estimate.getStandardError()));
+        return createSortedHistogram(estimateTitle, estimate.getResults().values().stream());
+    }
+
+    /**
+     * @return One line with the mean, standard deviation, skewness and excess kurtosis of a distribution.
+     */
+    public String createStatistics(String title, Cumulants cumulants) {
+        return format("%s: mean %.4f, sd %.4f, skewness %.4f, excess kurtosis %.4f\n",
+                      title, cumulants.getMean(), cumulants.getStandardDeviation(), cumulants.getSkewness(), cumulants.getExcessKurtosis());
+    }
+
+    /**
+     * @return A table with one row for each value of the swept variable, summarizing its result in a few columns:
+     * the probability of true for boolean results, the mean, standard deviation and median for integer results, and
+     * the most likely value for any other result. Rows with approximate results are marked with a {@code ~}.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public String createSweepTable(Sweep sweep, List<EvaluationBudget.Result<?>> results) {
+        final List<Distribution<?>> distributions = results.stream()
+                                                           .<Distribution<?>>map(result -> Distribution.of((Map) result.getResults()))
+                                                           .collect(toList());
+        final Object example = distributions.get(0).getMin();
+        final String[] columns = example instanceof Boolean ? new String[]{"P(true)"} :
+                example instanceof Integer ? new String[]{"mean", "sd", "median"} :
+                new String[]{"mode", "P(mode)"};
+        final int labelWidth = max(sweep.getVariable().length(), Integer.toString(sweep.getTo()).length()) + 1;
+
+        final StringBuilder sb = new StringBuilder(header(sweep.toString()));
+        sb.append(format("%-" + labelWidth + "s|", sweep.getVariable()));
+        for (var column : columns) {
+            sb.append(format(" %" + COLUMN_WIDTH + "s", column));
+        }
+        sb.append('\n');
+
+        for (int i = 0; i < distributions.size(); i++) {
+            final Distribution<?> distribution = distributions.get(i);
+            sb.append(format("%-" + labelWidth + "s|", sweep.getFrom() + i));
+            for (var cell : sweepCells(distribution)) {
+                sb.append(format(" %" + COLUMN_WIDTH + "s", cell));
+            }
+            sb.append(results.get(i).isSampled() ? " ~\n" : "\n");
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * @return One line with the smallest value that solves the statement, or saying that no value in its range does.
+     */
+    public String createSolution(Solve solve, Optional<Solve.Solution> solution) {
+        final String variable = solve.getSweep().getVariable();
+        return solution.map(s -> format("%s: %s = %d (%s%s)\n", solve, variable, s.getValue(), s.isApproximate() ? "~" : "", FormatUtils.formatAsPercentage(s.getProbability())))
+                       .orElseGet(() -> format("%s: no value of %s reaches %d%%\n", solve, variable, solve.getPercentage()));
+    }
+
+    /**
+     * @return A numbered legend of the labels, followed by a table whose cells hold P(row > column) and
+     * P(row = column) in percent, marked with {@code *} where the row stochastically dominates the column.
+     */
+    public String createComparisonTable(List<String> labels, ComparisonMatrix matrix) {
+        final StringBuilder sb = new StringBuilder();
+        final int labelWidth = Integer.toString(labels.size()).length() + 1;
+        for (int i = 0; i < labels.size(); i++) {
+            sb.append(format("%-" + labelWidth + "s %s\n", (i + 1) + ":", labels.get(i)));
+        }
+        sb.append("\nP(row > column)/P(row = column) in percent, * where row dominates column\n");
+
+        sb.append(" ".repeat(labelWidth)).append('|');
+        for (int j = 0; j < labels.size(); j++) {
+            sb.append(format(" %11s ", j + 1));
+        }
+        sb.append('\n');
+        for (int i = 0; i < labels.size(); i++) {
+            sb.append(format("%-" + labelWidth + "s|", i + 1));
+            for (int j = 0; j < labels.size(); j++) {
+                final Comparison comparison = matrix.get(i, j);
+                sb.append(format(" %5.1f/%5.1f%s", 100.0 * comparison.getGreater(), 100.0 * comparison.getEqual(), comparison.isDominates() ? "*" : " "));
+            }
+            sb.append('\n');
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * @return One CSV record for every ordered pair of labels, with the comparison of the first with the second.
+     */
+    public String createComparisonCsv(List<String> labels, ComparisonMatrix matrix) {
+        final StringBuilder sb = new StringBuilder("row,column,greater,equal,less,dominates\n");
+        for (int i = 0; i < labels.size(); i++) {
+            for (int j = 0; j < labels.size(); j++) {
+                final Comparison comparison = matrix.get(i, j);
+                sb.append(format("%s,%s,%.6f,%.6f,%.6f,%s\n", csvField(labels.get(i)), csvField(labels.get(j)),
+                                 comparison.getGreater(), comparison.getEqual(), comparison.getLess(), comparison.isDominates()));
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static String csvField(String text) {
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String[] sweepCells(Distribution<?> distribution) {
+        final Object example = distribution.getMin();
+        if (example instanceof Boolean) {
+            return new String[]{FormatUtils.formatAsPercentage(((Distribution<Boolean>) distribution).probabilityOf(true))};
+        } else if (example instanceof Integer) {
+            final Cumulants cumulants = Cumulants.of(((Distribution<Integer>) distribution).events());
+            return new String[]{format("%.2f", cumulants.getMean()), format("%.2f", cumulants.getStandardDeviation()), distribution.median().toString()};
+        } else {
+            final Event<?> mode = distribution.events()
+                                              .max(comparingDouble(Event::getProbability))
+                                              .get();
+            return new String[]{mode.getValue().toString(), FormatUtils.formatAsPercentage(mode.getProbability())};
+        }
+    }
+
+    @SuppressWarnings("unchecked")
     private <T> String createSortedHistogram(String title, Stream<Event<T>> events, Comparator<Event<T>> comparator) {
         final List<Event<T>> sortedEvents = events.sorted(comparator)
                                                   .collect(toList());
@@ -29,57 +171,83 @@ public class Displayer {
         if (sortedEvents.isEmpty()) {
             throw new IllegalArgumentException("Cannot generate historam for empty event list.");
         } else {
-            final double highestLikelihood = sortedEvents.stream()
-                                                         .max(comparingDouble(Event::getProbability))
-                                                         .get()
-                                                         .getProbability();
-            final int longestValueString = sortedEvents.stream()
-                                                       .map(Event::getValue)
-                                                       .map(Object::toString)
-                                                       .map(String::length)
-                                                       .max(naturalOrder())
-                                                       .get();
-            final int totalLeftPad = longestValueString + 1;
-
-            final int rightPadding = "100.00%".length();
-            final int desiredWidth = this.desiredWidth.getAsInt();
-            final double charFactor = (double) (desiredWidth - totalLeftPad - "|".length() - rightPadding - " ".length()) / highestLikelihood;
-
-            final int largestPrintedCharLength = charCount(charFactor, highestLikelihood);
-            final int totalGraphSectionWidth = largestPrintedCharLength + rightPadding + " ".length();
-
-            final int largestCalculatedWidth = totalGraphSectionWidth + totalLeftPad + "|".length();
-            assert largestCalculatedWidth <= desiredWidth : format("total graph width with padding [%d] is larger than desired width [%d]", largestCalculatedWidth, desiredWidth);
-
-            final StringBuilder sb = new StringBuilder();
-
-            // Header
-            final int barLength = max((desiredWidth - title.length() - 2) / 2, 0);
-            final int remainderAdjustment = max((desiredWidth - title.length() - 2) % 2, 0);
-            sb.append("-".repeat(barLength))
-              .append(" ")
-              .append(title)
-              .append(" ")
-              .append(" ".repeat(remainderAdjustment))
-              .append("-".repeat(barLength))
-              .append("\n");
-
-            for (final Event<T> event : sortedEvents) {
-                final double probability = event.getProbability();
-                final int charCount = charCount(charFactor, probability);
-                final String value = event.getValue().toString();
-                final String formattedProb = FormatUtils.formatAsPercentage(probability);
-                sb.append(value)
-                  .append(" ".repeat(totalLeftPad - value.length()))
-                  .append('|')
-                  .append("*".repeat(max(0, charCount)))
-                  .append(" ".repeat(totalGraphSectionWidth - charCount - formattedProb.length()))
-                  .append(formattedProb)
-                  .append('\n');
-            }
+            final String header = sortedEvents.get(0).getValue() instanceof Integer ? withMoments(title, (List<Event<Integer>>) (List<?>) sortedEvents) : title;
+
+            return createHistogram(header, sortedEvents);
+        }
+    }
+
+    /**
+     * @return A histogram of the most likely outcomes in decreasing order of probability, with a final row for all other
+     * outcomes, and the error bound in the title if not every combination was enumerated.
+     */
+    public String createTopOutcomes(String title, TopOutcomes<?> top) {
+        final List<Event<Object>> events = new ArrayList<>();
+        top.getEvents().forEach(event -> events.add(new Event<>(event.getValue(), event.getProbability())));
+        if (top.getRemainder() > 0.0) {
+            events.add(new Event<>("other", top.getRemainder()));
+        }
+        final String approximation = top.isSampled() ? ", sampled" : "";
+        final String header = top.getUnexplored() > 0.0 ?
+                format("%s (top %d%s, each up to %s low)", title, top.getEvents().size(), approximation, FormatUtils.formatAsPercentage(top.getUnexplored())) :
+                format("%s (top %d%s)", title, top.getEvents().size(), approximation);
 
-            return sb.toString();
+        return createHistogram(header, events);
+    }
+
+    private <T> String createHistogram(String header, List<Event<T>> sortedEvents) {
+        final double highestLikelihood = sortedEvents.stream()
+                                                     .max(comparingDouble(Event::getProbability))
+                                                     .get()
+                                                     .getProbability();
+        final int longestValueString = sortedEvents.stream()
+                                                   .map(Event::getValue)
+                                                   .map(Object::toString)
+                                                   .map(String::length)
+                                                   .max(naturalOrder())
+                                                   .get();
+        final int totalLeftPad = longestValueString + 1;
+
+        final int rightPadding = "100.00%".length();
+        final int desiredWidth = this.desiredWidth.getAsInt();
+        final double charFactor = (double) (desiredWidth - totalLeftPad - "|".length() - rightPadding - " ".length()) / highestLikelihood;
+
+        final int largestPrintedCharLength = charCount(charFactor, highestLikelihood);
+        final int totalGraphSectionWidth = largestPrintedCharLength + rightPadding + " ".length();
+
+        final int largestCalculatedWidth = totalGraphSectionWidth + totalLeftPad + "|".length();
+        assert largestCalculatedWidth <= desiredWidth : format("total graph width with padding [%d] is larger than desired width [%d]", largestCalculatedWidth, desiredWidth);
+
+        final StringBuilder sb = new StringBuilder(header(header));
+
+        for (final Event<T> event : sortedEvents) {
+            final double probability = event.getProbability();
+            final int charCount = charCount(charFactor, probability);
+            final String value = event.getValue().toString();
+            final String formattedProb = FormatUtils.formatAsPercentage(probability);
+            sb.append(value)
+              .append(" ".repeat(totalLeftPad - value.length()))
+              .append('|')
+              .append("*".repeat(max(0, charCount)))
+              .append(" ".repeat(totalGraphSectionWidth - charCount - formattedProb.length()))
+              .append(formattedProb)
+              .append('\n');
         }
+
+        return sb.toString();
+    }
+
+    private String header(String title) {
+        final int desiredWidth = this.desiredWidth.getAsInt();
+        final int barLength = max((desiredWidth - title.length() - 2) / 2, 0);
+        final int remainderAdjustment = max((desiredWidth - title.length() - 2) % 2, 0);
+
+        return "-".repeat(barLength) + " " + title + " " + " ".repeat(remainderAdjustment) + "-".repeat(barLength) + "\n";
+    }
+
+    private static String withMoments(String title, List<Event<Integer>> events) {
+        final Cumulants cumulants = Cumulants.of(events.stream());
+        return format("%s (mean %.2f, sd %.2f)", title, cumulants.getMean(), cumulants.getStandardDeviation());
     }
 
     private int charCount(double charFactor, double probability) {
@@ -0,0 +1,78 @@
+package ca.mbarkley.jsim.cli;
+
+import ca.mbarkley.jsim.prob.Distribution;
+import ca.mbarkley.jsim.util.FormatUtils;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.lang.String.format;
+
+/**
+ * Answers repl queries about an already computed distribution, such as {@code >= 15}, {@code 10..12} or quantiles,
+ * without evaluating its statement again.
+ */
+public class DistributionQueries {
+    private static final Pattern COMPARISON = Pattern.compile("\\s*(<=|>=|<|>|=)\\s*(\\S+)\\s*");
+    private static final Pattern RANGE = Pattern.compile("\\s*(\\S+)\\s*\\.\\.\\s*(\\S+)\\s*");
+
+    /**
+     * @param query A comparison with a value, such as {@code >= 15}, or an inclusive range such as {@code 10..12}.
+     * @return A line with the probability of the query.
+     */
+    public static <T extends Comparable<T>> String probability(Distribution<T> distribution, String query) {
+        final Matcher comparison = COMPARISON.matcher(query);
+        final Matcher range = RANGE.matcher(query);
+        final double probability;
+        if (comparison.matches()) {
+            final T value = parseValue(distribution, comparison.group(2));
+            switch (comparison.group(1)) {
+                case "<":
+                    probability = distribution.probabilityLessThan(value);
+                    break;
+                case "<=":
+                    probability = distribution.probabilityAtMost(value);
+                    break;
+                case ">":
+                    probability = distribution.probabilityGreaterThan(value);
+                    break;
+                case ">=":
+                    probability = distribution.probabilityAtLeast(value);
+                    break;
+                default:
+                    probability = distribution.probabilityOf(value);
+            }
+        } else if (range.matches()) {
+            probability = distribution.probabilityBetween(parseValue(distribution, range.group(1)), parseValue(distribution, range.group(2)));
+        } else {
+            throw new IllegalArgumentException(format("Expected a comparison such as [>= 15] or a range such as [10..12], but found [%s]", query.trim()));
+        }
+
+        return format("P(%s) = %s\n", query.trim(), FormatUtils.formatAsPercentage(probability));
+    }
+
+    /**
+     * @param probabilities Probabilities between 0 and 1, separated by spaces, or a blank string for the median.
+     * @return A line with the quantile of each probability.
+     */
+    public static String quantiles(Distribution<?> distribution, String probabilities) {
+        final StringBuilder sb = new StringBuilder();
+        for (var probability : probabilities.isBlank() ? new String[]{"0.5"} : probabilities.trim().split("\\s+")) {
+            sb.append(format("Q(%s) = %s\n", probability, distribution.quantile(Double.parseDouble(probability))));
+        }
+
+        return sb.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Comparable<T>> T parseValue(Distribution<T> distribution, String text) {
+        final T example = distribution.getMin();
+        if (example instanceof Integer) {
+            return (T) Integer.valueOf(text);
+        } else if (example instanceof Boolean) {
+            return (T) Boolean.valueOf(text);
+        } else {
+            throw new IllegalArgumentException("Probability queries are only supported for integer and boolean results");
+        }
+    }
+}
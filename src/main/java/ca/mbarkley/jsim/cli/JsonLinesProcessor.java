@@ -0,0 +1,139 @@
+package ca.mbarkley.jsim.cli;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.Value;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+
+import static java.lang.String.format;
+
+/**
+ * Reads one JSON request per line and writes one JSON response per line, evaluating requests concurrently on a
+ * fixed pool of workers. Responses are written either as soon as they complete or in the order of their requests.
+ * The number of requests in flight is bounded, so that arbitrarily long inputs are processed in bounded memory.
+ */
+public class JsonLinesProcessor {
+    private final JsonRequestHandler handler;
+    private final ObjectMapper mapper;
+    private final int workers;
+    private final boolean ordered;
+
+    public JsonLinesProcessor(JsonRequestHandler handler, ObjectMapper mapper, int workers, boolean ordered) {
+        this.handler = handler;
+        this.mapper = mapper;
+        this.workers = workers;
+        this.ordered = ordered;
+    }
+
+    public void process(InputStream in, PrintStream out) {
+        final ExecutorService executor = Executors.newFixedThreadPool(workers);
+        final Semaphore inFlight = new Semaphore(workers * 4);
+        final BlockingQueue<Pending> pending = new LinkedBlockingQueue<>();
+        final Pending endOfInput = new Pending("", CompletableFuture.completedFuture(null));
+        final Thread orderedWriter = new Thread(() -> writeInOrder(pending, endOfInput, inFlight, out), "jsim-jsonl-writer");
+        if (ordered) {
+            orderedWriter.start();
+        }
+
+        try (var reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            for (var line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                inFlight.acquire();
+                final String request = line;
+                if (ordered) {
+                    pending.add(new Pending(request, executor.submit(() -> respond(request))));
+                } else {
+                    executor.execute(() -> {
+                        try {
+                            final String response = respond(request);
+                            synchronized (out) {
+                                out.println(response);
+                                out.flush();
+                            }
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                }
+            }
+        } catch (IOException e) {
+            System.err.printf("Error reading input: %s\n", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pending.add(endOfInput);
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                if (ordered) {
+                    orderedWriter.join();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * A request whose response is being computed, for writing responses in request order.
+     */
+    @Value
+    private static class Pending {
+        String request;
+        Future<String> response;
+    }
+
+    /**
+     * Every request gets a response line, even if handling it fails unexpectedly, so that no request is left in flight.
+     */
+    private String respond(String request) {
+        try {
+            return mapper.writeValueAsString(handler.handle(request));
+        } catch (IOException | RuntimeException e) {
+            return errorResponse(request, e);
+        }
+    }
+
+    private String errorResponse(String request, Throwable e) {
+        final ObjectNode response = mapper.createObjectNode();
+        response.set("id", handler.requestId(request));
+        response.put("error", format("Internal error: %s", JsonRequestHandler.describe(e)));
+        try {
+            return mapper.writeValueAsString(response);
+        } catch (IOException ioe) {
+            return "{\"id\": null, \"error\": \"Internal error\"}";
+        }
+    }
+
+    private void writeInOrder(BlockingQueue<Pending> pending, Pending endOfInput, Semaphore inFlight, PrintStream out) {
+        try {
+            for (var next = pending.take(); next != endOfInput; next = pending.take()) {
+                String response;
+                try {
+                    response = next.getResponse().get();
+                } catch (ExecutionException e) {
+                    // An Error in a worker: answer the request so the output stays aligned, but still report it
+                    e.getCause().printStackTrace();
+                    response = errorResponse(next.getRequest(), e.getCause());
+                }
+                try {
+                    out.println(response);
+                    out.flush();
+                } finally {
+                    inFlight.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
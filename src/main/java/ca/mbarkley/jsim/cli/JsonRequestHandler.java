@@ -0,0 +1,215 @@
+package ca.mbarkley.jsim.cli;
+
+import ca.mbarkley.jsim.eval.Evaluation;
+import ca.mbarkley.jsim.eval.CoalescingEvaluator;
+import ca.mbarkley.jsim.eval.EvaluationBudget;
+import ca.mbarkley.jsim.eval.LexicalScope;
+import ca.mbarkley.jsim.eval.Parser;
+import ca.mbarkley.jsim.eval.Planner;
+import ca.mbarkley.jsim.eval.ResultCache;
+import ca.mbarkley.jsim.model.EvaluationMonitor;
+import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.prob.Event;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.antlr.v4.runtime.RecognitionException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.lang.String.format;
+
+/**
+ * Evaluates scripts described by JSON requests of the form
+ * <pre><code>
+ *     {"id": 1, "definitions": "define die = [1, 3, 5]", "script": "die + d6 > 6"}
+ * </code></pre>
+ * where {@code id} and {@code definitions} are optional and {@code definitions} may also be an array of statements.
+ * Responses echo the request id and contain a distribution for every expression in the script, or an error message.
+ * Sweep and solve statements are not supported, and are reported as errors.
+ * Scripts may also refer to shared definitions added with {@link #define(String)}. Instances are thread-safe.
+ */
+public class JsonRequestHandler {
+    private static final int MAX_PARSED_SCRIPTS = 1024;
+
+    private final ObjectMapper mapper;
+    private final Parser parser;
+    private final EvaluationBudget budget;
+    private final Planner planner;
+    private final ResultCache cache;
+    private final CoalescingEvaluator coalescer;
+    private final AtomicReference<SharedDefinitions> shared = new AtomicReference<>(new SharedDefinitions(new LexicalScope(Map.of())));
+
+    public JsonRequestHandler(ObjectMapper mapper, EvaluationBudget budget, Planner planner) {
+        this(mapper, budget, planner, ResultCache.NONE, new CoalescingEvaluator());
+    }
+
+    public JsonRequestHandler(ObjectMapper mapper, EvaluationBudget budget, Planner planner, ResultCache cache, CoalescingEvaluator coalescer) {
+        this.mapper = mapper;
+        this.parser = new Parser();
+        this.budget = budget;
+        this.planner = planner;
+        this.cache = cache;
+        this.coalescer = coalescer;
+    }
+
+    /**
+     * Adds the definitions in the given script to the scope shared by all later requests.
+     *
+     * @return The identifiers of all shared definitions.
+     */
+    public synchronized ArrayNode define(String definitions) {
+        final LexicalScope scope = parser.parse(shared.get().scope, definitions).getContext();
+        shared.set(new SharedDefinitions(scope));
+
+        final ArrayNode identifiers = mapper.createArrayNode();
+        scope.getDefinitions().keySet().stream().sorted().forEach(identifiers::add);
+
+        return identifiers;
+    }
+
+    public ObjectNode handle(String requestLine) {
+        try {
+            return handle(mapper.readTree(requestLine));
+        } catch (Exception e) {
+            final ObjectNode response = mapper.createObjectNode();
+            response.set("id", requestId(requestLine));
+            response.put("error", format("Invalid request: %s", describe(e)));
+
+            return response;
+        }
+    }
+
+    /**
+     * Reads only as far as the top-level {@code id} of a request, so that the id of a request that is not valid JSON
+     * is still found as long as it comes before the error.
+     *
+     * @return The id of the request, or a null node if it has none.
+     */
+    public JsonNode requestId(String requestLine) {
+        try (JsonParser parser = mapper.getFactory().createParser(requestLine)) {
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                for (var token = parser.nextToken(); token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+                    final String field = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("id".equals(field)) {
+                        final JsonNode id = mapper.readTree(parser);
+                        return id == null ? NullNode.getInstance() : id;
+                    }
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            // The request is invalid after the fields read so far, so it has no readable id
+        }
+
+        return NullNode.getInstance();
+    }
+
+    /**
+     * @return The message of an exception, or its class name if it has none.
+     */
+    static String describe(Throwable e) {
+        return e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+    }
+
+    public ObjectNode handle(JsonNode request) {
+        final ObjectNode response = mapper.createObjectNode();
+        response.set("id", request.path("id").isMissingNode() ? NullNode.getInstance() : request.get("id"));
+        try {
+            final LexicalScope scope = parseDefinitions(request.path("definitions"));
+            final Evaluation eval = parser.parse(scope, request.path("script").asText());
+            final ArrayNode results = response.putArray("results");
+            for (var expression : eval.getOnlyExpressions("in requests")) {
+                results.add(toJson(expression));
+            }
+        } catch (RecognitionException re) {
+            response.remove("results");
+            response.put("error", format("Invalid symbol: line %d, position %d", re.getOffendingToken().getLine(), re.getOffendingToken().getCharPositionInLine()));
+        } catch (RuntimeException re) {
+            response.remove("results");
+            response.put("error", describe(re));
+        }
+
+        return response;
+    }
+
+    private LexicalScope parseDefinitions(JsonNode definitions) {
+        final SharedDefinitions base = shared.get();
+        if (definitions.isMissingNode() || definitions.isNull()) {
+            return base.scope;
+        } else {
+            final String script;
+            if (definitions.isArray()) {
+                final List<String> statements = new ArrayList<>();
+                definitions.forEach(statement -> statements.add(statement.asText()));
+                script = String.join("\n", statements);
+            } else {
+                script = definitions.asText();
+            }
+
+            final LexicalScope cached = base.parsedScripts.get(script);
+            if (cached != null) {
+                return cached;
+            }
+
+            final LexicalScope scope = parser.parse(base.scope, script).getContext();
+            if (base.parsedScripts.size() < MAX_PARSED_SCRIPTS) {
+                base.parsedScripts.put(script, scope);
+            }
+
+            return scope;
+        }
+    }
+
+    private <T extends Comparable<T>> ObjectNode toJson(Expression<T> expression) {
+        final EvaluationBudget.Result<T> result = cache.computeIfAbsent(expression, () -> coalescer.evaluate(expression, () -> budget.calculateResults(expression, EvaluationMonitor.NONE, planner)));
+        final ObjectNode node = mapper.createObjectNode();
+        node.put("expression", expression.toString());
+        node.put("sampled", result.isSampled());
+        final ArrayNode distribution = node.putArray("distribution");
+        result.getResults()
+              .values()
+              .stream()
+              .sorted(Comparator.comparing(Event::getValue))
+              .forEach(event -> {
+                  final ObjectNode eventNode = distribution.addObject();
+                  eventNode.set("value", valueToJson(event.getValue()));
+                  eventNode.put("probability", event.getProbability());
+              });
+
+        return node;
+    }
+
+    private JsonNode valueToJson(Object value) {
+        if (value instanceof Integer) {
+            return mapper.getNodeFactory().numberNode((Integer) value);
+        } else if (value instanceof Boolean) {
+            return mapper.getNodeFactory().booleanNode((Boolean) value);
+        } else {
+            return mapper.getNodeFactory().textNode(value.toString());
+        }
+    }
+
+    /**
+     * The shared scope, along with request definitions already parsed on top of it.
+     */
+    private static class SharedDefinitions {
+        private final LexicalScope scope;
+        private final Map<String, LexicalScope> parsedScripts = new ConcurrentHashMap<>();
+
+        SharedDefinitions(LexicalScope scope) {
+            this.scope = scope;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package ca.mbarkley.jsim.cli;
+
+import ca.mbarkley.jsim.eval.EvaluationBudget;
+import ca.mbarkley.jsim.eval.EvaluationException;
+import ca.mbarkley.jsim.eval.EvaluationException.InvalidTypeException;
+import ca.mbarkley.jsim.eval.Parser;
+import ca.mbarkley.jsim.eval.Planner;
+import ca.mbarkley.jsim.model.EvaluationMonitor;
+import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.prob.ComparisonMatrix;
+import ca.mbarkley.jsim.prob.Distribution;
+import org.antlr.v4.runtime.RecognitionException;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static java.lang.String.format;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Compares every pair of statements in a script. Each distinct statement is evaluated once, in parallel, and then
+ * every pair is compared from the two distributions, rather than evaluating {@code A > B} for each pair.
+ */
+public class MatrixProcessor {
+    private final EvaluationBudget budget;
+    private final Planner planner;
+    private final boolean csv;
+    private final Parser parser = new Parser();
+    private final Displayer displayer = new Displayer(() -> 0);
+
+    /**
+     * @param csv Print comparisons as CSV records instead of a table.
+     */
+    public MatrixProcessor(EvaluationBudget budget, Planner planner, boolean csv) {
+        this.budget = budget;
+        this.planner = planner;
+        this.csv = csv;
+    }
+
+    public void process(String input) {
+        try {
+            System.out.print(compare(input));
+        } catch (RecognitionException re) {
+            System.err.printf("Invalid symbol: line %d, position %d\n", re.getOffendingToken().getLine(), re.getOffendingToken().getCharPositionInLine());
+            System.exit(1);
+        } catch (EvaluationException ee) {
+            System.err.println(ee.getMessage());
+            System.exit(1);
+        }
+    }
+
+    public void process(InputStream in) {
+        try {
+            process(IOUtils.toString(in, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.err.printf("Error reading input: %s\n", e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public String compare(String input) {
+        final List<Expression<?>> expressions = parser.parse(input)
+                                                      .getOnlyExpressions("in comparisons")
+                                                      .stream()
+                                                      .distinct()
+                                                      .collect(toList());
+        for (var expression : expressions) {
+            if (!expression.getType().equals(expressions.get(0).getType())) {
+                throw new InvalidTypeException(format("Cannot compare [%s] of type [%s] with [%s] of type [%s]",
+                                                      expressions.get(0), expressions.get(0).getType().name(), expression, expression.getType().name()));
+            }
+        }
+
+        final List<Distribution> distributions = expressions.parallelStream()
+                                                            .map(expression -> Distribution.of(budget.calculateResults(expression, EvaluationMonitor.NONE, planner).getResults()))
+                                                            .collect(toList());
+        final ComparisonMatrix matrix = ComparisonMatrix.of((List) distributions);
+        final List<String> labels = expressions.stream()
+                                               .map(Expression::toString)
+                                               .collect(toList());
+
+        return csv ? displayer.createComparisonCsv(labels, matrix) : displayer.createComparisonTable(labels, matrix);
+    }
+}
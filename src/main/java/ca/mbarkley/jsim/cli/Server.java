@@ -0,0 +1,149 @@
+package ca.mbarkley.jsim.cli;
+
+import ca.mbarkley.jsim.eval.CoalescingEvaluator;
+import ca.mbarkley.jsim.eval.Parser;
+import ca.mbarkley.jsim.eval.ResultCache;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serves requests over HTTP on the loopback interface, so that clients share one warm JVM, parser and result cache
+ * instead of paying for startup on every call. The endpoints are:
+ * <ul>
+ *     <li>{@code POST /evaluate} with a request as accepted by {@link JsonRequestHandler}</li>
+ *     <li>{@code POST /definitions} with a body of the form {@code {"definitions": "define x = d4"}}, adding to the
+ *     definitions visible to all later requests</li>
+ *     <li>{@code GET /metrics} for request, latency, cache and coalescing counters</li>
+ * </ul>
+ */
+public class Server {
+    private final ObjectMapper mapper;
+    private final JsonRequestHandler handler;
+    private final ResultCache cache;
+    private final CoalescingEvaluator coalescer;
+    private final HttpServer httpServer;
+    private final ExecutorService executor;
+
+    private final long startNanos = System.nanoTime();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    public Server(int port, int workers, ObjectMapper mapper, JsonRequestHandler handler, ResultCache cache, CoalescingEvaluator coalescer) throws IOException {
+        this.mapper = mapper;
+        this.handler = handler;
+        this.cache = cache;
+        this.coalescer = coalescer;
+        // Requests beyond the queue are run on the accepting thread, which stops accepting new connections meanwhile
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                                               new ArrayBlockingQueue<>(workers * 16),
+                                               new ThreadPoolExecutor.CallerRunsPolicy());
+        this.httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.setExecutor(executor);
+        httpServer.createContext("/evaluate", exchange -> handle(exchange, "POST", this::evaluate));
+        httpServer.createContext("/definitions", exchange -> handle(exchange, "POST", this::define));
+        httpServer.createContext("/metrics", exchange -> handle(exchange, "GET", body -> metrics()));
+    }
+
+    public void start() {
+        Parser.warmUp();
+        httpServer.start();
+    }
+
+    public void stop() {
+        httpServer.stop(0);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    private ObjectNode evaluate(String body) {
+        return handler.handle(body);
+    }
+
+    private ObjectNode define(String body) {
+        final ObjectNode response = mapper.createObjectNode();
+        try {
+            final JsonNode request = mapper.readTree(body);
+            response.set("definitions", handler.define(request.path("definitions").asText()));
+        } catch (IOException | RuntimeException e) {
+            response.put("error", JsonRequestHandler.describe(e));
+        }
+
+        return response;
+    }
+
+    private ObjectNode metrics() {
+        final double uptimeSeconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        final long requestCount = requests.sum();
+        final ObjectNode response = mapper.createObjectNode();
+        response.put("uptimeSeconds", uptimeSeconds);
+        response.put("requests", requestCount);
+        response.put("errors", errors.sum());
+        response.put("requestsPerSecond", requestCount / uptimeSeconds);
+        response.put("meanLatencyMillis", requestCount == 0 ? 0.0 : totalLatencyNanos.sum() / (requestCount * 1_000_000.0));
+        response.put("maxLatencyMillis", maxLatencyNanos.get() / 1_000_000.0);
+        final ObjectNode cacheNode = response.putObject("cache");
+        cacheNode.put("hits", cache.getHits());
+        cacheNode.put("misses", cache.getMisses());
+        cacheNode.put("size", cache.size());
+        final ObjectNode coalescingNode = response.putObject("coalescing");
+        coalescingNode.put("evaluations", coalescer.getRequests());
+        coalescingNode.put("coalesced", coalescer.getCoalesced());
+        coalescingNode.put("ratio", coalescer.getCoalescingRatio());
+
+        return response;
+    }
+
+    private interface Endpoint {
+        ObjectNode respond(String body) throws IOException;
+    }
+
+    private void handle(HttpExchange exchange, String method, Endpoint endpoint) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            if (!method.equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            final String body = IOUtils.toString(exchange.getRequestBody(), "UTF-8");
+            final ObjectNode response = endpoint.respond(body);
+            final boolean failed = response.has("error");
+            if (failed) {
+                errors.increment();
+            }
+
+            final byte[] bytes = mapper.writeValueAsBytes(response);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(failed ? 400 : 200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } finally {
+            exchange.close();
+            final long latency = System.nanoTime() - start;
+            requests.increment();
+            totalLatencyNanos.add(latency);
+            maxLatencyNanos.accumulateAndGet(latency, Math::max);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package ca.mbarkley.jsim.cli;
+
+import lombok.Value;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Optional;
+
+/**
+ * Splits a script into statements on the same terminators as the grammar (newlines and semicolons) as the input
+ * arrives, so that scripts can be evaluated without holding them in memory.
+ */
+public class StatementReader {
+    private final Reader reader;
+    private int line = 1;
+    private int column = 0;
+
+    public StatementReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    @Value
+    public static class Statement {
+        String text;
+        /**
+         * Line of the first character of the statement in the whole script, starting at one.
+         */
+        int line;
+        /**
+         * Position of the first character of the statement within its line, starting at zero.
+         */
+        int column;
+    }
+
+    /**
+     * @return The next non-blank statement, or empty if the end of the input was reached.
+     */
+    public Optional<Statement> next() throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        int startLine = line;
+        int startColumn = column;
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (c == '\n' || c == ';') {
+                if (c == '\n') {
+                    line++;
+                    column = 0;
+                } else {
+                    column++;
+                }
+
+                if (sb.toString().isBlank()) {
+                    sb.setLength(0);
+                    startLine = line;
+                    startColumn = column;
+                } else {
+                    return Optional.of(new Statement(sb.toString(), startLine, startColumn));
+                }
+            } else {
+                sb.append((char) c);
+                column++;
+            }
+        }
+
+        return sb.toString().isBlank() ? Optional.empty() : Optional.of(new Statement(sb.toString(), startLine, startColumn));
+    }
+}
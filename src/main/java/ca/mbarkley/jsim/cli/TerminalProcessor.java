@@ -1,62 +1,321 @@
 package ca.mbarkley.jsim.cli;
 
+import ca.mbarkley.jsim.eval.BestFirstEnumerator;
+import ca.mbarkley.jsim.eval.DefinitionGraph;
 import ca.mbarkley.jsim.eval.Evaluation;
+import ca.mbarkley.jsim.eval.EvaluationBudget;
 import ca.mbarkley.jsim.eval.EvaluationException;
-import ca.mbarkley.jsim.eval.LexicalScope;
 import ca.mbarkley.jsim.eval.Parser;
+import ca.mbarkley.jsim.eval.Planner;
+import ca.mbarkley.jsim.eval.Profiler;
+import ca.mbarkley.jsim.eval.ProgressMonitor;
+import ca.mbarkley.jsim.eval.ProgressiveEvaluation;
+import ca.mbarkley.jsim.eval.ProgressiveEvaluation.Estimate;
+import ca.mbarkley.jsim.eval.Solve;
+import ca.mbarkley.jsim.eval.Statement;
+import ca.mbarkley.jsim.eval.StatisticsCalculator;
+import ca.mbarkley.jsim.eval.Sweep;
+import ca.mbarkley.jsim.eval.SweepEvaluator;
+import ca.mbarkley.jsim.model.EvaluationMonitor;
 import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.prob.Distribution;
 import org.antlr.v4.runtime.RecognitionException;
 import org.jline.reader.LineReader;
 import org.jline.reader.LineReaderBuilder;
 import org.jline.reader.UserInterruptException;
 import org.jline.terminal.Terminal;
+import org.jline.terminal.TerminalBuilder;
+import org.jline.utils.InfoCmp.Capability;
 
+import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.StringWriter;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+/**
+ * The interactive repl. Statements are evaluated on a separate thread so that Ctrl-C cancels the current statement
+ * without ending the session, and so that progress can be shown while a slow statement is evaluated. In progressive
+ * mode, a sampled histogram is shown right away and redrawn in place until exact evaluation finishes.
+ */
 public class TerminalProcessor {
+    private static final String PROFILE_COMMAND = ":profile";
+    private static final String EXPLAIN_COMMAND = ":explain";
+    private static final String PROGRESSIVE_COMMAND = ":progressive";
+    private static final String STATS_COMMAND = ":stats";
+    private static final String PROBABILITY_COMMAND = ":probability";
+    private static final String QUANTILE_COMMAND = ":quantile";
+    private static final Pattern TOP_COMMAND = Pattern.compile(":top\\s+(\\d+)\\s(.*)");
+    private static final long PROGRESS_INTERVAL_MILLIS = 250;
+
     private final Parser parser;
+    private final EvaluationBudget budget;
+    private final Planner planner;
+    private final boolean progressive;
+    /**
+     * The most recently printed result, which {@code :probability} and {@code :quantile} query.
+     */
+    private volatile Distribution<?> lastResult;
 
     public TerminalProcessor() {
+        this(EvaluationBudget.forAvailableMemory(), Planner.DEFAULT, false);
+    }
+
+    public TerminalProcessor(EvaluationBudget budget, Planner planner, boolean progressive) {
         parser = new Parser();
+        this.budget = budget;
+        this.planner = planner;
+        this.progressive = progressive;
     }
 
+    /**
+     * Runs the repl on the system terminal. Terminal classes are only loaded here, so that other modes do not pay
+     * for loading them at startup.
+     */
+    public void process() throws IOException {
+        process(TerminalBuilder.builder()
+                               .name("jsim")
+                               .jna(true)
+                               .build());
+    }
 
     public void process(Terminal terminal) {
-        final Map<String, Expression<?>> definitions = new HashMap<>();
+        // Warm up the shared parser caches while the user types the first statement
+        Parser.warmUpInBackground();
+
+        final DefinitionGraph definitions = new DefinitionGraph();
         final LineReader lineReader = LineReaderBuilder.builder()
                                                        .terminal(terminal)
                                                        .appName(terminal.getName())
                                                        .build();
         final Displayer displayer = new Displayer(terminal::getWidth);
-        final PrintWriter writer = terminal.writer();
+        final ExecutorService evaluator = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "jsim-evaluator");
+            thread.setDaemon(true);
+            return thread;
+        });
         try {
             do {
                 final String line = lineReader.readLine("$ ");
                 if (line == null) {
                     break;
                 } else {
-                    try {
-                        final Evaluation eval = parser.parse(new LexicalScope(definitions), line);
-                        definitions.putAll(eval.getContext().getDefinitions());
-                        for (var expression : eval.getExpressions()) {
-                            final String sortedHistogram = displayer.createSortedHistogram(expression.toString(), expression.calculateResults()
-                                                                                                                            .values()
-                                                                                                                            .stream());
-                            writer.printf("%s", sortedHistogram);
-                        }
-                    } catch (RecognitionException re) {
-                        writer.printf("Invalid symbol: line %d, position %d\n", re.getOffendingToken().getLine(), re.getOffendingToken().getCharPositionInLine());
-                    } catch (EvaluationException.UndefinedIdentifierException uie) {
-                        writer.printf("%s\n", uie.getMessage());
-                    } catch (RuntimeException re) {
-                        writer.printf("Problem while evaluating statement: %s\n", re.getMessage());
-                    }
+                    evaluateCancelably(line, definitions, displayer, evaluator, terminal);
                 }
             } while (true);
         } catch (UserInterruptException uie) {
             // Exit
+        } finally {
+            evaluator.shutdownNow();
+        }
+    }
+
+    /**
+     * Evaluates a line on the evaluator thread, showing progress until it completes or the user presses Ctrl-C.
+     */
+    private void evaluateCancelably(String line, DefinitionGraph definitions, Displayer displayer, ExecutorService evaluator, Terminal terminal) {
+        final PrintWriter writer = terminal.writer();
+        final Profiler profiler = new Profiler();
+        final ProgressMonitor progress = new ProgressMonitor(line.startsWith(PROFILE_COMMAND) ? profiler : EvaluationMonitor.NONE);
+        final AtomicReference<String> estimate = new AtomicReference<>();
+        final StringWriter output = new StringWriter();
+        final Future<?> task = evaluator.submit(() -> evaluate(line, definitions, displayer, profiler, progress, estimate, new PrintWriter(output)));
+        final Terminal.SignalHandler previousHandler = terminal.handle(Terminal.Signal.INT, signal -> {
+            progress.cancel();
+            task.cancel(true);
+        });
+        int drawnLines = 0;
+        try {
+            while (true) {
+                try {
+                    task.get(PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException te) {
+                    final String histogram = estimate.get();
+                    final String progressLine = String.format("Evaluating: %,d events, largest support %,d (Ctrl-C to cancel)\n", progress.getEvents(), progress.getLargestSupport());
+                    final boolean fits = histogram != null && (terminal.getHeight() <= 0 || lineCount(histogram) < terminal.getHeight() - 1);
+                    drawnLines = redraw(terminal, fits ? histogram + progressLine : progressLine, drawnLines);
+                }
+            }
+        } catch (CancellationException | InterruptedException e) {
+            progress.cancel();
+            task.cancel(true);
+            awaitCancelled(evaluator);
+            if (output.getBuffer().length() == 0) {
+                output.write("Evaluation cancelled\n");
+            }
+        } catch (ExecutionException ee) {
+            output.write(String.format("Problem while evaluating statement: %s\n", ee.getCause().getMessage()));
+        } finally {
+            terminal.handle(Terminal.Signal.INT, previousHandler);
+        }
+
+        redraw(terminal, "", drawnLines);
+        writer.print(output);
+        writer.flush();
+    }
+
+    /**
+     * Replaces the last {@code previousLines} lines on the terminal with the given text.
+     *
+     * @return The number of lines in the given text.
+     */
+    private static int redraw(Terminal terminal, String text, int previousLines) {
+        for (int i = 0; i < previousLines; i++) {
+            terminal.puts(Capability.cursor_up);
+        }
+        terminal.puts(Capability.carriage_return);
+        terminal.puts(Capability.clr_eos);
+        terminal.writer().print(text);
+        terminal.writer().flush();
+
+        return lineCount(text);
+    }
+
+    private static int lineCount(String text) {
+        return (int) text.chars().filter(c -> c == '\n').count();
+    }
+
+    /**
+     * Waits for a cancelled statement to stop, so that its output is complete and the next statement sees the
+     * definitions it made.
+     */
+    private static void awaitCancelled(ExecutorService evaluator) {
+        try {
+            evaluator.submit(() -> {}).get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ee) {
+            throw new IllegalStateException(ee);
+        }
+    }
+
+    private void evaluate(String line, DefinitionGraph definitions, Displayer displayer, Profiler profiler, ProgressMonitor progress, AtomicReference<String> estimate, PrintWriter writer) {
+        try {
+            if (line.startsWith(PROBABILITY_COMMAND) || line.startsWith(QUANTILE_COMMAND)) {
+                query(line, writer);
+                return;
+            }
+
+            final boolean profile = line.startsWith(PROFILE_COMMAND);
+            final boolean explain = line.startsWith(EXPLAIN_COMMAND);
+            final boolean progressiveLine = line.startsWith(PROGRESSIVE_COMMAND);
+            final boolean stats = line.startsWith(STATS_COMMAND);
+            final Matcher top = TOP_COMMAND.matcher(line);
+            final boolean topLine = top.matches();
+            final String statements = profile ? line.substring(PROFILE_COMMAND.length()) :
+                    explain ? line.substring(EXPLAIN_COMMAND.length()) :
+                    progressiveLine ? line.substring(PROGRESSIVE_COMMAND.length()) :
+                    stats ? line.substring(STATS_COMMAND.length()) :
+                    topLine ? top.group(2) :
+                    line;
+            final Evaluation eval = parser.parse(definitions.getScope(), statements);
+            printUpdate(definitions.define(eval.getDefinitions()), writer);
+            final Statement.Visitor printer = new Statement.Visitor() {
+                @Override
+                public void visitExpression(Expression<?> expression) {
+                    if (explain) {
+                        writer.printf("%s", planner.plan(expression).explain(expression));
+                    } else if (stats) {
+                        writer.printf("%s", displayer.createStatistics(expression.toString(), new StatisticsCalculator(budget, planner).calculate(expression)));
+                    } else if (topLine) {
+                        writer.printf("%s", displayer.createTopOutcomes(expression.toString(), new BestFirstEnumerator(budget, planner).enumerate(expression, Integer.parseInt(top.group(1)))));
+                    } else if ((progressive || progressiveLine) && !profile) {
+                        printProgressiveResults(expression, progress, estimate, displayer, writer);
+                    } else {
+                        printResults(expression, profile ? profiler : null, progress, displayer, writer);
+                    }
+                }
+
+                @Override
+                public void visitSweep(Sweep sweep) {
+                    writer.printf("%s", displayer.createSweepTable(sweep, new SweepEvaluator(budget, planner).evaluate(sweep, progress)));
+                }
+
+                @Override
+                public void visitSolve(Solve solve) {
+                    writer.printf("%s", displayer.createSolution(solve, new SweepEvaluator(budget, planner).solve(solve, progress)));
+                }
+            };
+            for (var statement : eval.getStatements()) {
+                statement.accept(printer);
+            }
+        } catch (RecognitionException re) {
+            writer.printf("Invalid symbol: line %d, position %d\n", re.getOffendingToken().getLine(), re.getOffendingToken().getCharPositionInLine());
+        } catch (EvaluationException.UndefinedIdentifierException | EvaluationException.BudgetExceededException | EvaluationException.CancelledException ee) {
+            writer.printf("%s\n", ee.getMessage());
+        } catch (RuntimeException re) {
+            writer.printf("Problem while evaluating statement: %s\n", re.getMessage());
+        } finally {
+            writer.flush();
+        }
+    }
+
+    static void printUpdate(DefinitionGraph.Update update, PrintWriter writer) {
+        if (!update.getRecomputed().isEmpty()) {
+            writer.printf("Recomputed dependent definitions: %s\n", String.join(", ", update.getRecomputed()));
+        }
+        update.getFailures().forEach((identifier, reason) -> writer.printf("Kept previous definition of [%s]: %s\n", identifier, reason));
+    }
+
+    /**
+     * Prints the final estimate of a progressive evaluation, while publishing intermediate histograms for the prompt
+     * thread to draw. If the statement is cancelled, the most recent sampled histogram is printed instead.
+     */
+    private <T extends Comparable<T>> void printProgressiveResults(Expression<T> expression, ProgressMonitor progress, AtomicReference<String> histogram,
+                                                                   Displayer displayer, PrintWriter writer) {
+        final ProgressiveEvaluation<T> evaluation = ProgressiveEvaluation.start(expression, budget, planner, progress);
+        evaluation.onEstimate(estimate -> histogram.set(displayer.createEstimateHistogram(expression.toString(), estimate)));
+        Estimate<T> result;
+        try {
+            result = evaluation.getResult().get();
+        } catch (InterruptedException ie) {
+            evaluation.cancel();
+            try {
+                result = evaluation.getResult().join();
+            } catch (CompletionException ce) {
+                throw (RuntimeException) ce.getCause();
+            }
+        } catch (ExecutionException ee) {
+            throw (RuntimeException) ee.getCause();
+        } finally {
+            histogram.set(null);
+        }
+
+        lastResult = Distribution.of(result.getResults());
+        writer.printf("%s", displayer.createEstimateHistogram(expression.toString(), result));
+    }
+
+    private void query(String line, PrintWriter writer) {
+        final Distribution<?> distribution = lastResult;
+        if (distribution == null) {
+            writer.printf("No result to query yet\n");
+        } else if (line.startsWith(PROBABILITY_COMMAND)) {
+            writer.printf("%s", DistributionQueries.probability(distribution, line.substring(PROBABILITY_COMMAND.length())));
+        } else {
+            writer.printf("%s", DistributionQueries.quantiles(distribution, line.substring(QUANTILE_COMMAND.length())));
+        }
+    }
+
+    private void printResults(Expression<?> expression, Profiler profiler, ProgressMonitor progress, Displayer displayer, PrintWriter writer) {
+        final EvaluationBudget.Result<?> result = budget.calculateResults(expression, progress, planner);
+        lastResult = Distribution.of(result.getResults());
+        final String title = result.isSampled() ? expression + " (" + result.getApproximation() + ")" : expression.toString();
+        final String sortedHistogram = displayer.createSortedHistogram(title, result.getResults()
+                                                                                    .values()
+                                                                                    .stream());
+        writer.printf("%s", sortedHistogram);
+        if (profiler != null) {
+            writer.printf("%s", profiler.render(expression));
         }
     }
 }
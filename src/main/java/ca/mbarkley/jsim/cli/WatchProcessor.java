@@ -0,0 +1,179 @@
+package ca.mbarkley.jsim.cli;
+
+import ca.mbarkley.jsim.eval.DefinitionGraph;
+import ca.mbarkley.jsim.eval.Evaluation;
+import ca.mbarkley.jsim.eval.EvaluationBudget;
+import ca.mbarkley.jsim.eval.EvaluationException;
+import ca.mbarkley.jsim.eval.Parser;
+import ca.mbarkley.jsim.eval.Planner;
+import ca.mbarkley.jsim.eval.ResultCache;
+import ca.mbarkley.jsim.eval.Solve;
+import ca.mbarkley.jsim.eval.Statement;
+import ca.mbarkley.jsim.eval.Sweep;
+import ca.mbarkley.jsim.eval.SweepEvaluator;
+import ca.mbarkley.jsim.model.EvaluationMonitor;
+import ca.mbarkley.jsim.model.Expression;
+import org.antlr.v4.runtime.RecognitionException;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Evaluates script files and evaluates them again whenever they change on disk. Definitions whose text is unchanged
+ * are not parsed again, redefinitions recompute only the definitions that depend on them, definitions deleted from a
+ * file are removed, and results of expressions that did not change are reused.
+ */
+public class WatchProcessor {
+    private static final int RESULT_CACHE_SIZE = 1024;
+    private static final long SETTLE_MILLIS = 100;
+
+    private final EvaluationBudget budget;
+    private final Planner planner;
+    private final Parser parser = new Parser();
+    private final DefinitionGraph definitions = new DefinitionGraph();
+    private final ResultCache cache = new ResultCache(RESULT_CACHE_SIZE);
+    private final Map<String, Set<String>> definedByFile = new HashMap<>();
+    private final Displayer displayer;
+    private final PrintWriter writer;
+    private final Statement.Visitor printer = new Statement.Visitor() {
+        @Override
+        public void visitExpression(Expression<?> expression) {
+            printResults(expression);
+        }
+
+        @Override
+        public void visitSweep(Sweep sweep) {
+            writer.print(displayer.createSweepTable(sweep, new SweepEvaluator(budget, planner).evaluate(sweep)));
+        }
+
+        @Override
+        public void visitSolve(Solve solve) {
+            writer.print(displayer.createSolution(solve, new SweepEvaluator(budget, planner).solve(solve)));
+        }
+    };
+
+    public WatchProcessor(int desiredWidth, EvaluationBudget budget, Planner planner, PrintWriter writer) {
+        this.budget = budget;
+        this.planner = planner;
+        this.displayer = new Displayer(() -> desiredWidth);
+        this.writer = writer;
+    }
+
+    /**
+     * Evaluates the files, and then again every time one of them changes, until interrupted.
+     */
+    public void watch(List<Path> files) throws IOException {
+        final List<Path> watched = files.stream()
+                                        .map(file -> file.toAbsolutePath().normalize())
+                                        .collect(toList());
+        run(watched);
+        try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            final Set<Path> directories = new HashSet<>();
+            for (var file : watched) {
+                if (directories.add(file.getParent())) {
+                    file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                }
+            }
+
+            while (true) {
+                final Optional<Path> changed = awaitChange(watcher, watched);
+                if (changed.isPresent()) {
+                    // Editors often write files in several steps, so wait for them to finish before reading
+                    Thread.sleep(SETTLE_MILLIS);
+                    drain(watcher);
+                    writer.printf("--- %s changed ---\n", changed.get().getFileName());
+                    run(watched);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void run(List<Path> files) {
+        for (var file : files) {
+            try {
+                run(file.getFileName().toString(), Files.readString(file));
+            } catch (IOException e) {
+                writer.printf("%s: Error reading file: %s\n", file.getFileName(), e.getMessage());
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * Evaluates a script, and then removes the definitions that it made when it was last run but no longer makes.
+     */
+    void run(String name, String script) throws IOException {
+        final Set<String> defined = new HashSet<>();
+        final StatementReader reader = new StatementReader(new StringReader(script));
+        for (var next = reader.next(); next.isPresent(); next = reader.next()) {
+            final StatementReader.Statement statement = next.get();
+            final Optional<String> current = definitions.identifierOf(statement.getText());
+            if (current.isPresent()) {
+                defined.add(current.get());
+                continue;
+            }
+
+            try {
+                final Evaluation eval = parser.parse(definitions.getScope(), statement.getText());
+                eval.getDefinitions().forEach(definition -> defined.add(definition.getIdentifier()));
+                TerminalProcessor.printUpdate(definitions.define(eval.getDefinitions()), writer);
+                for (var stmt : eval.getStatements()) {
+                    stmt.accept(printer);
+                }
+            } catch (RecognitionException re) {
+                writer.printf("%s: Invalid symbol: line %d, position %d\n", name, statement.getLine(), statement.getColumn() + re.getOffendingToken().getCharPositionInLine());
+            } catch (EvaluationException e) {
+                writer.printf("%s: line %d: %s\n", name, statement.getLine(), e.getMessage());
+            }
+        }
+
+        final Set<String> removed = new HashSet<>(definedByFile.getOrDefault(name, Set.of()));
+        definedByFile.put(name, defined);
+        // Definitions that moved to another watched file are still current
+        definedByFile.values().forEach(removed::removeAll);
+        TerminalProcessor.printUpdate(definitions.remove(removed), writer);
+    }
+
+    private <T extends Comparable<T>> void printResults(Expression<T> expression) {
+        final EvaluationBudget.Result<T> result = cache.computeIfAbsent(expression, () -> budget.calculateResults(expression, EvaluationMonitor.NONE, planner));
+        final String title = result.isSampled() ? expression + " (" + result.getApproximation() + ")" : expression.toString();
+        writer.print(displayer.createSortedHistogram(title, result.getResults()
+                                                                .values()
+                                                                .stream()));
+    }
+
+    private static Optional<Path> awaitChange(WatchService watcher, List<Path> watched) throws InterruptedException {
+        final WatchKey key = watcher.take();
+        Optional<Path> changed = Optional.empty();
+        for (var event : key.pollEvents()) {
+            if (event.context() instanceof Path) {
+                final Path path = ((Path) key.watchable()).resolve((Path) event.context()).normalize();
+                if (watched.contains(path)) {
+                    changed = Optional.of(path);
+                }
+            }
+        }
+        key.reset();
+
+        return changed;
+    }
+
+    private static void drain(WatchService watcher) {
+        for (var key = watcher.poll(); key != null; key = watcher.poll()) {
+            key.pollEvents();
+            key.reset();
+        }
+    }
+}
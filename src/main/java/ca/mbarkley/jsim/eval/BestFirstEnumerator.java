@@ -0,0 +1,210 @@
+package ca.mbarkley.jsim.eval;
+
+import ca.mbarkley.jsim.model.BinaryOperator;
+import ca.mbarkley.jsim.model.EvaluationMonitor;
+import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.model.Expression.BinaryOpExpression;
+import ca.mbarkley.jsim.model.Expression.Bracketed;
+import ca.mbarkley.jsim.prob.Event;
+import lombok.Value;
+
+import java.util.*;
+
+import static java.util.Comparator.comparingDouble;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Finds the most likely outcomes of an expression without computing its whole distribution. The expression is split
+ * into independent operands joined by binary operators, each operand is evaluated and sorted by probability, and
+ * combinations of operand values are enumerated best-first with a priority queue, so that outcomes are discovered in
+ * roughly decreasing order of probability. Enumeration stops once the most likely outcomes can no longer change, or
+ * after a bounded number of combinations, so memory stays bounded even when the full distribution would be huge.
+ */
+public class BestFirstEnumerator {
+    public static final long DEFAULT_MAX_COMBINATIONS = 1_000_000;
+    private static final int FIRST_CHECK = 1024;
+
+    private final EvaluationBudget budget;
+    private final Planner planner;
+    private final long maxCombinations;
+
+    public BestFirstEnumerator(EvaluationBudget budget, Planner planner) {
+        this(budget, planner, DEFAULT_MAX_COMBINATIONS);
+    }
+
+    public BestFirstEnumerator(EvaluationBudget budget, Planner planner, long maxCombinations) {
+        this.budget = budget;
+        this.planner = planner;
+        this.maxCombinations = maxCombinations;
+    }
+
+    @Value
+    public static class TopOutcomes<T> {
+        /**
+         * The most likely outcomes, in decreasing order of probability.
+         */
+        List<Event<T>> events;
+        /**
+         * The probability of every other outcome.
+         */
+        double remainder;
+        /**
+         * The probability of the combinations that were not enumerated, which bounds how much too low any probability
+         * in {@link #events} may be. Zero if every combination was enumerated.
+         */
+        double unexplored;
+        boolean sampled;
+    }
+
+    /**
+     * An operand, with its values sorted by decreasing probability.
+     */
+    private static class Operand {
+        final Object[] values;
+        final double[] probabilities;
+
+        Operand(List<? extends Event<?>> events) {
+            values = new Object[events.size()];
+            probabilities = new double[events.size()];
+            for (int i = 0; i < events.size(); i++) {
+                values[i] = events.get(i).getValue();
+                probabilities[i] = events.get(i).getProbability();
+            }
+        }
+    }
+
+    /**
+     * A combination of one value of each operand, identified by an index into the sorted values of each. Only
+     * operands from {@code last} onwards are advanced, so that every combination is queued exactly once.
+     */
+    @Value
+    private static class Combination {
+        int[] indices;
+        int last;
+        double probability;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Comparable<T>> TopOutcomes<T> enumerate(Expression<T> expression, int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("Number of outcomes must be positive");
+        }
+
+        final List<Expression<?>> operandExpressions = new ArrayList<>();
+        collectOperands(expression, operandExpressions);
+        final List<Operand> operands = new ArrayList<>(operandExpressions.size());
+        boolean sampled = false;
+        double total = 1.0;
+        for (var operandExpression : operandExpressions) {
+            final EvaluationBudget.Result<?> result = budget.calculateResults(operandExpression, EvaluationMonitor.NONE, planner);
+            sampled |= result.isSampled();
+            final List<? extends Event<?>> events = result.getResults()
+                                                          .values()
+                                                          .stream()
+                                                          .sorted(comparingDouble((Event<?> event) -> event.getProbability()).reversed())
+                                                          .collect(toList());
+            final Operand operand = new Operand(events);
+            operands.add(operand);
+            total *= Arrays.stream(operand.probabilities).sum();
+        }
+
+        final PriorityQueue<Combination> queue = new PriorityQueue<>(comparingDouble(Combination::getProbability).reversed());
+        final int[] first = new int[operands.size()];
+        queue.add(new Combination(first, 0, probability(operands, first)));
+        final Map<T, Double> outcomes = new HashMap<>();
+        double explored = 0.0;
+        long enumerated = 0;
+        long nextCheck = FIRST_CHECK;
+        while (!queue.isEmpty() && enumerated < maxCombinations) {
+            final Combination combination = queue.poll();
+            outcomes.merge((T) combine(expression, operands, combination.getIndices(), new int[]{0}), combination.getProbability(), Double::sum);
+            explored += combination.getProbability();
+            enumerated++;
+
+            for (int i = combination.getLast(); i < operands.size(); i++) {
+                if (combination.getIndices()[i] + 1 < operands.get(i).values.length) {
+                    final int[] next = combination.getIndices().clone();
+                    next[i]++;
+                    queue.add(new Combination(next, i, probability(operands, next)));
+                }
+            }
+
+            // Checking sorts every outcome found so far, so checks are spaced out geometrically
+            if (enumerated == nextCheck) {
+                nextCheck *= 2;
+                if (isSettled(outcomes, k, total - explored)) {
+                    break;
+                }
+            }
+        }
+
+        final double unexplored = queue.isEmpty() ? 0.0 : Math.max(0.0, total - explored);
+        final List<Event<T>> top = outcomes.entrySet()
+                                           .stream()
+                                           .sorted(Map.Entry.<T, Double>comparingByValue().reversed())
+                                           .limit(k)
+                                           .map(e -> new Event<>(e.getKey(), e.getValue()))
+                                           .collect(toList());
+        final double listed = top.stream().mapToDouble(Event::getProbability).sum();
+
+        return new TopOutcomes<>(top, Math.max(0.0, total - listed), unexplored, sampled);
+    }
+
+    /**
+     * @return True if no outcome outside the current top {@code k} could overtake one inside it, even if all of the
+     * unexplored probability went to it.
+     */
+    private static <T> boolean isSettled(Map<T, Double> outcomes, int k, double unexplored) {
+        final double[] largest = outcomes.values()
+                                         .stream()
+                                         .sorted(Comparator.reverseOrder())
+                                         .limit(k + 1)
+                                         .mapToDouble(Double::doubleValue)
+                                         .toArray();
+        if (largest.length < k) {
+            return false;
+        }
+        final double challenger = largest.length > k ? largest[k] : 0.0;
+
+        return largest[k - 1] >= challenger + unexplored;
+    }
+
+    private static void collectOperands(Expression<?> expression, List<Expression<?>> operands) {
+        if (expression instanceof Bracketed) {
+            collectOperands(((Bracketed<?>) expression).getSubExpression(), operands);
+        } else if (expression instanceof BinaryOpExpression) {
+            collectOperands(((BinaryOpExpression<?, ?>) expression).getLeft(), operands);
+            collectOperands(((BinaryOpExpression<?, ?>) expression).getRight(), operands);
+        } else {
+            operands.add(expression);
+        }
+    }
+
+    /**
+     * Computes the value of the expression for one combination, visiting operands in the same order as
+     * {@link #collectOperands(Expression, List)}.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object combine(Expression<?> expression, List<Operand> operands, int[] indices, int[] next) {
+        if (expression instanceof Bracketed) {
+            return combine(((Bracketed<?>) expression).getSubExpression(), operands, indices, next);
+        } else if (expression instanceof BinaryOpExpression) {
+            final BinaryOpExpression<?, ?> binaryOp = (BinaryOpExpression<?, ?>) expression;
+            final Object left = combine(binaryOp.getLeft(), operands, indices, next);
+            final Object right = combine(binaryOp.getRight(), operands, indices, next);
+            return ((BinaryOperator) binaryOp.getOperator()).evaluate((Comparable) left, (Comparable) right);
+        } else {
+            final int operand = next[0]++;
+            return operands.get(operand).values[indices[operand]];
+        }
+    }
+
+    private static double probability(List<Operand> operands, int[] indices) {
+        double probability = 1.0;
+        for (int i = 0; i < indices.length; i++) {
+            probability *= operands.get(i).probabilities[indices[i]];
+        }
+
+        return probability;
+    }
+}
@@ -0,0 +1,71 @@
+package ca.mbarkley.jsim.eval;
+
+import ca.mbarkley.jsim.model.Expression;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Shares one in-flight evaluation between concurrent requests for structurally equal expressions. The first request
+ * for an expression evaluates it, and requests that arrive before it finishes wait for and receive the same result
+ * (or exception). Instances are thread-safe.
+ */
+public class CoalescingEvaluator {
+    private final Map<Expression<?>, CompletableFuture<EvaluationBudget.Result<?>>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public <T extends Comparable<T>> EvaluationBudget.Result<T> evaluate(Expression<T> expression, Supplier<EvaluationBudget.Result<T>> evaluation) {
+        requests.increment();
+        final CompletableFuture<EvaluationBudget.Result<?>> future = new CompletableFuture<>();
+        final CompletableFuture<EvaluationBudget.Result<?>> existing = inFlight.putIfAbsent(expression, future);
+        if (existing != null) {
+            coalesced.increment();
+            try {
+                return (EvaluationBudget.Result<T>) existing.join();
+            } catch (CompletionException ce) {
+                if (ce.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ce.getCause();
+                } else {
+                    throw ce;
+                }
+            }
+        }
+
+        try {
+            final EvaluationBudget.Result<T> result = evaluation.get();
+            future.complete(result);
+
+            return result;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(expression, future);
+        }
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * @return The number of requests that received the result of another request's evaluation.
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return The fraction of requests that did not need their own evaluation.
+     */
+    public double getCoalescingRatio() {
+        final long requestCount = getRequests();
+        return requestCount == 0 ? 0.0 : getCoalesced() / (double) requestCount;
+    }
+}
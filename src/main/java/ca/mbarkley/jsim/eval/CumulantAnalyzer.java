@@ -0,0 +1,81 @@
+package ca.mbarkley.jsim.eval;
+
+import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.model.Expression.BinaryOpExpression;
+import ca.mbarkley.jsim.model.Expression.Bracketed;
+import ca.mbarkley.jsim.model.Expression.Constant;
+import ca.mbarkley.jsim.model.IntegerExpression.HomogeneousDicePool;
+import ca.mbarkley.jsim.model.Types;
+import ca.mbarkley.jsim.prob.Cumulants;
+
+import java.util.Optional;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * Derives the {@link Cumulants} of integer expressions without evaluating them. Sums and differences of dice pools
+ * and constants, and their products with constants, are analyzed, since the terms of these are independent. Other
+ * sub-expressions are either rejected, or evaluated by a fallback and summarized.
+ */
+public class CumulantAnalyzer {
+
+    /**
+     * @return The cumulants of the expression, if they can be derived without evaluating any part of it.
+     */
+    public Optional<Cumulants> analyze(Expression<?> expression) {
+        return Optional.ofNullable(derive(expression, subExpression -> null));
+    }
+
+    /**
+     * @param fallback Computes the cumulants of sub-expressions that cannot be analyzed, typically by evaluating them.
+     */
+    public Cumulants analyze(Expression<?> expression, Function<Expression<?>, Cumulants> fallback) {
+        return derive(expression, fallback);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Cumulants derive(Expression<?> expression, Function<Expression<?>, Cumulants> fallback) {
+        if (!Types.INTEGER_TYPE.equals(expression.getType())) {
+            return fallback.apply(expression);
+        } else if (expression instanceof Constant) {
+            return Cumulants.constant(((Constant<Integer>) expression).getValue());
+        } else if (expression instanceof HomogeneousDicePool) {
+            final HomogeneousDicePool pool = (HomogeneousDicePool) expression;
+            return Cumulants.dicePool(pool.getNumberOfDice(), pool.getDiceSides());
+        } else if (expression instanceof Bracketed) {
+            return derive(((Bracketed<?>) expression).getSubExpression(), fallback);
+        } else if (expression instanceof BinaryOpExpression) {
+            return deriveBinaryOp((BinaryOpExpression<?, ?>) expression, fallback);
+        } else {
+            return fallback.apply(expression);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Cumulants deriveBinaryOp(BinaryOpExpression<?, ?> binaryOp, Function<Expression<?>, Cumulants> fallback) {
+        final Expression<?> left = binaryOp.getLeft();
+        final Expression<?> right = binaryOp.getRight();
+        switch (binaryOp.getOperator().getSymbol()) {
+            case "+":
+                return combine(derive(left, fallback), derive(right, fallback), Cumulants::plus);
+            case "-":
+                return combine(derive(left, fallback), derive(right, fallback), Cumulants::minus);
+            case "*":
+                if (right instanceof Constant && Types.INTEGER_TYPE.equals(right.getType())) {
+                    final Cumulants cumulants = derive(left, fallback);
+                    return cumulants == null ? null : cumulants.scale(((Constant<Integer>) right).getValue());
+                } else if (left instanceof Constant && Types.INTEGER_TYPE.equals(left.getType())) {
+                    final Cumulants cumulants = derive(right, fallback);
+                    return cumulants == null ? null : cumulants.scale(((Constant<Integer>) left).getValue());
+                } else {
+                    return fallback.apply(binaryOp);
+                }
+            default:
+                return fallback.apply(binaryOp);
+        }
+    }
+
+    private static Cumulants combine(Cumulants left, Cumulants right, BinaryOperator<Cumulants> operator) {
+        return left == null || right == null ? null : operator.apply(left, right);
+    }
+}
@@ -0,0 +1,23 @@
+package ca.mbarkley.jsim.eval;
+
+import ca.mbarkley.jsim.model.Expression;
+import lombok.Value;
+
+import java.util.Set;
+
+/**
+ * A parsed {@code define} statement, along with the identifiers it refers to.
+ */
+@Value
+public class Definition {
+    String identifier;
+    /**
+     * The text of the statement, which can be parsed again to recompute the definition in a different scope.
+     */
+    String source;
+    Expression<?> expression;
+    /**
+     * Identifiers referred to by the definition, including let-bound identifiers.
+     */
+    Set<String> references;
+}
@@ -0,0 +1,173 @@
+package ca.mbarkley.jsim.eval;
+
+import ca.mbarkley.jsim.model.Expression;
+import lombok.Value;
+
+import java.util.*;
+
+/**
+ * Tracks which definitions refer to which others, so that redefining an identifier also recomputes every definition
+ * that depends on it, directly or transitively, while leaving the rest untouched. Definitions are otherwise resolved
+ * when they are parsed, so without this a redefinition only affects statements parsed after it.
+ */
+public class DefinitionGraph {
+    private final Parser parser = new Parser();
+    private final Map<String, Definition> definitions = new HashMap<>();
+    private final Map<String, Set<String>> dependents = new HashMap<>();
+    /**
+     * The identifier defined by each current definition source.
+     */
+    private final Map<String, String> sources = new HashMap<>();
+    private LexicalScope scope = new LexicalScope(Map.of());
+
+    @Value
+    public static class Update {
+        /**
+         * Identifiers that were recomputed because a definition they depend on changed, in the order they were
+         * recomputed.
+         */
+        List<String> recomputed;
+        /**
+         * Dependent definitions that could not be recomputed in the new scope, with the reasons. These keep their
+         * previous values.
+         */
+        Map<String, String> failures;
+    }
+
+    public LexicalScope getScope() {
+        return scope;
+    }
+
+    /**
+     * @return True if the given statement is the current source of one of the definitions.
+     */
+    public boolean isCurrent(String source) {
+        return sources.containsKey(source.trim());
+    }
+
+    /**
+     * @return The identifier defined by the given statement, if it is the current source of a definition.
+     */
+    public Optional<String> identifierOf(String source) {
+        return Optional.ofNullable(sources.get(source.trim()));
+    }
+
+    /**
+     * Applies the given definitions in order and then recomputes every definition that depends on them.
+     */
+    public Update define(List<Definition> newDefinitions) {
+        final Set<String> changed = new LinkedHashSet<>();
+        for (var definition : newDefinitions) {
+            final Definition previous = definitions.get(definition.getIdentifier());
+            if (previous == null || !previous.getExpression().equals(definition.getExpression())) {
+                changed.add(definition.getIdentifier());
+            }
+            put(definition);
+        }
+
+        final Set<String> redefined = new HashSet<>();
+        newDefinitions.forEach(definition -> redefined.add(definition.getIdentifier()));
+
+        return recomputeDependents(changed, redefined);
+    }
+
+    /**
+     * Removes the given definitions and then tries to recompute every definition that depends on them. Dependents
+     * that can no longer be parsed keep their previous values.
+     */
+    public Update remove(Set<String> identifiers) {
+        final Set<String> removed = new LinkedHashSet<>();
+        for (var identifier : identifiers) {
+            final Definition previous = definitions.remove(identifier);
+            if (previous != null) {
+                sources.remove(previous.getSource());
+                previous.getReferences().forEach(reference -> dependents.computeIfPresent(reference, (k, set) -> {
+                    set.remove(identifier);
+                    return set;
+                }));
+                removed.add(identifier);
+            }
+        }
+        if (removed.isEmpty()) {
+            return new Update(List.of(), Map.of());
+        }
+
+        final Map<String, Expression<?>> remaining = new HashMap<>();
+        definitions.forEach((identifier, definition) -> remaining.put(identifier, definition.getExpression()));
+        scope = new LexicalScope(remaining);
+
+        return recomputeDependents(removed, removed);
+    }
+
+    private Update recomputeDependents(Set<String> changed, Set<String> excluded) {
+        final List<String> recomputed = new ArrayList<>();
+        final Map<String, String> failures = new LinkedHashMap<>();
+        for (var identifier : dependentsInDependencyOrder(changed)) {
+            if (!excluded.contains(identifier)) {
+                try {
+                    final Evaluation evaluation = parser.parse(scope, definitions.get(identifier).getSource());
+                    evaluation.getDefinitions().forEach(this::put);
+                    recomputed.add(identifier);
+                } catch (RuntimeException e) {
+                    failures.put(identifier, e.getMessage());
+                }
+            }
+        }
+
+        return new Update(recomputed, failures);
+    }
+
+    public Optional<Expression<?>> lookup(String identifier) {
+        return Optional.ofNullable(definitions.get(identifier)).map(Definition::getExpression);
+    }
+
+    private void put(Definition definition) {
+        final Definition previous = definitions.put(definition.getIdentifier(), definition);
+        if (previous != null) {
+            sources.remove(previous.getSource());
+            previous.getReferences().forEach(reference -> dependents.computeIfPresent(reference, (k, set) -> {
+                set.remove(definition.getIdentifier());
+                return set;
+            }));
+        }
+        sources.put(definition.getSource(), definition.getIdentifier());
+        definition.getReferences()
+                  .stream()
+                  .filter(reference -> !reference.equals(definition.getIdentifier()))
+                  .forEach(reference -> dependents.computeIfAbsent(reference, k -> new HashSet<>()).add(definition.getIdentifier()));
+        scope = scope.with(definition.getIdentifier(), definition.getExpression());
+    }
+
+    /**
+     * @return All transitive dependents of the given identifiers, ordered so that every definition comes after the
+     * definitions it refers to.
+     */
+    private List<String> dependentsInDependencyOrder(Set<String> roots) {
+        final Set<String> affected = new HashSet<>();
+        final Deque<String> queue = new ArrayDeque<>(roots);
+        while (!queue.isEmpty()) {
+            for (var dependent : dependents.getOrDefault(queue.poll(), Set.of())) {
+                if (definitions.containsKey(dependent) && affected.add(dependent)) {
+                    queue.add(dependent);
+                }
+            }
+        }
+
+        final List<String> ordered = new ArrayList<>();
+        final Set<String> visited = new HashSet<>();
+        affected.stream().sorted().forEach(identifier -> visit(identifier, affected, visited, ordered));
+
+        return ordered;
+    }
+
+    private void visit(String identifier, Set<String> affected, Set<String> visited, List<String> ordered) {
+        if (visited.add(identifier)) {
+            for (var reference : definitions.get(identifier).getReferences()) {
+                if (affected.contains(reference)) {
+                    visit(reference, affected, visited, ordered);
+                }
+            }
+            ordered.add(identifier);
+        }
+    }
+}
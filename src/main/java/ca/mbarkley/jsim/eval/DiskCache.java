@@ -0,0 +1,213 @@
+package ca.mbarkley.jsim.eval;
+
+import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.model.Expression.CustomDie;
+import ca.mbarkley.jsim.model.Types;
+import ca.mbarkley.jsim.prob.Event;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * A cache of exact integer and boolean distributions in memory-mapped files, shared by every process on the host that
+ * uses the same directory. Files are named by a hash of the canonical form of their expression, and also contain the
+ * canonical form itself so that hash collisions are detected. Files are written to a temporary name and atomically
+ * moved into place, so readers never see partial results. When the directory grows beyond its size limit, the least
+ * recently used files are deleted.
+ */
+public class DiskCache {
+    public static final DiskCache NONE = new DiskCache(null, 0);
+
+    private static final int MAGIC = 0x4A53494D;
+    private static final int VERSION = 1;
+    private static final byte INTEGER_VALUES = 0;
+    private static final byte BOOLEAN_VALUES = 1;
+    private static final String SUFFIX = ".dist";
+
+    private final Path directory;
+    private final long maxBytes;
+
+    public DiskCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Comparable<T>> EvaluationBudget.Result<T> computeIfAbsent(Expression<T> expression, Supplier<EvaluationBudget.Result<T>> evaluation) {
+        if (directory == null || !isCacheable(expression)) {
+            return evaluation.get();
+        }
+
+        final String key = canonicalForm(expression);
+        final Path path = directory.resolve(hash(key) + SUFFIX);
+        final Optional<Map<T, Event<T>>> cached = read(path, key).map(results -> (Map<T, Event<T>>) results);
+        if (cached.isPresent()) {
+            return new EvaluationBudget.Result<>(cached.get(), false, null);
+        }
+
+        final EvaluationBudget.Result<T> result = evaluation.get();
+        if (!result.isSampled()) {
+            write(path, key, Types.BOOLEAN_TYPE.equals(expression.getType()) ? BOOLEAN_VALUES : INTEGER_VALUES, result.getResults());
+            evict();
+        }
+
+        return result;
+    }
+
+    private static boolean isCacheable(Expression<?> expression) {
+        return Types.INTEGER_TYPE.equals(expression.getType()) || Types.BOOLEAN_TYPE.equals(expression.getType());
+    }
+
+    /**
+     * @return A string that is equal for two expressions if and only if they have the same structure. Unlike
+     * {@link Expression#toString()}, this includes implicit grouping and the values of named custom dice.
+     */
+    static String canonicalForm(Expression<?> expression) {
+        final StringBuilder sb = new StringBuilder();
+        canonicalForm(expression, sb);
+
+        return sb.toString();
+    }
+
+    private static void canonicalForm(Expression<?> expression, StringBuilder sb) {
+        sb.append(expression.getClass().getSimpleName())
+          .append(':')
+          .append(expression.getType().name())
+          .append('[')
+          .append(expression instanceof CustomDie ? ((CustomDie<?>) expression).getValues() : expression)
+          .append(']');
+        final List<Expression<?>> children = expression.children();
+        if (!children.isEmpty()) {
+            sb.append('{');
+            for (var child : children) {
+                canonicalForm(child, sb);
+                sb.append(',');
+            }
+            sb.append('}');
+        }
+    }
+
+    private static String hash(String key) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder sb = new StringBuilder();
+            for (var b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Optional<Map<?, ? extends Event<?>>> read(Path path, String key) {
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return Optional.empty();
+            }
+            final byte valueType = buffer.get();
+            final byte[] keyBytes = new byte[buffer.getInt()];
+            buffer.get(keyBytes);
+            if (!key.equals(new String(keyBytes, StandardCharsets.UTF_8))) {
+                return Optional.empty();
+            }
+
+            final int count = buffer.getInt();
+            final Map<Object, Event<Object>> results = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                final int rawValue = buffer.getInt();
+                final Object value = valueType == BOOLEAN_VALUES ? (Object) (rawValue != 0) : (Object) rawValue;
+                results.put(value, new Event<>(value, buffer.getDouble()));
+            }
+            // Mark the file as recently used for eviction
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+
+            return Optional.of(results);
+        } catch (IOException | BufferUnderflowException e) {
+            // Missing, evicted concurrently or truncated: treat as a miss and let the next write replace it
+            return Optional.empty();
+        }
+    }
+
+    private void write(Path path, String key, byte valueType, Map<?, ? extends Event<?>> results) {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final long size = 4 + 4 + 1 + 4 + keyBytes.length + 4 + results.size() * (4L + 8L);
+        try {
+            Files.createDirectories(directory);
+            final Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+            try {
+                try (var channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                    buffer.putInt(MAGIC)
+                          .putInt(VERSION)
+                          .put(valueType)
+                          .putInt(keyBytes.length)
+                          .put(keyBytes)
+                          .putInt(results.size());
+                    for (var event : results.values()) {
+                        final Object value = event.getValue();
+                        buffer.putInt(value instanceof Boolean ? ((Boolean) value ? 1 : 0) : (Integer) value)
+                              .putDouble(event.getProbability());
+                    }
+                    buffer.force();
+                }
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            // The cache is an optimization, so failing to write to it should not fail the evaluation
+            System.err.printf("Unable to write to cache [%s]: %s\n", directory, e.getMessage());
+        }
+    }
+
+    private void evict() {
+        try (Stream<Path> files = Files.list(directory)) {
+            final List<Path> entries = files.filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                                            .collect(toList());
+            final Map<Path, FileTime> lastUsed = new HashMap<>();
+            long totalBytes = 0;
+            for (var entry : entries) {
+                try {
+                    lastUsed.put(entry, Files.getLastModifiedTime(entry));
+                    totalBytes += Files.size(entry);
+                } catch (IOException e) {
+                    // Deleted by a concurrent eviction
+                }
+            }
+
+            final List<Path> leastRecentlyUsedFirst = new ArrayList<>(lastUsed.keySet());
+            leastRecentlyUsedFirst.sort(Comparator.comparing(lastUsed::get));
+            for (var iter = leastRecentlyUsedFirst.iterator(); totalBytes > maxBytes && iter.hasNext(); ) {
+                final Path entry = iter.next();
+                try {
+                    final long size = Files.size(entry);
+                    Files.deleteIfExists(entry);
+                    totalBytes -= size;
+                } catch (IOException e) {
+                    // Deleted by a concurrent eviction
+                }
+            }
+        } catch (IOException e) {
+            System.err.printf("Unable to evict from cache [%s]: %s\n", directory, e.getMessage());
+        }
+    }
+}
@@ -5,8 +5,71 @@ import lombok.Value;
 
 import java.util.List;
 
+import static java.lang.String.format;
+import static java.util.stream.Collectors.toList;
+
 @Value
 public class Evaluation {
     LexicalScope context;
-    List<Expression<?>> expressions;
+    /**
+     * The statements of the parsed script that have results, in order.
+     */
+    List<Statement> statements;
+    /**
+     * The definition statements of the parsed script, in order.
+     */
+    List<Definition> definitions;
+
+    public List<Expression<?>> getExpressions() {
+        return statements.stream()
+                         .filter(ExpressionStatement.class::isInstance)
+                         .<Expression<?>>map(statement -> ((ExpressionStatement) statement).getExpression())
+                         .collect(toList());
+    }
+
+    public List<Sweep> getSweeps() {
+        return statements.stream()
+                         .filter(Sweep.class::isInstance)
+                         .map(Sweep.class::cast)
+                         .collect(toList());
+    }
+
+    public List<Solve> getSolves() {
+        return statements.stream()
+                         .filter(Solve.class::isInstance)
+                         .map(Solve.class::cast)
+                         .collect(toList());
+    }
+
+    /**
+     * For callers that can only evaluate expressions.
+     *
+     * @param usage Where the script is used, for the error message, such as "in requests".
+     * @return The expressions of the script, in order.
+     * @throws EvaluationException If the script has any sweep or solve statements.
+     */
+    public List<Expression<?>> getOnlyExpressions(String usage) {
+        final Statement.Visitor rejectOthers = new Statement.Visitor() {
+            @Override
+            public void visitExpression(Expression<?> expression) {
+            }
+
+            @Override
+            public void visitSweep(Sweep sweep) {
+                throw unsupported(sweep);
+            }
+
+            @Override
+            public void visitSolve(Solve solve) {
+                throw unsupported(solve);
+            }
+
+            private EvaluationException unsupported(Statement statement) {
+                return new EvaluationException(format("Only expressions are supported %s, but found [%s]", usage, statement));
+            }
+        };
+        statements.forEach(statement -> statement.accept(rejectOthers));
+
+        return getExpressions();
+    }
 }
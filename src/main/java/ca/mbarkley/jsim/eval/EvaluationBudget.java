@@ -0,0 +1,147 @@
+package ca.mbarkley.jsim.eval;
+
+import ca.mbarkley.jsim.eval.EvaluationException.BudgetExceededException;
+import ca.mbarkley.jsim.model.EvaluationMonitor;
+import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.model.RuntimeContext;
+import ca.mbarkley.jsim.prob.Event;
+import lombok.Value;
+
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static java.lang.String.format;
+
+/**
+ * Per-statement limits on evaluation time and memory. Statements are checked against the estimates of their
+ * {@link Planner.Plan} before evaluation and are either rejected or approximated by sampling when they are expected
+ * to exceed the budget. The time limit is also enforced while evaluating, in case the estimate was too optimistic.
+ */
+@Value
+public class EvaluationBudget {
+    public static final int DEFAULT_SAMPLES = 100_000;
+    /**
+     * Statements can be small but still need an astronomical number of combinations, so by default they are rejected
+     * when expected to take longer than this rather than only when they are expected to run out of memory.
+     */
+    public static final long DEFAULT_MAX_TIME_MILLIS = 60_000;
+    public static final EvaluationBudget UNLIMITED = new EvaluationBudget(Long.MAX_VALUE, Long.MAX_VALUE, Overrun.REJECT, DEFAULT_SAMPLES);
+
+    public enum Overrun {
+        REJECT, SAMPLE
+    }
+
+    long maxTimeMillis;
+    long maxMemoryBytes;
+    Overrun overrun;
+    int samples;
+
+    @Value
+    public static class Result<T extends Comparable<T>> {
+        Map<T, Event<T>> results;
+        boolean sampled;
+        Planner.Plan plan;
+
+        /**
+         * @return How the results were approximated, or an empty string if they are exact.
+         */
+        public String getApproximation() {
+            if (!sampled) {
+                return "";
+            }
+            final String planned = plan == null ? "" : plan.describeApproximation();
+
+            return planned.isEmpty() ? "sampled" : planned;
+        }
+    }
+
+    /**
+     * @return A budget that rejects statements expected to need more memory than this JVM can provide, or to take
+     * longer than {@link #DEFAULT_MAX_TIME_MILLIS}.
+     */
+    public static EvaluationBudget forAvailableMemory() {
+        return new EvaluationBudget(DEFAULT_MAX_TIME_MILLIS, Runtime.getRuntime().maxMemory(), Overrun.REJECT, DEFAULT_SAMPLES);
+    }
+
+    public boolean allows(Planner.Plan plan, Expression<?> expression) {
+        return plan.getEstimatedNanos(expression) <= maxTimeMillis * 1_000_000.0 && plan.getEstimatedBytes(expression) <= maxMemoryBytes;
+    }
+
+    public <T extends Comparable<T>> Result<T> calculateResults(Expression<T> expression, EvaluationMonitor monitor) {
+        return calculateResults(expression, monitor, Planner.EXACT);
+    }
+
+    public <T extends Comparable<T>> Result<T> calculateResults(Expression<T> expression, EvaluationMonitor monitor, Planner planner) {
+        final Planner.Plan plan = planner.plan(expression);
+        if (allows(plan, expression)) {
+            final RuntimeContext ctx = RuntimeContext.create(withDeadline(monitor, expression), plan);
+
+            return new Result<>(expression.calculateResults(ctx), plan.isApproximate(), plan);
+        } else if (overrun == Overrun.SAMPLE) {
+            return new Result<>(new Sampler(samples).calculateResults(expression), true, plan);
+        } else {
+            throw new BudgetExceededException(expression, plan, this);
+        }
+    }
+
+    private EvaluationMonitor withDeadline(EvaluationMonitor monitor, Expression<?> expression) {
+        if (maxTimeMillis == Long.MAX_VALUE) {
+            return monitor;
+        }
+        final long start = System.currentTimeMillis();
+        final long deadline = maxTimeMillis > Long.MAX_VALUE - start ? Long.MAX_VALUE : start + maxTimeMillis;
+
+        return new DeadlineMonitor(monitor, deadline, expression);
+    }
+
+    @Override
+    public String toString() {
+        return format("time=%s memory=%s on overrun=%s",
+                      maxTimeMillis == Long.MAX_VALUE ? "unlimited" : maxTimeMillis + " ms",
+                      maxMemoryBytes == Long.MAX_VALUE ? "unlimited" : maxMemoryBytes / (1024 * 1024) + " MiB",
+                      overrun.name().toLowerCase());
+    }
+
+    /**
+     * Checks the clock once for every {@link #CHECK_INTERVAL} events, since events are far cheaper to produce than a
+     * clock read. A statement is evaluated on one thread, so the count needs no synchronization.
+     */
+    private class DeadlineMonitor implements EvaluationMonitor {
+        private static final int CHECK_INTERVAL = 1024;
+
+        private final EvaluationMonitor delegate;
+        private final long deadline;
+        private final Expression<?> statement;
+        private int events;
+
+        DeadlineMonitor(EvaluationMonitor delegate, long deadline, Expression<?> statement) {
+            this.delegate = delegate;
+            this.deadline = deadline;
+            this.statement = statement;
+        }
+
+        @Override
+        public <T extends Comparable<T>> Stream<Event<T>> monitor(Expression<T> expression, Supplier<Stream<Event<T>>> events) {
+            checkDeadline();
+            return delegate.monitor(expression, events)
+                           .peek(event -> {
+                               if (++this.events % CHECK_INTERVAL == 0) {
+                                   checkDeadline();
+                               }
+                           });
+        }
+
+        @Override
+        public void checkpoint() {
+            checkDeadline();
+            delegate.checkpoint();
+        }
+
+        private void checkDeadline() {
+            if (System.currentTimeMillis() > deadline) {
+                throw new BudgetExceededException(statement, EvaluationBudget.this);
+            }
+        }
+    }
+}
@@ -27,6 +27,10 @@ public class EvaluationException extends RuntimeException {
         super(cause);
     }
 
+    protected EvaluationException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+
     public static class UndefinedIdentifierException extends EvaluationException {
         public UndefinedIdentifierException(String identifier) {
             super(format("Undefined identifier [%s]", identifier));
@@ -79,4 +83,40 @@ public class EvaluationException extends RuntimeException {
             super(format("Unknown operator [%s] for types [%s] and [%s]", symbol, left.name(), right.name()));
         }
     }
+
+    public static class BudgetExceededException extends EvaluationException {
+        public BudgetExceededException(Expression<?> expression, Planner.Plan plan, EvaluationBudget budget) {
+            super(format("Statement [%s] is estimated to exceed the evaluation budget [%s] with [%s], time=%.0f ms, memory=%.0f MiB",
+                         expression, budget, plan.getNodePlan(expression).getEstimate(),
+                         plan.getEstimatedNanos(expression) / 1_000_000.0, plan.getEstimatedBytes(expression) / (1024.0 * 1024.0)));
+        }
+
+        public BudgetExceededException(Expression<?> expression, EvaluationBudget budget) {
+            super(format("Statement [%s] exceeded the evaluation budget [%s] while evaluating", expression, budget));
+        }
+    }
+
+    public static class InvalidSyntaxException extends EvaluationException {
+        public InvalidSyntaxException(int line, int position, Throwable cause) {
+            super(format("Invalid symbol: line %d, position %d", line, position), cause);
+        }
+    }
+
+    /**
+     * Signals that a sample failed the condition of a {@code given} expression and must be drawn again. The single
+     * instance has no stack trace, since it is thrown for every rejected sample.
+     */
+    public static class RejectedSampleException extends EvaluationException {
+        public static final RejectedSampleException INSTANCE = new RejectedSampleException();
+
+        private RejectedSampleException() {
+            super("Sample rejected by condition", null, false, false);
+        }
+    }
+
+    public static class CancelledException extends EvaluationException {
+        public CancelledException() {
+            super("Evaluation cancelled");
+        }
+    }
 }
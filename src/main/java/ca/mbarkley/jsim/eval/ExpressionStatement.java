@@ -0,0 +1,22 @@
+package ca.mbarkley.jsim.eval;
+
+import ca.mbarkley.jsim.model.Expression;
+import lombok.Value;
+
+/**
+ * A statement whose result is the distribution of a single expression.
+ */
+@Value
+public class ExpressionStatement implements Statement {
+    Expression<?> expression;
+
+    @Override
+    public void accept(Visitor visitor) {
+        visitor.visitExpression(expression);
+    }
+
+    @Override
+    public String toString() {
+        return expression.toString();
+    }
+}
@@ -1,20 +1,37 @@
 package ca.mbarkley.jsim.eval;
 
 import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.util.PersistentMap;
 import lombok.Value;
 
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Definitions visible while parsing. Scopes share structure, so adding a definition does not copy the ones before it.
+ */
 @Value
 public class LexicalScope {
-    Map<String, Expression<?>> definitions;
+    PersistentMap<String, Expression<?>> definitions;
+    /**
+     * The variable of the enclosing sweep or solve statement, or null outside of one. Only this variable can be used
+     * as a number of dice, as in {@code nd6}.
+     */
+    String sweepVariable;
+
+    public LexicalScope(Map<String, Expression<?>> definitions) {
+        this(definitions, null);
+    }
+
+    private LexicalScope(Map<String, Expression<?>> definitions, String sweepVariable) {
+        this.definitions = PersistentMap.copyOf(definitions);
+        this.sweepVariable = sweepVariable;
+    }
 
     public LexicalScope with(String identifier, Expression<?> value) {
-        final Map<String, Expression<?>> defCopy = new HashMap<>(definitions);
-        defCopy.put(identifier, value);
+        return new LexicalScope(definitions.plus(identifier, value), sweepVariable);
+    }
 
-        return new LexicalScope(Collections.unmodifiableMap(defCopy));
+    public LexicalScope withSweepVariable(String variable, Expression<Integer> value) {
+        return new LexicalScope(definitions.plus(variable, value), variable);
     }
 }
@@ -11,15 +11,19 @@ import ca.mbarkley.jsim.model.ExpressionConverter.ConverterKey;
 import ca.mbarkley.jsim.model.IntegerExpression.HighDice;
 import ca.mbarkley.jsim.model.IntegerExpression.HomogeneousDicePool;
 import ca.mbarkley.jsim.model.IntegerExpression.LowDice;
+import ca.mbarkley.jsim.model.IntegerExpression.RepeatExpression;
 import ca.mbarkley.jsim.model.Vector;
 import ca.mbarkley.jsim.model.Type.VectorType;
 import ca.mbarkley.jsim.prob.Event;
 import lombok.RequiredArgsConstructor;
 import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.Interval;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.TerminalNode;
 
 import java.util.*;
+import java.util.function.IntFunction;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -30,20 +34,21 @@ import static java.util.stream.Collectors.*;
 
 public class Parser {
     private static final Pattern ROLL = Pattern.compile("(\\d+)?[dD](\\d+)(?:([HhLl])(\\d+))?");
+    /**
+     * A roll whose number of dice is the variable of the enclosing sweep or solve, such as {@code nd6}, which lexes as an
+     * identifier.
+     */
+    private static final Pattern PARAMETRIC_ROLL = Pattern.compile("([a-zA-Z_][a-zA-Z0-9_]*?)[dD](\\d+)(?:([HhLl])(\\d+))?");
+    private static final String WARM_UP_SCRIPT = "define die = ['a, 'b]\ndefine n = [1, 2]\n" +
+            "let x <- 3d6H2 in x + n > 2d4 - 1 and x * 2 / 3 % 2 <= 1 or (die + 2'a)['a] >= 1 = true; d6L1 < d4; {'a: 1}";
+    private static final ThreadLocal<ParserInstances> INSTANCES = ThreadLocal.withInitial(ParserInstances::new);
 
     public Evaluation parse(String expression) {
         return parse(new LexicalScope(Map.of()), expression);
     }
 
     public Evaluation parse(LexicalScope scope, String expression) {
-        final CodePointCharStream is = CharStreams.fromString(expression);
-        final JSimLexer lexer = new JSimLexer(is);
-        lexer.removeErrorListeners();
-        final CommonTokenStream tokenStream = new CommonTokenStream(lexer);
-        final JSimParser parser = new JSimParser(tokenStream);
-        parser.removeErrorListeners();
-        parser.setErrorHandler(new BailErrorStrategy());
-        final JSimParser.JsimContext ctx = runParser(parser);
+        final JSimParser.JsimContext ctx = INSTANCES.get().parse(expression);
 
         if (ctx.exception != null) {
             throw ctx.exception;
@@ -54,7 +59,24 @@ public class Parser {
         return visitor.visit(ctx);
     }
 
-    JSimParser.JsimContext runParser(JSimParser parser) throws RecognitionException {
+    /**
+     * Parses a representative script so that the ATN is deserialized and the DFA cache shared by all parser
+     * instances is populated before the first real request.
+     */
+    public static void warmUp() {
+        new Parser().parse(WARM_UP_SCRIPT);
+    }
+
+    /**
+     * Runs {@link #warmUp()} on a daemon thread, for callers that have idle time before their first parse.
+     */
+    public static void warmUpInBackground() {
+        final Thread warmUp = new Thread(Parser::warmUp, "jsim-parser-warm-up");
+        warmUp.setDaemon(true);
+        warmUp.start();
+    }
+
+    static JSimParser.JsimContext runParser(JSimParser parser) throws RecognitionException {
         try {
             return parser.jsim();
         } catch (ParseCancellationException pce) {
@@ -68,6 +90,38 @@ public class Parser {
         }
     }
 
+    /**
+     * A lexer, token stream and parser that are reused for every parse on one thread. Inputs are first parsed with
+     * the faster SLL prediction mode, and only re-parsed with full LL prediction if SLL fails.
+     */
+    private static class ParserInstances {
+        private final JSimLexer lexer = new JSimLexer(CharStreams.fromString(""));
+        private final CommonTokenStream tokenStream = new CommonTokenStream(lexer);
+        private final JSimParser parser = new JSimParser(tokenStream);
+
+        ParserInstances() {
+            lexer.removeErrorListeners();
+            parser.removeErrorListeners();
+            parser.setErrorHandler(new BailErrorStrategy());
+        }
+
+        JSimParser.JsimContext parse(String expression) {
+            lexer.setInputStream(CharStreams.fromString(expression));
+            tokenStream.setTokenSource(lexer);
+            parser.setTokenStream(tokenStream);
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            try {
+                return parser.jsim();
+            } catch (ParseCancellationException pce) {
+                tokenStream.seek(0);
+                parser.reset();
+                parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+
+                return runParser(parser);
+            }
+        }
+    }
+
     @RequiredArgsConstructor
     private static class StatementVisitor extends JSimParserBaseVisitor<Evaluation> {
         private final LexicalScope initialEvalCtx;
@@ -78,35 +132,82 @@ public class Parser {
             if (ctx.exception != null) {
                 throw ctx.exception;
             } else {
-                final Map<String, Expression<?>> definitions = new HashMap<>(initialEvalCtx.getDefinitions());
-                final List<Expression<?>> expressions = new ArrayList<>();
+                LexicalScope scope = initialEvalCtx;
+                final List<Statement> statements = new ArrayList<>();
+                final List<Definition> parsedDefinitions = new ArrayList<>();
                 for (var stmt : ctx.statement()) {
-                    final Evaluation evaluation = visitStatement(new LexicalScope(definitions), stmt);
-                    definitions.putAll(evaluation.getContext().getDefinitions());
-                    expressions.addAll(evaluation.getExpressions());
+                    final Evaluation evaluation = visitStatement(scope, stmt);
+                    scope = evaluation.getContext();
+                    statements.addAll(evaluation.getStatements());
+                    parsedDefinitions.addAll(evaluation.getDefinitions());
                 }
 
-                return new Evaluation(new LexicalScope(definitions), expressions);
+                return new Evaluation(scope, statements, parsedDefinitions);
             }
         }
 
         public Evaluation visitStatement(LexicalScope scope, JSimParser.StatementContext ctx) {
             if (ctx.expression() != null) {
-                return new Evaluation(scope, List.of(expressionVisitor.visitExpression(scope, ctx.expression())));
+                return new Evaluation(scope, List.of(new ExpressionStatement(expressionVisitor.visitExpression(scope, ctx.expression()))), List.of());
+            } else if (ctx.sweep() != null) {
+                return visitSweep(scope, ctx.sweep());
+            } else if (ctx.solve() != null) {
+                return visitSolve(scope, ctx.solve());
             } else {
                 return visitDefinition(scope, ctx.definition());
             }
         }
 
+        /**
+         * Keeps the parse tree of the swept expression, which is parsed again for each value with the variable bound
+         * to a constant, so that sub-expressions that do not depend on the variable are structurally equal across the
+         * sweep.
+         */
+        public Evaluation visitSweep(LexicalScope scope, JSimParser.SweepContext ctx) {
+            final Sweep sweep = sweep(scope, ctx.identifier(), ctx.NUMBER(0), ctx.NUMBER(1), ctx.expression());
+            // Bind the first value now, so that errors that do not depend on the value are reported while parsing
+            sweep.bind(sweep.getFrom());
+
+            return new Evaluation(scope, List.of(sweep), List.of());
+        }
+
+        public Evaluation visitSolve(LexicalScope scope, JSimParser.SolveContext ctx) {
+            final Sweep sweep = sweep(scope, ctx.identifier(), ctx.NUMBER(0), ctx.NUMBER(1), ctx.expression());
+            final Type<?> type = sweep.bind(sweep.getFrom()).getType();
+            if (!Types.BOOLEAN_TYPE.equals(type)) {
+                throw new InvalidTypeException(format("Solve statements need a boolean expression, but [%s] has type [%s]", sweep.getBody(), type.name()));
+            }
+            final int percentage = number(ctx.NUMBER(2)).getValue();
+            if (percentage > 100) {
+                throw new EvaluationException(format("Target probability [%d%%] is greater than 100%%", percentage));
+            }
+
+            return new Evaluation(scope, List.of(new Solve(sweep, percentage)), List.of());
+        }
+
+        private Sweep sweep(LexicalScope scope, JSimParser.IdentifierContext identifier, TerminalNode fromNumber, TerminalNode toNumber, JSimParser.ExpressionContext ctx) {
+            final String variable = identifier.getText();
+            final int from = number(fromNumber).getValue();
+            final int to = number(toNumber).getValue();
+            if (from > to) {
+                throw new EvaluationException(format("Sweep range [%d..%d] is empty", from, to));
+            }
+
+            // Each binding uses its own visitor, since candidates may be parsed on another thread after this parse
+            final IntFunction<Expression<?>> binding = value -> new ExpressionVisitor().visitExpression(scope.withSweepVariable(variable, new Constant<>(Types.INTEGER_TYPE, value)), ctx);
+            final String body = ctx.start.getInputStream().getText(Interval.of(ctx.start.getStartIndex(), ctx.stop.getStopIndex()));
+
+            return new Sweep(variable, from, to, body, binding);
+        }
+
         public Evaluation visitDefinition(LexicalScope scope, JSimParser.DefinitionContext ctx) {
-            final String identifier = ctx.IDENTIFIER().getText();
+            final String identifier = ctx.identifier().getText();
+            expressionVisitor.references.clear();
             final Expression<?> expression = visitDefinitionBody(scope, ctx.definitionBody(), identifier);
+            final String source = ctx.start.getInputStream().getText(Interval.of(ctx.start.getStartIndex(), ctx.stop.getStopIndex()));
+            final Definition definition = new Definition(identifier, source, expression, Set.copyOf(expressionVisitor.references));
 
-            Map<String, Expression<?>> modifiedDefintions = new HashMap<>(scope.getDefinitions());
-            modifiedDefintions.put(identifier, expression);
-            final LexicalScope newEvalCtx = new LexicalScope(modifiedDefintions);
-
-            return new Evaluation(newEvalCtx, List.of());
+            return new Evaluation(scope.with(identifier, expression), List.of(), List.of(definition));
         }
 
         private Expression<?> visitDefinitionBody(LexicalScope scope, JSimParser.DefinitionBodyContext ctx, String identifier) {
@@ -171,7 +272,7 @@ public class Parser {
                 if (expression.isConstant()) {
                     return expression;
                 } else {
-                    throw new IllegalStateException(format("Cannot use non-constant expressions in dice declaration [%s]", ctx.getText()));
+                    throw new EvaluationException(format("Cannot use non-constant expressions in dice declaration [%s]", ctx.getText()));
                 }
             } else {
                 throw new IllegalStateException(ctx.getText());
@@ -181,6 +282,11 @@ public class Parser {
 
     @RequiredArgsConstructor
     private static class ExpressionVisitor {
+        /**
+         * Identifiers looked up since this set was last cleared.
+         */
+        private final Set<String> references = new HashSet<>();
+
         public Expression<?> visitExpression(LexicalScope scope, JSimParser.ExpressionContext ctx) {
             if (ctx.exception != null) {
                 throw ctx.exception;
@@ -194,12 +300,16 @@ public class Parser {
                 return visitVectorComponentRestriction(scope, ctx);
             } else if (ctx.LB() != null && ctx.RB() != null && ctx.expression().size() == 1) {
                 return new Bracketed<>(visitExpression(scope, ctx.expression(0)));
+            } else if (ctx.GIVEN() != null) {
+                return visitGivenExpression(scope, ctx);
             } else if (ctx.expression().size() == 2
                     && ctx.getChildCount() == 3
                     && ctx.getChild(1) instanceof TerminalNode) {
                 return visitBinaryExpression(scope, ctx);
             } else if (ctx.letExpression() != null) {
                 return visitLetExpression(scope, ctx.letExpression());
+            } else if (ctx.repeatExpression() != null) {
+                return visitRepeatExpression(scope, ctx.repeatExpression());
             } else {
                 throw unsupportedExpression(ctx);
             }
@@ -222,14 +332,44 @@ public class Parser {
             }).orElseThrow(() -> new UnknownOperatorException(left.getType(), operatorSymbol, right.getType()));
         }
 
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Expression<?> visitGivenExpression(LexicalScope scope, JSimParser.ExpressionContext ctx) {
+            final Expression<?> expression = visitExpression(scope, ctx.expression(0));
+            final Expression<?> condition = visitExpression(scope, ctx.expression(1));
+            if (!Types.BOOLEAN_TYPE.equals(condition.getType())) {
+                throw new InvalidTypeException(format("Conditions must be boolean expressions, but [%s] has type [%s]", condition, condition.getType().name()));
+            }
+
+            return new GivenExpression(expression, condition);
+        }
+
         private Expression<?> visitLetExpression(LexicalScope scope, JSimParser.LetExpressionContext ctx) {
             final Expression<?> bindExpression = visitExpression(scope, ctx.expression(0));
-            final String identifier = ctx.IDENTIFIER().getText();
+            final String identifier = ctx.identifier().getText();
             final Expression<?> valueExpression = visitExpression(scope.with(identifier, new BoundConstant<>(identifier, bindExpression.getType())), ctx.expression(1));
 
             return new BindExpression<>(identifier, bindExpression, valueExpression);
         }
 
+        @SuppressWarnings("unchecked")
+        private Expression<?> visitRepeatExpression(LexicalScope scope, JSimParser.RepeatExpressionContext ctx) {
+            final String identifier = ctx.identifier().getText();
+            final LexicalScope stateScope = scope.with(identifier, new BoundConstant<>(identifier, Types.INTEGER_TYPE));
+            final Expression<?> initial = visitExpression(scope, ctx.expression(0));
+            final Expression<?> step = visitExpression(stateScope, ctx.expression(1));
+            final Expression<?> condition = visitExpression(stateScope, ctx.expression(2));
+            if (!Types.INTEGER_TYPE.equals(initial.getType()) || !Types.INTEGER_TYPE.equals(step.getType())) {
+                throw new InvalidTypeException(format("Repeated states must be integers, but [%s] has type [%s] and [%s] has type [%s]",
+                                                      initial, initial.getType().name(), step, step.getType().name()));
+            }
+            if (!Types.BOOLEAN_TYPE.equals(condition.getType())) {
+                throw new InvalidTypeException(format("Conditions must be boolean expressions, but [%s] has type [%s]", condition, condition.getType().name()));
+            }
+            final RepeatExpression.Outcome outcome = ctx.ROUNDS() != null ? RepeatExpression.Outcome.ROUNDS : RepeatExpression.Outcome.FINAL_STATE;
+
+            return new RepeatExpression(outcome, identifier, (Expression<Integer>) initial, (Expression<Integer>) step, (Expression<Boolean>) condition);
+        }
+
         private Expression<?> visitVectorComponentRestriction(LexicalScope scope, JSimParser.ExpressionContext ctx) {
             final Expression<Vector> vectorExpression;
             final Symbol symbol;
@@ -247,7 +387,7 @@ public class Parser {
 
             final VectorType vectorType = (VectorType) vectorExpression.getType();
             final Type<?> componentType = vectorType.getDimensions().computeIfAbsent(symbol, s -> {
-                throw new IllegalArgumentException(format("Invalid symbol [%s] for vector type [%s]", symbol, vectorType));
+                throw new EvaluationException(format("Invalid symbol [%s] for vector type [%s]", symbol, vectorType));
             });
 
             return mapProjection(vectorExpression, symbol, componentType);
@@ -280,12 +420,12 @@ public class Parser {
         }
 
         private Constant<?> visitDimensionValue(LexicalScope scope, JSimParser.DimensionValueContext ctx) {
-            if (ctx.IDENTIFIER() != null) {
-                final Expression<?> identifierValue = lookupIdentifier(scope, ctx.IDENTIFIER().getText());
+            if (ctx.identifier() != null) {
+                final Expression<?> identifierValue = lookup(scope, ctx.identifier().getText());
                 if (identifierValue instanceof Constant) {
                     return (Constant<?>) identifierValue;
                 } else {
-                    throw new EvaluationException(format("Invalid identifier [%s] in vector literal: expected constant but identifier had expression value [%s]", ctx.IDENTIFIER().getText(), identifierValue));
+                    throw new EvaluationException(format("Invalid identifier [%s] in vector literal: expected constant but identifier had expression value [%s]", ctx.identifier().getText(), identifierValue));
                 }
             } else if (ctx.NUMBER() != null) {
                 final Integer value = Integer.parseInt(ctx.NUMBER().getText());
@@ -322,13 +462,47 @@ public class Parser {
         }
 
         private Expression<?> visitReference(LexicalScope scope, JSimParser.ReferenceContext ctx) {
-            if (ctx.IDENTIFIER() != null) {
-                return lookupIdentifier(scope, ctx.IDENTIFIER().getText());
+            if (ctx.identifier() != null) {
+                return lookup(scope, ctx.identifier().getText());
             } else {
                 throw unsupportedExpression(ctx);
             }
         }
 
+        private Expression<?> lookup(LexicalScope scope, String identifier) {
+            final Matcher parametricRoll = PARAMETRIC_ROLL.matcher(identifier);
+            if (!scope.getDefinitions().containsKey(identifier) && parametricRoll.matches() && parametricRoll.group(1).equals(scope.getSweepVariable())) {
+                final Expression<?> numberOfDice = scope.getDefinitions().get(parametricRoll.group(1));
+                if (numberOfDice instanceof Constant && Types.INTEGER_TYPE.equals(numberOfDice.getType())) {
+                    references.add(parametricRoll.group(1));
+                    return roll((Integer) ((Constant<?>) numberOfDice).getValue(), parametricRoll, identifier);
+                }
+            }
+
+            references.add(identifier);
+            return lookupIdentifier(scope, identifier);
+        }
+
+        /**
+         * @param matcher A match of a roll, with the number of sides, and optionally which dice to keep, in groups 2 to 4.
+         */
+        private Expression<?> roll(int numberOfDice, Matcher matcher, String text) {
+            if (numberOfDice < 0) {
+                throw new EvaluationException(format("Cannot roll a negative number of dice [%s]", text));
+            }
+            final int numberOfSides = Integer.parseInt(matcher.group(2));
+            if (matcher.group(3) == null) {
+                return new HomogeneousDicePool(numberOfDice, numberOfSides);
+            } else {
+                final int maxOrMinDiceNumber = Integer.parseInt(matcher.group(4));
+                if (matcher.group(3).equalsIgnoreCase("L")) {
+                    return new LowDice(new HomogeneousDicePool(numberOfDice, numberOfSides), maxOrMinDiceNumber);
+                } else {
+                    return new HighDice(new HomogeneousDicePool(numberOfDice, numberOfSides), maxOrMinDiceNumber);
+                }
+            }
+        }
+
         private Expression<?> visitLiteral(LexicalScope scope, JSimParser.LiteralContext ctx) {
             if (ctx.booleanLiteral() != null) {
                 return visitBooleanLiteral(ctx.booleanLiteral());
@@ -342,17 +516,7 @@ public class Parser {
                     final int numberOfDice = matcher.group(1) == null ?
                             1 :
                             Integer.parseInt(matcher.group(1));
-                    final int numberOfSides = Integer.parseInt(matcher.group(2));
-                    if (matcher.group(3) == null) {
-                        return new HomogeneousDicePool(numberOfDice, numberOfSides);
-                    } else {
-                        final int maxOrMinDiceNumber = Integer.parseInt(matcher.group(4));
-                        if (matcher.group(3).equalsIgnoreCase("L")) {
-                            return new LowDice(new HomogeneousDicePool(numberOfDice, numberOfSides), maxOrMinDiceNumber);
-                        } else if (matcher.group(3).equalsIgnoreCase("H")) {
-                            return new HighDice(new HomogeneousDicePool(numberOfDice, numberOfSides), maxOrMinDiceNumber);
-                        }
-                    }
+                    return roll(numberOfDice, matcher, ctx.ROLL().getText());
                 }
 
                 throw new IllegalStateException(format("Unrecognized roll: %s", ctx.ROLL().getText()));
@@ -378,8 +542,8 @@ public class Parser {
         return new Constant<>(Types.INTEGER_TYPE, Integer.parseInt(number.getText()));
     }
 
-    private static UnsupportedOperationException unsupportedExpression(RuleContext ctx) {
-        return new UnsupportedOperationException(format("Unknown expression kind [%s]", ctx.getText()));
+    private static EvaluationException unsupportedExpression(RuleContext ctx) {
+        return new EvaluationException(format("Unknown expression kind [%s]", ctx.getText()));
     }
 
     private static Expression<Symbol> symbol(TerminalNode symbol) {
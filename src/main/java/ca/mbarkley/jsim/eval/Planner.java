@@ -0,0 +1,381 @@
+package ca.mbarkley.jsim.eval;
+
+import ca.mbarkley.jsim.model.EvaluationPlan;
+import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.model.Expression.BinaryOpExpression;
+import ca.mbarkley.jsim.model.Expression.BindExpression;
+import ca.mbarkley.jsim.model.Expression.MultiplicativeExpression;
+import ca.mbarkley.jsim.model.IntegerExpression.HighDice;
+import ca.mbarkley.jsim.model.IntegerExpression.HomogeneousDicePool;
+import ca.mbarkley.jsim.model.IntegerExpression.LowDice;
+import ca.mbarkley.jsim.model.RuntimeContext;
+import ca.mbarkley.jsim.model.Types;
+import ca.mbarkley.jsim.prob.Cumulants;
+import ca.mbarkley.jsim.prob.DenseDistribution;
+import ca.mbarkley.jsim.prob.DiceTables;
+import ca.mbarkley.jsim.prob.Event;
+import lombok.Getter;
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static java.lang.Math.max;
+import static java.lang.String.format;
+
+/**
+ * Chooses the cheapest {@link Strategy} for every node of an expression, using the bounds from a
+ * {@link SupportEstimator}. Sampling is only considered when the planner tolerates approximate results, and Edgeworth
+ * approximations are only used for nodes whose support exceeds the approximation threshold.
+ */
+public class Planner {
+    /**
+     * Nodes with more possible outcomes than this are approximated by default, since exact distributions of that size
+     * take seconds to convolve and are too detailed to display.
+     */
+    public static final double DEFAULT_APPROXIMATION_THRESHOLD = 1_000_000;
+    public static final Planner EXACT = new Planner(0.0);
+    /**
+     * Evaluates exactly, except for approximating nodes above {@link #DEFAULT_APPROXIMATION_THRESHOLD}.
+     */
+    public static final Planner DEFAULT = new Planner(0.0, DEFAULT_APPROXIMATION_THRESHOLD);
+    /**
+     * The two-sided 95% quantile of the standard normal distribution.
+     */
+    private static final double CONFIDENCE_Z = 1.96;
+
+    static final double DENSE_NANOS_PER_OPERATION = 2.0;
+    static final double NANOS_PER_SAMPLE_STEP = 20.0;
+    static final double BYTES_PER_DENSE_VALUE = 8.0;
+
+    public enum Strategy {
+        /**
+         * Combine events pairwise and regroup equal values in a hash map.
+         */
+        SPARSE,
+        /**
+         * Convolve arrays of probabilities over a contiguous integer range.
+         */
+        DENSE,
+        /**
+         * Approximate the distribution by Monte Carlo simulation of the whole sub-expression.
+         */
+        SAMPLED,
+        /**
+         * Approximate the distribution of a sum of dice from its cumulants with an Edgeworth expansion.
+         */
+        APPROXIMATE
+    }
+
+    /**
+     * The largest absolute error tolerated in each reported probability with 95% confidence, or zero if results must
+     * be exact.
+     */
+    @Getter
+    private final double tolerance;
+    /**
+     * Nodes with a larger estimated support than this are approximated from their cumulants when possible.
+     */
+    @Getter
+    private final double approximationThreshold;
+    private final int samples;
+    private final SupportEstimator estimator = new SupportEstimator();
+    private final CumulantAnalyzer analyzer = new CumulantAnalyzer();
+
+    public Planner(double tolerance) {
+        this(tolerance, Double.POSITIVE_INFINITY);
+    }
+
+    public Planner(double tolerance, double approximationThreshold) {
+        this.tolerance = tolerance;
+        this.approximationThreshold = approximationThreshold;
+        // The standard error of a sampled probability is at most 1 / (2 * sqrt(samples)), and 95% of sampled
+        // probabilities are within CONFIDENCE_Z standard errors of the true probability
+        this.samples = tolerance > 0.0 ?
+                (int) Math.min(Integer.MAX_VALUE, Math.ceil(CONFIDENCE_Z * CONFIDENCE_Z / (4.0 * tolerance * tolerance))) :
+                0;
+    }
+
+    @Value
+    public static class NodePlan {
+        Strategy strategy;
+        SupportEstimate estimate;
+        /**
+         * Estimated time to evaluate this node once, including its sub-expressions.
+         */
+        double estimatedNanos;
+        /**
+         * Estimated memory held by the largest intermediate result in this node or its sub-expressions.
+         */
+        double estimatedBytes;
+    }
+
+    public Plan plan(Expression<?> expression) {
+        final Map<Expression<?>, SupportEstimate> estimates = estimator.estimateAll(expression);
+        final Map<Expression<?>, NodePlan> nodePlans = new IdentityHashMap<>();
+        final Map<Expression<?>, Cumulants> approximations = new IdentityHashMap<>();
+        plan(expression, estimates, nodePlans, approximations);
+
+        return new Plan(nodePlans, approximations, samples);
+    }
+
+    private NodePlan plan(Expression<?> node, Map<Expression<?>, SupportEstimate> estimates, Map<Expression<?>, NodePlan> nodePlans,
+                          Map<Expression<?>, Cumulants> approximations) {
+        final SupportEstimate estimate = estimates.get(node);
+        final List<Expression<?>> children = node.children();
+
+        double childNanos = 0.0;
+        double childBytes = 0.0;
+        double childSparseCost = 0.0;
+        for (var child : children) {
+            final double multiplicity = multiplicity(node, child, estimates);
+            final NodePlan childPlan = plan(child, estimates, nodePlans, approximations);
+            childNanos += multiplicity * childPlan.getEstimatedNanos();
+            childBytes = max(childBytes, childPlan.getEstimatedBytes());
+            childSparseCost += multiplicity * estimates.get(child).getCost();
+        }
+
+        final double sparseLocalCost = max(0.0, estimate.getCost() - childSparseCost) + estimate.getSupport();
+        NodePlan best = new NodePlan(Strategy.SPARSE,
+                                     estimate,
+                                     childNanos + sparseLocalCost * SupportEstimate.NANOS_PER_COMBINATION,
+                                     max(childBytes, estimate.getSupport() * SupportEstimate.BYTES_PER_EVENT));
+
+        final double denseOperations = denseOperations(node, estimates);
+        if (denseOperations >= 0.0) {
+            final double denseNanos = childNanos + denseOperations * DENSE_NANOS_PER_OPERATION;
+            if (denseNanos < best.getEstimatedNanos()) {
+                best = new NodePlan(Strategy.DENSE, estimate, denseNanos, max(childBytes, width(estimate) * BYTES_PER_DENSE_VALUE));
+            }
+        }
+
+        if (samples > 0) {
+            final double sampledNanos = samples * sampleSteps(node) * NANOS_PER_SAMPLE_STEP;
+            if (sampledNanos < best.getEstimatedNanos()) {
+                best = new NodePlan(Strategy.SAMPLED, estimate, sampledNanos, Math.min(samples, estimate.getSupport()) * SupportEstimate.BYTES_PER_EVENT);
+            }
+        }
+
+        if (estimate.getSupport() > approximationThreshold && estimate.isBounded()) {
+            final Optional<Cumulants> cumulants = analyzer.analyze(node);
+            if (cumulants.isPresent()) {
+                final double width = Math.min(width(estimate), 20.0 * cumulants.get().getStandardDeviation() + 1.0);
+                approximations.put(node, cumulants.get());
+                best = new NodePlan(Strategy.APPROXIMATE, estimate, width * DENSE_NANOS_PER_OPERATION, width * BYTES_PER_DENSE_VALUE);
+            }
+        }
+
+        nodePlans.put(node, best);
+
+        return best;
+    }
+
+    /**
+     * @return The number of times a child is evaluated for every evaluation of its parent.
+     */
+    private static double multiplicity(Expression<?> parent, Expression<?> child, Map<Expression<?>, SupportEstimate> estimates) {
+        if (parent instanceof BindExpression && child == ((BindExpression<?, ?>) parent).getValueExpression()) {
+            return estimates.get(((BindExpression<?, ?>) parent).getBindExpression()).getSupport();
+        } else if (parent instanceof MultiplicativeExpression) {
+            return ((MultiplicativeExpression) parent).getNumber();
+        } else {
+            return 1.0;
+        }
+    }
+
+    /**
+     * @return The number of array operations for a dense evaluation of the node, or a negative number if the node
+     * has no dense kernel.
+     */
+    private static double denseOperations(Expression<?> node, Map<Expression<?>, SupportEstimate> estimates) {
+        if (node instanceof HomogeneousDicePool) {
+            final HomogeneousDicePool pool = (HomogeneousDicePool) node;
+            return (double) pool.getNumberOfDice() * width(estimates.get(node));
+        } else if (isDenseBinaryOp(node)) {
+            final BinaryOpExpression<?, ?> binaryOp = (BinaryOpExpression<?, ?>) node;
+            final SupportEstimate left = estimates.get(binaryOp.getLeft());
+            final SupportEstimate right = estimates.get(binaryOp.getRight());
+            if (left.isBounded() && right.isBounded()) {
+                return width(left) * width(right) + (left.getSupport() + right.getSupport()) * SupportEstimate.NANOS_PER_COMBINATION / DENSE_NANOS_PER_OPERATION;
+            }
+        }
+
+        return -1.0;
+    }
+
+    private static boolean isDenseBinaryOp(Expression<?> node) {
+        if (node instanceof BinaryOpExpression && Types.INTEGER_TYPE.equals(node.getType())) {
+            final String symbol = ((BinaryOpExpression<?, ?>) node).getOperator().getSymbol();
+            return "+".equals(symbol) || "-".equals(symbol);
+        } else {
+            return false;
+        }
+    }
+
+    private static double width(SupportEstimate estimate) {
+        return estimate.getMax() - estimate.getMin() + 1;
+    }
+
+    /**
+     * @return A rough count of the work needed to draw one sample of the node.
+     */
+    private static double sampleSteps(Expression<?> node) {
+        if (node instanceof HomogeneousDicePool) {
+            return ((HomogeneousDicePool) node).getNumberOfDice();
+        } else if (node instanceof HighDice || node instanceof LowDice) {
+            final int dice = node instanceof HighDice ? ((HighDice) node).getDicePool().getNumberOfDice() : ((LowDice) node).getDicePool().getNumberOfDice();
+            return dice * Math.max(1.0, Math.log(dice));
+        } else if (node instanceof MultiplicativeExpression) {
+            final MultiplicativeExpression multiplicative = (MultiplicativeExpression) node;
+            return multiplicative.getNumber() * sampleSteps(multiplicative.getSubExpression());
+        } else {
+            double steps = 1.0;
+            for (var child : node.children()) {
+                steps += sampleSteps(child);
+            }
+
+            return steps;
+        }
+    }
+
+    public static class Plan implements EvaluationPlan {
+        private final Map<Expression<?>, NodePlan> nodePlans;
+        private final Map<Expression<?>, Cumulants> approximations;
+        private final int samples;
+
+        private Plan(Map<Expression<?>, NodePlan> nodePlans, Map<Expression<?>, Cumulants> approximations, int samples) {
+            this.nodePlans = nodePlans;
+            this.approximations = approximations;
+            this.samples = samples;
+        }
+
+        public NodePlan getNodePlan(Expression<?> expression) {
+            return nodePlans.get(expression);
+        }
+
+        /**
+         * @return True if any node is sampled or approximated, so that results will only be approximate.
+         */
+        public boolean isApproximate() {
+            return nodePlans.values()
+                            .stream()
+                            .anyMatch(nodePlan -> nodePlan.getStrategy() == Strategy.SAMPLED || nodePlan.getStrategy() == Strategy.APPROXIMATE);
+        }
+
+        /**
+         * @return The largest estimated error of any Edgeworth approximation in this plan, or zero if there are none.
+         */
+        public double getApproximationError() {
+            return approximations.values()
+                                 .stream()
+                                 .mapToDouble(Cumulants::edgeworthError)
+                                 .max()
+                                 .orElse(0.0);
+        }
+
+        /**
+         * @return How results of this plan are approximated, or an empty string if they are exact.
+         */
+        public String describeApproximation() {
+            final List<String> methods = new ArrayList<>();
+            if (nodePlans.values().stream().anyMatch(nodePlan -> nodePlan.getStrategy() == Strategy.SAMPLED)) {
+                methods.add("sampled");
+            }
+            if (!approximations.isEmpty()) {
+                methods.add(format("approximated, error < %.1e", getApproximationError()));
+            }
+
+            return String.join(", ", methods);
+        }
+
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        public <T extends Comparable<T>> Stream<Event<T>> events(Expression<T> expression, RuntimeContext ctx) {
+            final NodePlan nodePlan = nodePlans.get(expression);
+            final Strategy strategy = nodePlan == null ? Strategy.SPARSE : nodePlan.getStrategy();
+            switch (strategy) {
+                case DENSE:
+                    return (Stream) denseDistribution((Expression<Integer>) expression, ctx).events();
+                case SAMPLED:
+                    return new Sampler(samples).calculateResults(expression, ctx)
+                                               .values()
+                                               .stream();
+                case APPROXIMATE:
+                    final SupportEstimate estimate = nodePlan.getEstimate();
+                    return (Stream) approximations.get(expression)
+                                                  .edgeworth((int) estimate.getMin(), (int) estimate.getMax())
+                                                  .events();
+                default:
+                    return expression.events(ctx);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private DenseDistribution denseDistribution(Expression<Integer> expression, RuntimeContext ctx) {
+            if (expression instanceof HomogeneousDicePool) {
+                final HomogeneousDicePool pool = (HomogeneousDicePool) expression;
+                return DiceTables.dicePool(pool.getNumberOfDice(), pool.getDiceSides())
+                                 .orElseGet(() -> DenseDistribution.dicePool(pool.getNumberOfDice(), pool.getDiceSides(), ctx::checkpoint));
+            } else {
+                final BinaryOpExpression<Integer, Integer> binaryOp = (BinaryOpExpression<Integer, Integer>) expression;
+                final DenseDistribution left = DenseDistribution.of(ctx.evaluate(binaryOp.getLeft()));
+                final DenseDistribution right = DenseDistribution.of(ctx.evaluate(binaryOp.getRight()));
+
+                return "+".equals(binaryOp.getOperator().getSymbol()) ? left.plus(right, ctx::checkpoint) : left.minus(right, ctx::checkpoint);
+            }
+        }
+
+        public double getEstimatedNanos(Expression<?> root) {
+            return nodePlans.get(root).getEstimatedNanos();
+        }
+
+        public double getEstimatedBytes(Expression<?> root) {
+            return nodePlans.get(root).getEstimatedBytes();
+        }
+
+        /**
+         * @return A tree of the given expression and its sub-expressions annotated with the chosen strategies.
+         */
+        public String explain(Expression<?> root) {
+            final StringBuilder sb = new StringBuilder();
+            explain(root, 0, null, sb);
+
+            return sb.toString();
+        }
+
+        private void explain(Expression<?> node, int depth, Strategy parentStrategy, StringBuilder sb) {
+            if (depth > 0) {
+                sb.append("  ".repeat(depth - 1))
+                  .append("-> ");
+            }
+            sb.append(node.getClass().getSimpleName())
+              .append(" [")
+              .append(node)
+              .append("]");
+
+            final NodePlan nodePlan = nodePlans.get(node);
+            if (parentStrategy == Strategy.SAMPLED) {
+                sb.append(" (sampled by parent)");
+            } else if (parentStrategy == Strategy.APPROXIMATE) {
+                sb.append(" (approximated by parent)");
+            } else if (nodePlan != null) {
+                sb.append(format(" (strategy=%s, %s, estimated time=%.3f ms)",
+                                 nodePlan.getStrategy().name().toLowerCase(),
+                                 nodePlan.getEstimate(),
+                                 nodePlan.getEstimatedNanos() / 1_000_000.0));
+            }
+            sb.append('\n');
+
+            final Strategy coveringStrategy = parentStrategy != null ? parentStrategy :
+                    nodePlan != null && (nodePlan.getStrategy() == Strategy.SAMPLED || nodePlan.getStrategy() == Strategy.APPROXIMATE) ? nodePlan.getStrategy() :
+                    null;
+            for (var child : node.children()) {
+                explain(child, depth + 1, coveringStrategy, sb);
+            }
+        }
+    }
+}
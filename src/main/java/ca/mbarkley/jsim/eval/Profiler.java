@@ -0,0 +1,129 @@
+package ca.mbarkley.jsim.eval;
+
+import ca.mbarkley.jsim.model.EvaluationMonitor;
+import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.prob.Event;
+import lombok.Getter;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static java.lang.String.format;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * An {@link EvaluationMonitor} that eagerly evaluates every node so that it can record per-node statistics,
+ * similar to an {@code EXPLAIN ANALYZE} in a database. Timings and allocations are inclusive of sub-expressions.
+ * Expressions that occur at several places in a tree (such as definitions) share one set of statistics.
+ */
+public class Profiler implements EvaluationMonitor {
+    private final Map<Expression<?>, NodeStats> stats = new IdentityHashMap<>();
+
+    @Getter
+    public static class NodeStats {
+        private long calls;
+        private long wallNanos;
+        private long eventsBeforeRegrouping;
+        private long eventsAfterRegrouping;
+        private long peakSupport;
+        private long allocatedBytes = -1;
+    }
+
+    @Override
+    public <T extends Comparable<T>> Stream<Event<T>> monitor(Expression<T> expression, Supplier<Stream<Event<T>>> events) {
+        final long startAllocated = allocatedBytes();
+        final long start = System.nanoTime();
+        final List<Event<T>> materialized = events.get().collect(toList());
+        final long elapsed = System.nanoTime() - start;
+        final long endAllocated = allocatedBytes();
+
+        final long support = materialized.stream()
+                                         .map(Event::getValue)
+                                         .distinct()
+                                         .count();
+
+        final NodeStats nodeStats = stats.computeIfAbsent(expression, e -> new NodeStats());
+        nodeStats.calls++;
+        nodeStats.wallNanos += elapsed;
+        nodeStats.eventsBeforeRegrouping += materialized.size();
+        nodeStats.eventsAfterRegrouping += support;
+        nodeStats.peakSupport = Math.max(nodeStats.peakSupport, support);
+        if (startAllocated >= 0 && endAllocated >= 0) {
+            nodeStats.allocatedBytes = Math.max(nodeStats.allocatedBytes, 0) + (endAllocated - startAllocated);
+        }
+
+        return materialized.stream();
+    }
+
+    public NodeStats getStats(Expression<?> expression) {
+        return stats.get(expression);
+    }
+
+    /**
+     * @return A tree of the given expression and its sub-expressions annotated with the statistics recorded by this profiler.
+     */
+    public String render(Expression<?> root) {
+        final StringBuilder sb = new StringBuilder();
+        render(root, 0, sb);
+
+        return sb.toString();
+    }
+
+    private void render(Expression<?> node, int depth, StringBuilder sb) {
+        if (depth > 0) {
+            sb.append("  ".repeat(depth - 1))
+              .append("-> ");
+        }
+        sb.append(node.getClass().getSimpleName())
+          .append(" [")
+          .append(node)
+          .append("]");
+
+        final NodeStats nodeStats = stats.get(node);
+        if (nodeStats == null) {
+            sb.append(" (never executed)");
+        } else {
+            sb.append(format(" (time=%.3f ms, calls=%d, events=%d, regrouped=%d, peak support=%d, allocated=%s)",
+                             nodeStats.wallNanos / 1_000_000.0,
+                             nodeStats.calls,
+                             nodeStats.eventsBeforeRegrouping,
+                             nodeStats.eventsAfterRegrouping,
+                             nodeStats.peakSupport,
+                             formatBytes(nodeStats.allocatedBytes)));
+        }
+        sb.append('\n');
+
+        for (var child : node.children()) {
+            render(child, depth + 1, sb);
+        }
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 0) {
+            return "n/a";
+        } else if (bytes < 1024) {
+            return format("%d B", bytes);
+        } else if (bytes < 1024 * 1024) {
+            return format("%.1f KiB", bytes / 1024.0);
+        } else {
+            return format("%.1f MiB", bytes / (1024.0 * 1024.0));
+        }
+    }
+
+    private static long allocatedBytes() {
+        final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean) threadBean;
+            if (sunThreadBean.isThreadAllocatedMemorySupported() && sunThreadBean.isThreadAllocatedMemoryEnabled()) {
+                return sunThreadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+
+        return -1;
+    }
+}
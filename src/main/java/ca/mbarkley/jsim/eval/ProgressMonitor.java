@@ -0,0 +1,80 @@
+package ca.mbarkley.jsim.eval;
+
+import ca.mbarkley.jsim.eval.EvaluationException.CancelledException;
+import ca.mbarkley.jsim.model.EvaluationMonitor;
+import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.prob.Event;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * An {@link EvaluationMonitor} that counts the events produced while evaluating, so that another thread can report
+ * progress, and that stops the evaluation once {@link #cancel()} is called or the evaluating thread is interrupted.
+ */
+public class ProgressMonitor implements EvaluationMonitor {
+    private final EvaluationMonitor delegate;
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong largestSupport = new AtomicLong();
+    private volatile boolean cancelled;
+
+    public ProgressMonitor() {
+        this(EvaluationMonitor.NONE);
+    }
+
+    public ProgressMonitor(EvaluationMonitor delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public <T extends Comparable<T>> Stream<Event<T>> monitor(Expression<T> expression, Supplier<Stream<Event<T>>> supplier) {
+        checkCancelled();
+        return delegate.monitor(expression, () -> {
+            final AtomicLong nodeEvents = new AtomicLong();
+            return supplier.get()
+                           .peek(event -> {
+                               checkCancelled();
+                               events.incrementAndGet();
+                               final long support = nodeEvents.incrementAndGet();
+                               if (support > largestSupport.get()) {
+                                   largestSupport.set(support);
+                               }
+                           });
+        });
+    }
+
+    @Override
+    public void checkpoint() {
+        checkCancelled();
+        delegate.checkpoint();
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return The number of events produced so far by all nodes.
+     */
+    public long getEvents() {
+        return events.get();
+    }
+
+    /**
+     * @return The largest number of events produced so far by a single evaluation of one node.
+     */
+    public long getLargestSupport() {
+        return largestSupport.get();
+    }
+
+    private void checkCancelled() {
+        if (cancelled || Thread.currentThread().isInterrupted()) {
+            throw new CancelledException();
+        }
+    }
+}
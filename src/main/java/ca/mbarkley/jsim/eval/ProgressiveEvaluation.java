@@ -0,0 +1,244 @@
+package ca.mbarkley.jsim.eval;
+
+import ca.mbarkley.jsim.eval.EvaluationException.CancelledException;
+import ca.mbarkley.jsim.model.EvaluationMonitor;
+import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.model.RuntimeContext;
+import ca.mbarkley.jsim.prob.Event;
+import lombok.Value;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static java.lang.String.format;
+
+/**
+ * Evaluates an expression exactly while sampling it on a second thread, so that an approximate distribution is
+ * available right away and sharpens over time. Every {@link Estimate} is published to subscribers, ending with the
+ * exact distribution if exact evaluation succeeds. If exact evaluation does not fit the budget, sampling continues
+ * until at least {@link EvaluationBudget#getSamples()} samples have been drawn, and the final estimate is sampled.
+ */
+public class ProgressiveEvaluation<T extends Comparable<T>> implements Flow.Publisher<ProgressiveEvaluation.Estimate<T>> {
+    private static final int INITIAL_BATCH_SIZE = 1_000;
+    private static final int MAX_BATCH_SIZE = 1_000_000;
+    private static final int CANCELLATION_CHECK_MASK = 1023;
+
+    @Value
+    public static class Estimate<T> {
+        Map<T, Event<T>> results;
+        long samples;
+        boolean exact;
+
+        /**
+         * @return An upper bound on the standard error of any probability in this estimate, or zero if it is exact.
+         */
+        public double getStandardError() {
+            return exact ? 0.0 : 0.5 / Math.sqrt(samples);
+        }
+    }
+
+    private final Expression<T> expression;
+    private final EvaluationBudget budget;
+    private final SubmissionPublisher<Estimate<T>> publisher = new SubmissionPublisher<>();
+    private final CompletableFuture<Estimate<T>> result = new CompletableFuture<>();
+    private final AtomicReference<Estimate<T>> latest = new AtomicReference<>();
+    private final ProgressMonitor progress;
+    private volatile Thread exactThread;
+    private volatile RuntimeException exactFailure;
+    private RuntimeException samplingFailure;
+
+    private ProgressiveEvaluation(Expression<T> expression, EvaluationBudget budget, EvaluationMonitor monitor) {
+        this.expression = expression;
+        this.budget = budget;
+        this.progress = new ProgressMonitor(monitor);
+    }
+
+    public static <T extends Comparable<T>> ProgressiveEvaluation<T> start(Expression<T> expression, EvaluationBudget budget, Planner planner) {
+        return start(expression, budget, planner, EvaluationMonitor.NONE);
+    }
+
+    /**
+     * @param monitor Monitors the exact evaluation.
+     */
+    public static <T extends Comparable<T>> ProgressiveEvaluation<T> start(Expression<T> expression, EvaluationBudget budget, Planner planner, EvaluationMonitor monitor) {
+        return start(expression, budget, planner, monitor, null);
+    }
+
+    /**
+     * @param subscriber Subscribed before evaluation starts, so that it receives every estimate.
+     */
+    public static <T extends Comparable<T>> ProgressiveEvaluation<T> start(Expression<T> expression, EvaluationBudget budget, Planner planner, EvaluationMonitor monitor,
+                                                                           Flow.Subscriber<? super Estimate<T>> subscriber) {
+        final ProgressiveEvaluation<T> evaluation = new ProgressiveEvaluation<>(expression, budget, monitor);
+        if (subscriber != null) {
+            evaluation.subscribe(subscriber);
+        }
+        evaluation.exactThread = evaluation.startThread("jsim-exact", () -> evaluation.evaluateExactly(planner));
+        evaluation.startThread("jsim-sampler", evaluation::sample);
+
+        return evaluation;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Estimate<T>> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    /**
+     * Calls the given consumer with every estimate published after this call, in order.
+     */
+    public CompletableFuture<Void> onEstimate(Consumer<? super Estimate<T>> consumer) {
+        return publisher.consume(consumer);
+    }
+
+    /**
+     * @return The most recent estimate, or null if none has been published yet.
+     */
+    public Estimate<T> getLatest() {
+        return latest.get();
+    }
+
+    /**
+     * @return The final estimate, which is exact unless exact evaluation failed or was cancelled.
+     */
+    public CompletableFuture<Estimate<T>> getResult() {
+        return result;
+    }
+
+    /**
+     * Stops evaluating, interrupting exact evaluation. The result is completed with the most recent estimate, if there
+     * is one.
+     */
+    public void cancel() {
+        progress.cancel();
+        interruptExactEvaluation();
+        final Estimate<T> estimate = latest.get();
+        if (estimate != null) {
+            complete(estimate);
+        } else {
+            fail(new CancelledException());
+        }
+    }
+
+    private Thread startThread(String name, Runnable runnable) {
+        final Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+
+        return thread;
+    }
+
+    /**
+     * Stops exact evaluation that is no longer needed, including loops that do not emit events, rather than leaving it
+     * to use CPU and memory in the background.
+     */
+    private void interruptExactEvaluation() {
+        final Thread thread = exactThread;
+        if (thread != null && thread != Thread.currentThread()) {
+            thread.interrupt();
+        }
+    }
+
+    private void evaluateExactly(Planner planner) {
+        try {
+            final EvaluationBudget exactBudget = new EvaluationBudget(budget.getMaxTimeMillis(), budget.getMaxMemoryBytes(), EvaluationBudget.Overrun.REJECT, budget.getSamples());
+            final Map<T, Event<T>> results = exactBudget.calculateResults(expression, progress, planner).getResults();
+            publish(new Estimate<>(results, 0, true));
+            complete(latest.get());
+        } catch (CancelledException e) {
+            // Cancelled by the caller, who completes the result
+        } catch (RuntimeException e) {
+            exactFailed(e);
+        }
+    }
+
+    private void sample() {
+        final RuntimeContext ctx = RuntimeContext.create(EvaluationMonitor.NONE);
+        final Random random = new Random();
+        final Map<T, Long> counts = new HashMap<>();
+        long samples = 0;
+        int batchSize = INITIAL_BATCH_SIZE;
+        try {
+            while (!result.isDone() && !(exactFailure != null && samples >= budget.getSamples())) {
+                for (int i = 0; i < batchSize; i++) {
+                    if ((i & CANCELLATION_CHECK_MASK) == 0 && result.isDone()) {
+                        return;
+                    }
+                    final T value = Sampler.sampleAccepted(expression, ctx, random);
+                    if (value != null) {
+                        counts.merge(value, 1L, Long::sum);
+                        samples++;
+                    }
+                }
+                batchSize = Math.min(batchSize * 2, MAX_BATCH_SIZE);
+
+                if (samples == 0) {
+                    if (batchSize == MAX_BATCH_SIZE) {
+                        throw new EvaluationException(format("The conditions of [%s] are too unlikely to sample", expression));
+                    }
+                    continue;
+                }
+                // Only accepted samples count, which conditions the estimate on any given clauses
+                final long total = samples;
+                final Map<T, Event<T>> results = new HashMap<>();
+                counts.forEach((value, count) -> results.put(value, new Event<>(value, count / (double) total)));
+                publish(new Estimate<>(results, total, false));
+            }
+
+            if (exactFailure != null) {
+                complete(latest.get());
+            }
+        } catch (RuntimeException e) {
+            samplingFailed(e);
+        }
+    }
+
+    /**
+     * Exact evaluation failing is only fatal if sampling has failed too, or if it failed for a reason other than the
+     * budget before any samples were drawn.
+     */
+    private synchronized void exactFailed(RuntimeException e) {
+        exactFailure = e;
+        if (samplingFailure != null || latest.get() == null && !(e instanceof EvaluationException.BudgetExceededException)) {
+            fail(e);
+        }
+    }
+
+    private synchronized void samplingFailed(RuntimeException e) {
+        samplingFailure = e;
+        if (exactFailure != null) {
+            fail(exactFailure);
+        }
+    }
+
+    private synchronized void publish(Estimate<T> estimate) {
+        final Estimate<T> previous = latest.get();
+        if (!result.isDone() && (previous == null || !previous.isExact())) {
+            latest.set(estimate);
+            // Estimates are snapshots, so a subscriber that falls behind only needs the newest ones
+            publisher.offer(estimate, (subscriber, dropped) -> false);
+        }
+    }
+
+    private synchronized void complete(Estimate<T> estimate) {
+        if (result.complete(estimate)) {
+            progress.cancel();
+            interruptExactEvaluation();
+            publisher.close();
+        }
+    }
+
+    private synchronized void fail(RuntimeException e) {
+        if (result.completeExceptionally(e)) {
+            progress.cancel();
+            interruptExactEvaluation();
+            publisher.closeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package ca.mbarkley.jsim.eval;
+
+import ca.mbarkley.jsim.model.Expression;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A bounded cache of evaluation results keyed by structurally equal expressions, evicting the least recently used
+ * entry when full. Approximate results are never cached, so that repeated requests get independent samples.
+ * Instances are thread-safe.
+ */
+public class ResultCache {
+    public static final ResultCache NONE = new ResultCache(0);
+
+    private final int capacity;
+    private final Map<Expression<?>, EvaluationBudget.Result<?>> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public ResultCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Expression<?>, EvaluationBudget.Result<?>> eldest) {
+                return size() > ResultCache.this.capacity;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Comparable<T>> EvaluationBudget.Result<T> computeIfAbsent(Expression<T> expression, Supplier<EvaluationBudget.Result<T>> evaluation) {
+        if (capacity == 0) {
+            return evaluation.get();
+        }
+
+        final EvaluationBudget.Result<T> cached;
+        synchronized (entries) {
+            cached = (EvaluationBudget.Result<T>) entries.get(expression);
+        }
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        final EvaluationBudget.Result<T> result = evaluation.get();
+        if (!result.isSampled()) {
+            synchronized (entries) {
+                entries.put(expression, result);
+            }
+        }
+
+        return result;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
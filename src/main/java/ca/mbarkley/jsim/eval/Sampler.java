@@ -0,0 +1,73 @@
+package ca.mbarkley.jsim.eval;
+
+import ca.mbarkley.jsim.model.EvaluationMonitor;
+import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.model.RuntimeContext;
+import ca.mbarkley.jsim.prob.Event;
+import lombok.RequiredArgsConstructor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static java.lang.String.format;
+
+/**
+ * Approximates the distribution of an expression by Monte Carlo simulation, for statements too large to enumerate.
+ */
+@RequiredArgsConstructor
+public class Sampler {
+    private static final int CANCELLATION_CHECK_MASK = 1023;
+    private static final int MAX_CONSECUTIVE_REJECTIONS = 100_000;
+
+    private final int samples;
+    private final Random random;
+
+    public Sampler(int samples) {
+        this(samples, new Random());
+    }
+
+    public <T extends Comparable<T>> Map<T, Event<T>> calculateResults(Expression<T> expression) {
+        return Event.normalize(calculateResults(expression, RuntimeContext.create(EvaluationMonitor.NONE)));
+    }
+
+    /**
+     * Samples rejected by a {@code given} condition are drawn again, but still count towards the total, so that the
+     * results total the probability of the conditions being true, like exact evaluation before renormalization.
+     */
+    public <T extends Comparable<T>> Map<T, Event<T>> calculateResults(Expression<T> expression, RuntimeContext ctx) {
+        final Map<T, Integer> counts = new HashMap<>();
+        long attempts = 0;
+        int rejections = 0;
+        for (int i = 0; i < samples; attempts++) {
+            if ((attempts & CANCELLATION_CHECK_MASK) == 0 && Thread.currentThread().isInterrupted()) {
+                throw new EvaluationException.CancelledException();
+            }
+            final T value = sampleAccepted(expression, ctx, random);
+            if (value != null) {
+                counts.merge(value, 1, Integer::sum);
+                rejections = 0;
+                i++;
+            } else if (++rejections >= MAX_CONSECUTIVE_REJECTIONS) {
+                throw new EvaluationException(format("The conditions of [%s] are too unlikely to sample", expression));
+            }
+        }
+
+        final double total = attempts;
+        final Map<T, Event<T>> results = new HashMap<>();
+        counts.forEach((value, count) -> results.put(value, new Event<>(value, count / total)));
+
+        return results;
+    }
+
+    /**
+     * @return A sample of the expression, or null if it was rejected by a {@code given} condition.
+     */
+    static <T extends Comparable<T>> T sampleAccepted(Expression<T> expression, RuntimeContext ctx, Random random) {
+        try {
+            return expression.sample(ctx, random);
+        } catch (EvaluationException.RejectedSampleException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package ca.mbarkley.jsim.eval;
+
+import lombok.Value;
+
+import static java.lang.String.format;
+
+/**
+ * A parsed {@code solve} statement, which searches a range for the smallest value of a variable at which a boolean
+ * expression is true with at least a target probability.
+ */
+@Value
+public class Solve implements Statement {
+    /**
+     * The boolean expression, which is bound to each candidate value in increasing order as the search reaches it.
+     */
+    Sweep sweep;
+    /**
+     * The target probability, in percent.
+     */
+    int percentage;
+
+    @Value
+    public static class Solution {
+        int value;
+        double probability;
+        boolean approximate;
+    }
+
+    public double getProbability() {
+        return percentage / 100.0;
+    }
+
+    @Override
+    public void accept(Visitor visitor) {
+        visitor.visitSolve(this);
+    }
+
+    @Override
+    public String toString() {
+        return format("solve %s in %d..%d: %s @ %d%%", sweep.getVariable(), sweep.getFrom(), sweep.getTo(), sweep.getBody(), percentage);
+    }
+}
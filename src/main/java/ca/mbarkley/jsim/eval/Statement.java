@@ -0,0 +1,18 @@
+package ca.mbarkley.jsim.eval;
+
+import ca.mbarkley.jsim.model.Expression;
+
+/**
+ * A statement of a script that has a result: an {@link ExpressionStatement}, a {@link Sweep} or a {@link Solve}.
+ */
+public interface Statement {
+    void accept(Visitor visitor);
+
+    interface Visitor {
+        void visitExpression(Expression<?> expression);
+
+        void visitSweep(Sweep sweep);
+
+        void visitSolve(Solve solve);
+    }
+}
@@ -0,0 +1,48 @@
+package ca.mbarkley.jsim.eval;
+
+import ca.mbarkley.jsim.eval.EvaluationException.InvalidTypeException;
+import ca.mbarkley.jsim.model.EvaluationMonitor;
+import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.model.Types;
+import ca.mbarkley.jsim.prob.Cumulants;
+import ca.mbarkley.jsim.prob.Event;
+
+import java.util.Map;
+
+import static java.lang.String.format;
+
+/**
+ * Computes summary statistics of integer and boolean expressions. Cumulants are propagated analytically through
+ * independent sums, differences and products with constants, so distributions are only evaluated for the
+ * sub-expressions that need them, such as comparisons or keeping the highest dice. Booleans count as 1 when true.
+ */
+public class StatisticsCalculator {
+    private final EvaluationBudget budget;
+    private final Planner planner;
+    private final CumulantAnalyzer analyzer = new CumulantAnalyzer();
+
+    public StatisticsCalculator(EvaluationBudget budget, Planner planner) {
+        this.budget = budget;
+        this.planner = planner;
+    }
+
+    public Cumulants calculate(Expression<?> expression) {
+        return analyzer.analyze(expression, this::evaluate);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Cumulants evaluate(Expression<?> expression) {
+        if (Types.INTEGER_TYPE.equals(expression.getType())) {
+            final Map<Integer, Event<Integer>> results = budget.calculateResults((Expression<Integer>) expression, EvaluationMonitor.NONE, planner).getResults();
+            return Cumulants.of(results.values().stream());
+        } else if (Types.BOOLEAN_TYPE.equals(expression.getType())) {
+            final Map<Boolean, Event<Boolean>> results = budget.calculateResults((Expression<Boolean>) expression, EvaluationMonitor.NONE, planner).getResults();
+            return Cumulants.of(results.values()
+                                       .stream()
+                                       .map(event -> new Event<>(event.getValue() ? 1 : 0, event.getProbability())));
+        } else {
+            throw new InvalidTypeException(format("Statistics are only defined for integer and boolean expressions, but [%s] has type [%s]",
+                                                  expression, expression.getType().name()));
+        }
+    }
+}
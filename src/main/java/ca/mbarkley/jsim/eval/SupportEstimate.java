@@ -0,0 +1,123 @@
+package ca.mbarkley.jsim.eval;
+
+import ca.mbarkley.jsim.model.Symbol;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import static java.lang.String.format;
+
+/**
+ * Static bounds for an expression, computed without evaluating it.
+ */
+@Value
+@AllArgsConstructor
+public class SupportEstimate {
+    /**
+     * Rough cost of producing one combined event, calibrated against {@link ca.mbarkley.jsim.prob.Event#productOfIndependent}.
+     */
+    static final double NANOS_PER_COMBINATION = 250.0;
+    /**
+     * Rough heap footprint of one grouped event, including the boxed value and map entry.
+     */
+    static final double BYTES_PER_EVENT = 128.0;
+
+    /**
+     * Upper bound on the number of distinct outcomes.
+     */
+    double support;
+    /**
+     * Lower bound on integer outcomes, or {@link Double#NaN} if the expression is not an integer or is unbounded.
+     */
+    double min;
+    /**
+     * Upper bound on integer outcomes, or {@link Double#NaN} if the expression is not an integer or is unbounded.
+     */
+    double max;
+    /**
+     * Estimated number of pairwise event combinations needed to evaluate the expression and its sub-expressions.
+     */
+    double cost;
+    /**
+     * Largest support of any intermediate result held while evaluating the expression.
+     */
+    double peakSupport;
+    /**
+     * Bounds on each component of vector outcomes, or empty if the expression is not a vector or any of its
+     * components is unbounded. Components missing from a vector are zero.
+     */
+    Map<Symbol, Range> components;
+
+    @Value
+    public static class Range {
+        double min;
+        double max;
+
+        public Range plus(Range other) {
+            return new Range(min + other.min, max + other.max);
+        }
+
+        public Range minus(Range other) {
+            return new Range(min - other.max, max - other.min);
+        }
+
+        public Range times(int number) {
+            return new Range(Math.min(min * number, max * number), Math.max(min * number, max * number));
+        }
+
+        public double getWidth() {
+            return max - min + 1;
+        }
+    }
+
+    public SupportEstimate(double support, double min, double max, double cost, double peakSupport) {
+        this(support, min, max, cost, peakSupport, Map.of());
+    }
+
+    public static SupportEstimate unbounded(double support, double cost, double peakSupport) {
+        return new SupportEstimate(support, Double.NaN, Double.NaN, cost, Math.max(support, peakSupport));
+    }
+
+    public static SupportEstimate bounded(double support, double min, double max, double cost, double peakSupport) {
+        final double width = max - min + 1;
+        final double boundedSupport = Math.min(support, width);
+        return new SupportEstimate(boundedSupport, min, max, cost, Math.max(boundedSupport, peakSupport));
+    }
+
+    /**
+     * Vectors can take at most one value for each combination of their component values, so sums of many vectors
+     * have a support polynomial in the number of terms, like sums of integers.
+     */
+    public static SupportEstimate vector(double support, Map<Symbol, Range> components, double cost, double peakSupport) {
+        double width = 1;
+        for (var range : components.values()) {
+            width *= range.getWidth();
+        }
+        final double boundedSupport = Math.min(support, width);
+        return new SupportEstimate(boundedSupport, Double.NaN, Double.NaN, cost, Math.max(boundedSupport, peakSupport), new TreeMap<>(components));
+    }
+
+    public boolean isBounded() {
+        return !Double.isNaN(min) && !Double.isNaN(max);
+    }
+
+    public boolean hasBoundedComponents() {
+        return !components.isEmpty();
+    }
+
+    public double estimatedNanos() {
+        return (cost + support) * NANOS_PER_COMBINATION;
+    }
+
+    public double estimatedBytes() {
+        return peakSupport * BYTES_PER_EVENT;
+    }
+
+    @Override
+    public String toString() {
+        final String range = isBounded() ? format("[%.0f, %.0f]", min, max) : "unbounded";
+        return format("support=%.3g range=%s cost=%.3g peak support=%.3g", support, range, cost, peakSupport);
+    }
+}
@@ -0,0 +1,291 @@
+package ca.mbarkley.jsim.eval;
+
+import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.model.Expression.*;
+import ca.mbarkley.jsim.model.IntegerExpression.HighDice;
+import ca.mbarkley.jsim.model.IntegerExpression.HomogeneousDicePool;
+import ca.mbarkley.jsim.model.IntegerExpression.LowDice;
+import ca.mbarkley.jsim.eval.SupportEstimate.Range;
+import ca.mbarkley.jsim.model.Symbol;
+import ca.mbarkley.jsim.model.Type.VectorType;
+import ca.mbarkley.jsim.model.Types;
+import ca.mbarkley.jsim.model.Vector;
+import ca.mbarkley.jsim.prob.Event;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BinaryOperator;
+import java.util.stream.Stream;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Bounds the support and evaluation cost of expressions without evaluating them. Estimates follow the enumeration
+ * strategy of {@link ca.mbarkley.jsim.prob.Event#productOfIndependent}, and are upper bounds on support but only
+ * rough guides for cost.
+ */
+public class SupportEstimator {
+
+    public SupportEstimate estimate(Expression<?> expression) {
+        return estimate(expression, Map.of(), new IdentityHashMap<>());
+    }
+
+    /**
+     * @return Estimates for the given expression and every one of its sub-expressions.
+     */
+    public Map<Expression<?>, SupportEstimate> estimateAll(Expression<?> expression) {
+        final Map<Expression<?>, SupportEstimate> estimates = new IdentityHashMap<>();
+        estimate(expression, Map.of(), estimates);
+
+        return estimates;
+    }
+
+    private SupportEstimate estimate(Expression<?> expression, Map<String, SupportEstimate> scope, Map<Expression<?>, SupportEstimate> estimates) {
+        final SupportEstimate estimate = estimateNode(expression, scope, estimates);
+        estimates.merge(expression, estimate, (e1, e2) -> e1.getCost() >= e2.getCost() ? e1 : e2);
+
+        return estimate;
+    }
+
+    private SupportEstimate estimateNode(Expression<?> expression, Map<String, SupportEstimate> scope, Map<Expression<?>, SupportEstimate> estimates) {
+        if (expression instanceof Constant) {
+            return estimateConstant((Constant<?>) expression);
+        } else if (expression instanceof BoundConstant) {
+            return scope.getOrDefault(((BoundConstant<?>) expression).getIdentifier(), SupportEstimate.unbounded(1, 0, 1));
+        } else if (expression instanceof HomogeneousDicePool) {
+            return estimateDicePool((HomogeneousDicePool) expression);
+        } else if (expression instanceof HighDice) {
+            final HighDice highDice = (HighDice) expression;
+            return estimateKeptDice(highDice.getDicePool(), highDice.getNumberOfDice());
+        } else if (expression instanceof LowDice) {
+            final LowDice lowDice = (LowDice) expression;
+            return estimateKeptDice(lowDice.getDicePool(), lowDice.getNumberOfDice());
+        } else if (expression instanceof CustomDie) {
+            final CustomDie<?> die = (CustomDie<?>) expression;
+            final int sides = die.getValues().size();
+            final Map<Symbol, Range> components = componentRanges(die.getValues().stream().map(Event::getValue));
+            return components.isEmpty() ? SupportEstimate.unbounded(sides, 0, sides) : SupportEstimate.vector(sides, components, 0, sides);
+        } else if (expression instanceof Bracketed) {
+            return estimate(((Bracketed<?>) expression).getSubExpression(), scope, estimates);
+        } else if (expression instanceof MappedExpression) {
+            final SupportEstimate sub = estimate(((MappedExpression<?, ?>) expression).getExpression(), scope, estimates);
+            if (expression.getType() instanceof VectorType && sub.hasBoundedComponents()) {
+                // Symbols become unit vectors and vectors gain zero components, so component bounds carry over
+                return SupportEstimate.vector(sub.getSupport(), sub.getComponents(), sub.getCost() + sub.getSupport(), sub.getPeakSupport());
+            }
+            return SupportEstimate.unbounded(sub.getSupport(), sub.getCost() + sub.getSupport(), sub.getPeakSupport());
+        } else if (expression instanceof MultiplicativeExpression) {
+            final MultiplicativeExpression multiplicative = (MultiplicativeExpression) expression;
+            return estimateRepeatedSum(estimate(multiplicative.getSubExpression(), scope, estimates), multiplicative.getNumber());
+        } else if (expression instanceof BindExpression) {
+            return estimateBind((BindExpression<?, ?>) expression, scope, estimates);
+        } else if (expression instanceof GivenExpression) {
+            return estimateGiven((GivenExpression<?>) expression, scope, estimates);
+        } else if (expression instanceof BinaryOpExpression) {
+            final BinaryOpExpression<?, ?> binaryOp = (BinaryOpExpression<?, ?>) expression;
+            return estimateBinaryOp(binaryOp, estimate(binaryOp.getLeft(), scope, estimates), estimate(binaryOp.getRight(), scope, estimates));
+        } else {
+            double support = 1;
+            double cost = 0;
+            double peak = 1;
+            for (var child : expression.children()) {
+                final SupportEstimate childEstimate = estimate(child, scope, estimates);
+                cost += childEstimate.getCost() + support * childEstimate.getSupport();
+                support *= childEstimate.getSupport();
+                peak = max(peak, childEstimate.getPeakSupport());
+            }
+
+            return SupportEstimate.unbounded(support, cost, peak);
+        }
+    }
+
+    private SupportEstimate estimateConstant(Constant<?> constant) {
+        if (Types.INTEGER_TYPE.equals(constant.getType())) {
+            final int value = (Integer) constant.getValue();
+            return SupportEstimate.bounded(1, value, value, 0, 1);
+        } else {
+            final Map<Symbol, Range> components = componentRanges(Stream.of(constant.getValue()));
+            return components.isEmpty() ? SupportEstimate.unbounded(1, 0, 1) : SupportEstimate.vector(1, components, 0, 1);
+        }
+    }
+
+    /**
+     * @return Bounds on each component of vector or symbol values, where a symbol is a vector with one component of
+     * 1, or an empty map if the values are of another type or have components that are not integers.
+     */
+    private static Map<Symbol, Range> componentRanges(Stream<?> values) {
+        final Map<Symbol, Range> components = new TreeMap<>();
+        for (var value : values.collect(toList())) {
+            if (value instanceof Symbol) {
+                components.merge((Symbol) value, new Range(1, 1), SupportEstimator::span);
+            } else if (value instanceof Vector) {
+                for (var coordinate : ((Vector) value).coordinates().collect(toList())) {
+                    if (!(coordinate.getValue().getValue() instanceof Integer)) {
+                        return Map.of();
+                    }
+                    final int component = (Integer) coordinate.getValue().getValue();
+                    components.merge(coordinate.getKey(), new Range(component, component), SupportEstimator::span);
+                }
+            } else {
+                return Map.of();
+            }
+        }
+
+        return components;
+    }
+
+    private static Range span(Range r1, Range r2) {
+        return new Range(min(r1.getMin(), r2.getMin()), max(r1.getMax(), r2.getMax()));
+    }
+
+    private static Map<Symbol, Range> combineComponents(Map<Symbol, Range> left, Map<Symbol, Range> right, BinaryOperator<Range> operator) {
+        final Range zero = new Range(0, 0);
+        final Map<Symbol, Range> components = new TreeMap<>();
+        for (var symbol : left.keySet()) {
+            components.put(symbol, operator.apply(left.get(symbol), right.getOrDefault(symbol, zero)));
+        }
+        for (var symbol : right.keySet()) {
+            components.computeIfAbsent(symbol, key -> operator.apply(zero, right.get(symbol)));
+        }
+
+        return components;
+    }
+
+    private SupportEstimate estimateDicePool(HomogeneousDicePool pool) {
+        final double n = pool.getNumberOfDice();
+        final double s = pool.getDiceSides();
+        final double cost = s * ((s - 1) * n * (n - 1) / 2.0 + (n - 1));
+
+        return SupportEstimate.bounded(n * (s - 1) + 1, n, n * s, cost, 1);
+    }
+
+    private SupportEstimate estimateKeptDice(HomogeneousDicePool pool, int numberOfDice) {
+        final int n = pool.getNumberOfDice();
+        final int s = pool.getDiceSides();
+        final int k = min(numberOfDice, n);
+        double cost = 0;
+        double peak = 1;
+        for (int i = 1; i < n; i++) {
+            final double states = multisets(s, min(i, k));
+            cost += states * s * (k + 1);
+            peak = max(peak, states);
+        }
+
+        return SupportEstimate.bounded((double) k * (s - 1) + 1, k, (double) k * s, cost, peak);
+    }
+
+    private SupportEstimate estimateRepeatedSum(SupportEstimate sub, int number) {
+        if (sub.hasBoundedComponents()) {
+            return estimateRepeatedVectorSum(sub, number);
+        }
+        double support = sub.getSupport();
+        double cost = sub.getCost() * number;
+        for (int i = 1; i < number; i++) {
+            cost += support * sub.getSupport();
+            support *= sub.getSupport();
+        }
+
+        return SupportEstimate.unbounded(support, cost, max(support, sub.getPeakSupport()));
+    }
+
+    private SupportEstimate estimateRepeatedVectorSum(SupportEstimate sub, int number) {
+        SupportEstimate sum = sub;
+        double cost = sub.getCost() * number;
+        for (int i = 2; i <= number; i++) {
+            final int terms = i;
+            final Map<Symbol, Range> components = new TreeMap<>();
+            sub.getComponents().forEach((symbol, range) -> components.put(symbol, range.times(terms)));
+            cost += sum.getSupport() * sub.getSupport();
+            sum = SupportEstimate.vector(sum.getSupport() * sub.getSupport(), components, cost, sum.getPeakSupport());
+        }
+
+        return SupportEstimate.vector(sum.getSupport(), sum.getComponents(), cost, max(sum.getPeakSupport(), sub.getPeakSupport()));
+    }
+
+    /**
+     * Conditioning only scales the events of the expression, so it keeps their support and bounds.
+     */
+    private SupportEstimate estimateGiven(GivenExpression<?> given, Map<String, SupportEstimate> scope, Map<Expression<?>, SupportEstimate> estimates) {
+        final SupportEstimate condition = estimate(given.getCondition(), scope, estimates);
+        final SupportEstimate value = estimate(given.getExpression(), scope, estimates);
+        final double cost = condition.getCost() + condition.getSupport() + value.getCost() + value.getSupport();
+        final double peak = max(condition.getPeakSupport(), value.getPeakSupport());
+        if (value.isBounded()) {
+            return SupportEstimate.bounded(value.getSupport(), value.getMin(), value.getMax(), cost, peak);
+        } else {
+            return SupportEstimate.unbounded(value.getSupport(), cost, peak);
+        }
+    }
+
+    private SupportEstimate estimateBind(BindExpression<?, ?> bind, Map<String, SupportEstimate> scope, Map<Expression<?>, SupportEstimate> estimates) {
+        final SupportEstimate bound = estimate(bind.getBindExpression(), scope, estimates);
+        final Map<String, SupportEstimate> subScope = new HashMap<>(scope);
+        subScope.put(bind.getBoundIdentifier(), new SupportEstimate(1, bound.getMin(), bound.getMax(), 0, 1));
+        final SupportEstimate value = estimate(bind.getValueExpression(), subScope, estimates);
+
+        final double support = bound.getSupport() * value.getSupport();
+        final double cost = bound.getCost() + bound.getSupport() * (value.getCost() + value.getSupport());
+        final double peak = max(bound.getPeakSupport(), value.getPeakSupport());
+        if (value.isBounded()) {
+            return SupportEstimate.bounded(support, value.getMin(), value.getMax(), cost, peak);
+        } else if (Types.BOOLEAN_TYPE.equals(bind.getType())) {
+            return SupportEstimate.unbounded(min(support, 2), cost, peak);
+        } else {
+            return SupportEstimate.unbounded(support, cost, peak);
+        }
+    }
+
+    private SupportEstimate estimateBinaryOp(BinaryOpExpression<?, ?> binaryOp, SupportEstimate left, SupportEstimate right) {
+        final double combinations = left.getSupport() * right.getSupport();
+        final double cost = left.getCost() + right.getCost() + combinations;
+        final double peak = max(left.getPeakSupport(), right.getPeakSupport());
+
+        if (Types.BOOLEAN_TYPE.equals(binaryOp.getType())) {
+            return SupportEstimate.unbounded(min(combinations, 2), cost, peak);
+        } else if (left.hasBoundedComponents() && right.hasBoundedComponents()) {
+            switch (binaryOp.getOperator().getSymbol()) {
+                case "+":
+                    return SupportEstimate.vector(combinations, combineComponents(left.getComponents(), right.getComponents(), Range::plus), cost, peak);
+                case "-":
+                    return SupportEstimate.vector(combinations, combineComponents(left.getComponents(), right.getComponents(), Range::minus), cost, peak);
+            }
+        } else if (Types.INTEGER_TYPE.equals(binaryOp.getType()) && left.isBounded() && right.isBounded()) {
+            final double a = left.getMin(), b = left.getMax(), c = right.getMin(), d = right.getMax();
+            switch (binaryOp.getOperator().getSymbol()) {
+                case "+":
+                    return SupportEstimate.bounded(combinations, a + c, b + d, cost, peak);
+                case "-":
+                    return SupportEstimate.bounded(combinations, a - d, b - c, cost, peak);
+                case "*":
+                    return SupportEstimate.bounded(combinations,
+                                                   min(min(a * c, a * d), min(b * c, b * d)),
+                                                   max(max(a * c, a * d), max(b * c, b * d)),
+                                                   cost, peak);
+                case "/":
+                    final double largestDividend = max(Math.abs(a), Math.abs(b));
+                    return SupportEstimate.bounded(combinations, -largestDividend, largestDividend, cost, peak);
+                case "%":
+                    final double largestDivisor = max(Math.abs(c), Math.abs(d));
+                    return SupportEstimate.bounded(combinations, -(largestDivisor - 1), largestDivisor - 1, cost, peak);
+            }
+        }
+
+        return SupportEstimate.unbounded(combinations, cost, peak);
+    }
+
+    /**
+     * @return The number of sorted lists of length {@code k} drawn from {@code n} values.
+     */
+    private static double multisets(int n, int k) {
+        double result = 1;
+        for (int i = 1; i <= k; i++) {
+            result = result * (n + i - 1) / i;
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,55 @@
+package ca.mbarkley.jsim.eval;
+
+import ca.mbarkley.jsim.model.Expression;
+import lombok.EqualsAndHashCode;
+import lombok.Value;
+
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import static java.lang.String.format;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * A parsed {@code for} statement, which evaluates one expression for each value of a variable in an inclusive range.
+ */
+@Value
+public class Sweep implements Statement {
+    String variable;
+    int from;
+    int to;
+    /**
+     * The text of the swept expression.
+     */
+    String body;
+    /**
+     * Parses the swept expression with the variable bound to a given value. Expressions are only parsed when needed,
+     * so that a wide range does not hold a tree for every value.
+     */
+    @EqualsAndHashCode.Exclude
+    IntFunction<Expression<?>> binding;
+
+    public Expression<?> bind(int value) {
+        return binding.apply(value);
+    }
+
+    /**
+     * @return The swept expression with the variable bound to each value of the range, in order.
+     */
+    public List<Expression<?>> getExpressions() {
+        return IntStream.rangeClosed(from, to)
+                        .<Expression<?>>mapToObj(this::bind)
+                        .collect(toList());
+    }
+
+    @Override
+    public void accept(Visitor visitor) {
+        visitor.visitSweep(this);
+    }
+
+    @Override
+    public String toString() {
+        return format("for %s in %d..%d: %s", variable, from, to, body);
+    }
+}
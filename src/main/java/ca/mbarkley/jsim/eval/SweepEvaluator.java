@@ -0,0 +1,166 @@
+package ca.mbarkley.jsim.eval;
+
+import ca.mbarkley.jsim.model.EvaluationMonitor;
+import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.model.Expression.BoundConstant;
+import ca.mbarkley.jsim.model.IntegerExpression.HomogeneousDicePool;
+import ca.mbarkley.jsim.prob.DenseDistribution;
+import ca.mbarkley.jsim.prob.Event;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Evaluates the statements of a {@link Sweep} in order, sharing work between them. Sub-expressions that do not depend
+ * on the swept variable are evaluated once, so each statement only recomputes the nodes that change, such as shifting
+ * a shared distribution by the variable. A dice pool whose size is swept is extended by one die from the previous
+ * pool, rather than convolved from scratch.
+ */
+public class SweepEvaluator {
+    /**
+     * Allows for rounding when comparing probabilities with a target, so that exactly reaching it counts.
+     */
+    private static final double TOLERANCE = 1e-12;
+
+    private final EvaluationBudget budget;
+    private final Planner planner;
+
+    public SweepEvaluator(EvaluationBudget budget, Planner planner) {
+        this.budget = budget;
+        this.planner = planner;
+    }
+
+    public List<EvaluationBudget.Result<?>> evaluate(Sweep sweep) {
+        return evaluate(sweep, EvaluationMonitor.NONE);
+    }
+
+    /**
+     * @param monitor Monitors every statement of the sweep.
+     */
+    public List<EvaluationBudget.Result<?>> evaluate(Sweep sweep, EvaluationMonitor monitor) {
+        final SharedResults shared = new SharedResults(monitor);
+        final List<EvaluationBudget.Result<?>> results = new ArrayList<>(sweep.getTo() - sweep.getFrom() + 1);
+        for (int value = sweep.getFrom(); value <= sweep.getTo(); value++) {
+            if (value > sweep.getFrom()) {
+                shared.nextValue();
+            }
+            results.add(evaluate(sweep.bind(value), shared, monitor));
+        }
+
+        return results;
+    }
+
+    public Optional<Solve.Solution> solve(Solve solve) {
+        return solve(solve, EvaluationMonitor.NONE);
+    }
+
+    /**
+     * Evaluates candidate values in increasing order, stopping at the first that reaches the target probability. A
+     * linear scan makes no assumption that the probability is monotonic in the variable, and each candidate reuses the
+     * work of the previous ones, so a step usually costs no more than adding one die to a pool.
+     *
+     * @return The smallest value reaching the target, or empty if none in the range does.
+     */
+    @SuppressWarnings("unchecked")
+    public Optional<Solve.Solution> solve(Solve solve, EvaluationMonitor monitor) {
+        final Sweep sweep = solve.getSweep();
+        final SharedResults shared = new SharedResults(monitor);
+        for (int value = sweep.getFrom(); value <= sweep.getTo(); value++) {
+            if (value > sweep.getFrom()) {
+                shared.nextValue();
+            }
+            final EvaluationBudget.Result<Boolean> result = (EvaluationBudget.Result<Boolean>) evaluate(sweep.bind(value), shared, monitor);
+            final Event<Boolean> success = result.getResults().get(true);
+            final double probability = success == null ? 0.0 : success.getProbability();
+            if (probability >= solve.getProbability() - TOLERANCE) {
+                return Optional.of(new Solve.Solution(value, probability, result.isSampled()));
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    private <T extends Comparable<T>> EvaluationBudget.Result<T> evaluate(Expression<T> expression, SharedResults shared, EvaluationMonitor monitor) {
+        // Approximated nodes are planned for one statement, so their events are not shared with the others
+        final EvaluationMonitor statementMonitor = planner.plan(expression).isApproximate() ? monitor : shared;
+
+        return budget.calculateResults(expression, statementMonitor, planner);
+    }
+
+    private static boolean isShareable(Expression<?> expression) {
+        return !(expression instanceof BoundConstant) && expression.children().stream().allMatch(SweepEvaluator::isShareable);
+    }
+
+    /**
+     * Materializes the events of every node that does not depend on a let-bound identifier, keyed by structurally
+     * equal expressions. Events are only kept while the sweep still uses them: when moving to the next value, every
+     * node that the previous value neither computed nor reused is evicted, so memory does not grow with the range.
+     */
+    private static class SharedResults implements EvaluationMonitor {
+        private final EvaluationMonitor delegate;
+        private final Map<Expression<?>, List<Event<?>>> events = new HashMap<>();
+        private Set<Expression<?>> used = new HashSet<>();
+
+        SharedResults(EvaluationMonitor delegate) {
+            this.delegate = delegate;
+        }
+
+        /**
+         * Called before evaluating each value after the first.
+         */
+        void nextValue() {
+            events.keySet().retainAll(used);
+            used = new HashSet<>();
+        }
+
+        @Override
+        public void checkpoint() {
+            delegate.checkpoint();
+        }
+
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        public <T extends Comparable<T>> Stream<Event<T>> monitor(Expression<T> expression, Supplier<Stream<Event<T>>> supplier) {
+            if (!isShareable(expression)) {
+                return delegate.monitor(expression, supplier);
+            }
+
+            used.add(expression);
+            final List<Event<?>> cached = events.get(expression);
+            if (cached != null) {
+                return (Stream) cached.stream();
+            }
+
+            final List<Event<?>> computed = delegate.monitor(expression, () -> extendPool(expression).orElseGet(supplier))
+                                                    .collect(toList());
+            events.put(expression, computed);
+
+            return (Stream) computed.stream();
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private <T extends Comparable<T>> Optional<Stream<Event<T>>> extendPool(Expression<T> expression) {
+            if (expression instanceof HomogeneousDicePool) {
+                final HomogeneousDicePool pool = (HomogeneousDicePool) expression;
+                final HomogeneousDicePool smaller = new HomogeneousDicePool(pool.getNumberOfDice() - 1, pool.getDiceSides());
+                final List<Event<?>> previous = events.get(smaller);
+                if (pool.getNumberOfDice() > 1 && previous != null) {
+                    used.add(smaller);
+                    final DenseDistribution extended = DenseDistribution.of((Stream) previous.stream()).plusDie(pool.getDiceSides());
+                    return Optional.of((Stream) extended.events());
+                }
+            }
+
+            return Optional.empty();
+        }
+    }
+}
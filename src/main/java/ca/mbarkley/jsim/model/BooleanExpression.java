@@ -10,8 +10,8 @@ public abstract class BooleanExpression extends Expression<Boolean> {
         return Types.BOOLEAN_TYPE;
     }
 
-    public static Constant<Boolean> TRUE = new Constant<>(Types.BOOLEAN_TYPE, true);
-    public static Constant<Boolean> FALSE = new Constant<>(Types.BOOLEAN_TYPE, false);
+    public static final Constant<Boolean> TRUE = new Constant<>(Types.BOOLEAN_TYPE, true);
+    public static final Constant<Boolean> FALSE = new Constant<>(Types.BOOLEAN_TYPE, false);
 
     public static class BooleanOperators {
         public static final BinaryOperator<Boolean, Boolean> eq = BinaryOperator.strictEquality();
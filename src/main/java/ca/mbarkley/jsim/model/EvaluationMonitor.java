@@ -0,0 +1,28 @@
+package ca.mbarkley.jsim.model;
+
+import ca.mbarkley.jsim.prob.Event;
+
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Hook invoked around the evaluation of every {@link Expression} node. Implementations may observe or
+ * materialize the events produced by a node, but must return events equivalent to those of the given supplier.
+ */
+public interface EvaluationMonitor {
+    EvaluationMonitor NONE = new EvaluationMonitor() {
+        @Override
+        public <T extends Comparable<T>> Stream<Event<T>> monitor(Expression<T> expression, Supplier<Stream<Event<T>>> events) {
+            return events.get();
+        }
+    };
+
+    <T extends Comparable<T>> Stream<Event<T>> monitor(Expression<T> expression, Supplier<Stream<Event<T>>> events);
+
+    /**
+     * Called periodically by long-running loops that produce no events until they finish, such as dense convolutions,
+     * so that implementations can stop the evaluation by throwing.
+     */
+    default void checkpoint() {
+    }
+}
@@ -0,0 +1,21 @@
+package ca.mbarkley.jsim.model;
+
+import ca.mbarkley.jsim.prob.Event;
+
+import java.util.stream.Stream;
+
+/**
+ * Chooses how each {@link Expression} node is evaluated. The default plan uses each expression's own
+ * {@link Expression#events(RuntimeContext)}, while other plans may substitute alternative kernels that produce
+ * equivalent (or, when sampling, approximately equivalent) events.
+ */
+public interface EvaluationPlan {
+    EvaluationPlan DEFAULT = new EvaluationPlan() {
+        @Override
+        public <T extends Comparable<T>> Stream<Event<T>> events(Expression<T> expression, RuntimeContext ctx) {
+            return expression.events(ctx);
+        }
+    };
+
+    <T extends Comparable<T>> Stream<Event<T>> events(Expression<T> expression, RuntimeContext ctx);
+}
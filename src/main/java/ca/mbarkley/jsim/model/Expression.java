@@ -1,5 +1,6 @@
 package ca.mbarkley.jsim.model;
 
+import ca.mbarkley.jsim.eval.EvaluationException;
 import ca.mbarkley.jsim.model.ExpressionConverter.ValueConverter;
 import ca.mbarkley.jsim.prob.Event;
 import lombok.EqualsAndHashCode;
@@ -8,6 +9,7 @@ import lombok.Value;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
 import java.util.stream.Stream;
 
 import static ca.mbarkley.jsim.model.BinaryOperators.lookupBinaryOp;
@@ -24,12 +26,42 @@ public abstract class Expression<T extends Comparable<T>> {
     public abstract Stream<Event<T>> events(RuntimeContext ctx);
 
     public Map<T, Event<T>> calculateResults() {
-        final RuntimeContext ctx = new RuntimeContext(Map.of());
-        return events(ctx).collect(toMap(Event::getValue, identity(), (e1, e2) -> new Event<>(e1.getValue(), e1.getProbability() + e2.getProbability())));
+        return calculateResults(EvaluationMonitor.NONE);
+    }
+
+    public Map<T, Event<T>> calculateResults(EvaluationMonitor monitor) {
+        return calculateResults(RuntimeContext.create(monitor));
+    }
+
+    /**
+     * @return The distribution of this expression, renormalized if any part of it is conditioned with {@code given}.
+     */
+    public Map<T, Event<T>> calculateResults(RuntimeContext ctx) {
+        final Map<T, Event<T>> results = ctx.evaluate(this).collect(toMap(Event::getValue, identity(), (e1, e2) -> new Event<>(e1.getValue(), e1.getProbability() + e2.getProbability())));
+        if (results.isEmpty()) {
+            throw new EvaluationException(format("The conditions of [%s] are never true", this));
+        }
+
+        return Event.normalize(results);
     }
 
     public abstract Type<T> getType();
 
+    /**
+     * Draws a single random outcome of this expression. The default implementation enumerates all events, so
+     * expressions with large supports should override this with a direct simulation.
+     */
+    public T sample(RuntimeContext ctx, Random random) {
+        return Event.sample(ctx.evaluate(this).collect(toList()), random);
+    }
+
+    /**
+     * @return The direct sub-expressions evaluated by this expression.
+     */
+    public List<Expression<?>> children() {
+        return List.of();
+    }
+
     @Value
     @EqualsAndHashCode(callSuper = false)
     public static class MultiplicativeExpression extends Expression<Vector> {
@@ -38,7 +70,7 @@ public abstract class Expression<T extends Comparable<T>> {
 
         @Override
         public Stream<Event<Vector>> events(RuntimeContext ctx) {
-            final List<Stream<Event<Vector>>> singleEventStreams = Stream.generate(() -> subExpression.events(ctx))
+            final List<Stream<Event<Vector>>> singleEventStreams = Stream.generate(() -> ctx.evaluate(subExpression))
                                                                          .limit(number)
                                                                          .collect(toList());
             final BinaryOperator<Vector, Vector> op = (BinaryOperator<Vector, Vector>) lookupBinaryOp(subExpression.getType(), subExpression.getType(), "+").get();
@@ -46,6 +78,22 @@ public abstract class Expression<T extends Comparable<T>> {
             return productOfIndependent(singleEventStreams, op::evaluate);
         }
 
+        @Override
+        public List<Expression<?>> children() {
+            return List.of(subExpression);
+        }
+
+        @Override
+        public Vector sample(RuntimeContext ctx, Random random) {
+            final BinaryOperator<Vector, Vector> op = (BinaryOperator<Vector, Vector>) lookupBinaryOp(subExpression.getType(), subExpression.getType(), "+").get();
+            Vector sum = subExpression.sample(ctx, random);
+            for (int i = 1; i < number; i++) {
+                sum = op.evaluate(sum, subExpression.sample(ctx, random));
+            }
+
+            return sum;
+        }
+
         @Override
         public boolean isConstant() {
             return subExpression.isConstant();
@@ -69,7 +117,17 @@ public abstract class Expression<T extends Comparable<T>> {
 
         @Override
         public Stream<Event<T>> events(RuntimeContext ctx) {
-            return subExpression.events(ctx);
+            return ctx.evaluate(subExpression);
+        }
+
+        @Override
+        public List<Expression<?>> children() {
+            return List.of(subExpression);
+        }
+
+        @Override
+        public T sample(RuntimeContext ctx, Random random) {
+            return subExpression.sample(ctx, random);
         }
 
         @Override
@@ -104,6 +162,11 @@ public abstract class Expression<T extends Comparable<T>> {
             return Stream.of(new Event<>(value, 1.0));
         }
 
+        @Override
+        public T sample(RuntimeContext ctx, Random random) {
+            return value;
+        }
+
         @Override
         public boolean isConstant() {
             return true;
@@ -164,13 +227,24 @@ public abstract class Expression<T extends Comparable<T>> {
 
         @Override
         public Stream<Event<T>> events(RuntimeContext ctx) {
-            return bindExpression.events(ctx)
-                                 // TODO maybe group by same values here?
-                                 .flatMap(event -> {
-                                     final RuntimeContext subCtx = ctx.with(boundIdentifier, new Constant<>(bindExpression.getType(), event.getValue()));
-                                     return valueExpression.events(subCtx)
-                                                           .map(subEvent -> new Event<>(subEvent.getValue(), subEvent.getProbability() * event.getProbability()));
-                                 });
+            return ctx.evaluate(bindExpression)
+                      // TODO maybe group by same values here?
+                      .flatMap(event -> {
+                          final RuntimeContext subCtx = ctx.with(boundIdentifier, new Constant<>(bindExpression.getType(), event.getValue()));
+                          return subCtx.evaluate(valueExpression)
+                                       .map(subEvent -> new Event<>(subEvent.getValue(), subEvent.getProbability() * event.getProbability()));
+                      });
+        }
+
+        @Override
+        public List<Expression<?>> children() {
+            return List.of(bindExpression, valueExpression);
+        }
+
+        @Override
+        public T sample(RuntimeContext ctx, Random random) {
+            final B boundValue = bindExpression.sample(ctx, random);
+            return valueExpression.sample(ctx.with(boundIdentifier, new Constant<>(bindExpression.getType(), boundValue)), random);
         }
 
         @Override
@@ -201,8 +275,18 @@ public abstract class Expression<T extends Comparable<T>> {
 
         @Override
         public Stream<Event<T>> events(RuntimeContext ctx) {
-            return expression.events(ctx)
-                             .map(e -> new Event<>(mapper.convert(e.getValue()), e.getProbability()));
+            return ctx.evaluate(expression)
+                      .map(e -> new Event<>(mapper.convert(e.getValue()), e.getProbability()));
+        }
+
+        @Override
+        public List<Expression<?>> children() {
+            return List.of(expression);
+        }
+
+        @Override
+        public T sample(RuntimeContext ctx, Random random) {
+            return mapper.convert(expression.sample(ctx, random));
         }
 
         @Override
@@ -233,6 +317,11 @@ public abstract class Expression<T extends Comparable<T>> {
             return values.stream();
         }
 
+        @Override
+        public T sample(RuntimeContext ctx, Random random) {
+            return Event.sample(values, random);
+        }
+
         @Override
         public boolean isConstant() {
             return values.size() == 1 ||
@@ -260,7 +349,17 @@ public abstract class Expression<T extends Comparable<T>> {
 
         @Override
         public Stream<Event<T>> events(RuntimeContext ctx) {
-            return productOfIndependent(left.events(ctx), right.events(ctx), operator::evaluate);
+            return productOfIndependent(ctx.evaluate(left), ctx.evaluate(right), operator::evaluate);
+        }
+
+        @Override
+        public List<Expression<?>> children() {
+            return List.of(left, right);
+        }
+
+        @Override
+        public T sample(RuntimeContext ctx, Random random) {
+            return operator.evaluate(left.sample(ctx, random), right.sample(ctx, random));
         }
 
         @Override
@@ -278,4 +377,65 @@ public abstract class Expression<T extends Comparable<T>> {
             return format("%s %s %s", left, operator.getSymbol(), right);
         }
     }
+
+    /**
+     * The distribution of an expression conditioned on a boolean expression being true. Events are weighted by the
+     * probability of the condition, so their total probability is the probability of the condition rather than 1, and
+     * branches where the condition is impossible produce no events at all, without evaluating the expression. Results
+     * are renormalized once at the top level by {@link #calculateResults(RuntimeContext)}, which conditions on the
+     * condition holding across all let-bound values.
+     */
+    @Value
+    @EqualsAndHashCode(callSuper = false)
+    public static class GivenExpression<T extends Comparable<T>> extends Expression<T> {
+        Expression<T> expression;
+        Expression<Boolean> condition;
+
+        @Override
+        public Stream<Event<T>> events(RuntimeContext ctx) {
+            final double probability = ctx.evaluate(condition)
+                                          .filter(Event::getValue)
+                                          .mapToDouble(Event::getProbability)
+                                          .sum();
+            if (probability == 0.0) {
+                return Stream.empty();
+            }
+
+            return ctx.evaluate(expression)
+                      .map(event -> new Event<>(event.getValue(), event.getProbability() * probability));
+        }
+
+        @Override
+        public List<Expression<?>> children() {
+            return List.of(condition, expression);
+        }
+
+        /**
+         * @throws EvaluationException.RejectedSampleException If the sampled condition is false, so that the whole
+         * sample must be drawn again.
+         */
+        @Override
+        public T sample(RuntimeContext ctx, Random random) {
+            if (condition.sample(ctx, random)) {
+                return expression.sample(ctx, random);
+            } else {
+                throw EvaluationException.RejectedSampleException.INSTANCE;
+            }
+        }
+
+        @Override
+        public boolean isConstant() {
+            return expression.isConstant() && condition.isConstant();
+        }
+
+        @Override
+        public Type<T> getType() {
+            return expression.getType();
+        }
+
+        @Override
+        public String toString() {
+            return format("%s given %s", expression, condition);
+        }
+    }
 }
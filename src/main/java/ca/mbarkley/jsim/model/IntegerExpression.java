@@ -1,13 +1,21 @@
 package ca.mbarkley.jsim.model;
 
+import ca.mbarkley.jsim.eval.EvaluationException;
+import ca.mbarkley.jsim.prob.AbsorbingChain;
+import ca.mbarkley.jsim.prob.AbsorbingChain.Absorption;
+import ca.mbarkley.jsim.prob.DenseDistribution;
+import ca.mbarkley.jsim.prob.DiceTables;
 import ca.mbarkley.jsim.prob.Event;
 import lombok.EqualsAndHashCode;
 import lombok.Value;
 
+import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
 import java.util.stream.Stream;
 
 import static ca.mbarkley.jsim.prob.Event.productOfIndependent;
+import static ca.mbarkley.jsim.util.FormatUtils.formatAsPercentage;
 import static java.lang.String.format;
 import static java.util.Comparator.comparingInt;
 import static java.util.stream.Collectors.*;
@@ -28,6 +36,12 @@ public abstract class IntegerExpression extends Expression<Integer> {
 
         @Override
         public Stream<Event<Integer>> events(RuntimeContext ctx) {
+            return DiceTables.keepHighest(dicePool.getNumberOfDice(), dicePool.getDiceSides(), numberOfDice)
+                             .map(DenseDistribution::events)
+                             .orElseGet(this::enumerateEvents);
+        }
+
+        private Stream<Event<Integer>> enumerateEvents() {
             final List<Stream<Event<List<Integer>>>> singleDieStreams = Stream.generate(() -> Event.singleDieEvents(dicePool.getDiceSides())
                                                                                                    .map(event -> new Event<>(List.of(event.getValue()), event.getProbability())))
                                                                               .limit(dicePool.getNumberOfDice())
@@ -41,6 +55,16 @@ public abstract class IntegerExpression extends Expression<Integer> {
                     .map(entry -> new Event<>(entry.getKey(), entry.getValue()));
         }
 
+        @Override
+        public Integer sample(RuntimeContext ctx, Random random) {
+            return random.ints(dicePool.getNumberOfDice(), 1, dicePool.getDiceSides() + 1)
+                         .boxed()
+                         .sorted(Comparator.reverseOrder())
+                         .limit(numberOfDice)
+                         .mapToInt(n -> n)
+                         .sum();
+        }
+
         @Override
         public boolean isConstant() {
             return dicePool.isConstant();
@@ -67,6 +91,12 @@ public abstract class IntegerExpression extends Expression<Integer> {
 
         @Override
         public Stream<Event<Integer>> events(RuntimeContext ctx) {
+            return DiceTables.keepLowest(dicePool.getNumberOfDice(), dicePool.getDiceSides(), numberOfDice)
+                             .map(DenseDistribution::events)
+                             .orElseGet(this::enumerateEvents);
+        }
+
+        private Stream<Event<Integer>> enumerateEvents() {
             final List<Stream<Event<List<Integer>>>> singleDieStreams = Stream.generate(() -> Event.singleDieEvents(dicePool.getDiceSides())
                                                                                                    .map(event -> new Event<>(List.of(event.getValue()), event.getProbability())))
                                                                               .limit(dicePool.getNumberOfDice())
@@ -80,6 +110,14 @@ public abstract class IntegerExpression extends Expression<Integer> {
                     .map(entry -> new Event<>(entry.getKey(), entry.getValue()));
         }
 
+        @Override
+        public Integer sample(RuntimeContext ctx, Random random) {
+            return random.ints(dicePool.getNumberOfDice(), 1, dicePool.getDiceSides() + 1)
+                         .sorted()
+                         .limit(numberOfDice)
+                         .sum();
+        }
+
         @Override
         public boolean isConstant() {
             return dicePool.isConstant();
@@ -106,6 +144,12 @@ public abstract class IntegerExpression extends Expression<Integer> {
 
         @Override
         public Stream<Event<Integer>> events(RuntimeContext ctx) {
+            return DiceTables.dicePool(numberOfDice, diceSides)
+                             .map(DenseDistribution::events)
+                             .orElseGet(this::enumerateEvents);
+        }
+
+        private Stream<Event<Integer>> enumerateEvents() {
             final List<Stream<Event<Integer>>> singleDieStreams = Stream.generate(() -> Event.singleDieEvents(diceSides))
                                                                         .limit(numberOfDice)
                                                                         .collect(toList());
@@ -113,6 +157,11 @@ public abstract class IntegerExpression extends Expression<Integer> {
             return productOfIndependent(singleDieStreams, Integer::sum);
         }
 
+        @Override
+        public Integer sample(RuntimeContext ctx, Random random) {
+            return random.ints(numberOfDice, 1, diceSides + 1).sum();
+        }
+
         @Override
         public boolean isConstant() {
             return diceSides > 1;
@@ -123,4 +172,86 @@ public abstract class IntegerExpression extends Expression<Integer> {
             return format("%dd%d", numberOfDice, diceSides);
         }
     }
+
+    /**
+     * Repeats a step from an initial state until a condition on the state is true, as in
+     * {@code repeat hp <- 40 then hp - 2d6 until hp <= 0}. The state is an integer bound to an identifier in the step
+     * and condition, and the result is either the final state or the number of steps taken. Exact evaluation runs an
+     * {@link AbsorbingChain} over the reachable states, so each state is only stepped once however many rounds and
+     * paths reach it.
+     */
+    @Value
+    @EqualsAndHashCode(callSuper = false)
+    public static class RepeatExpression extends IntegerExpression {
+        static final int MAX_ROUNDS = 100_000;
+        static final int MAX_STATES = 100_000;
+
+        public enum Outcome {
+            FINAL_STATE("repeat"), ROUNDS("rounds");
+
+            private final String keyword;
+
+            Outcome(String keyword) {
+                this.keyword = keyword;
+            }
+        }
+
+        Outcome outcome;
+        String identifier;
+        Expression<Integer> initial;
+        Expression<Integer> step;
+        Expression<Boolean> condition;
+
+        @Override
+        public Stream<Event<Integer>> events(RuntimeContext ctx) {
+            final AbsorbingChain chain = new AbsorbingChain(state -> bind(ctx, state).evaluate(step),
+                                                            state -> bind(ctx, state).evaluate(condition)
+                                                                                     .filter(Event::getValue)
+                                                                                     .mapToDouble(Event::getProbability)
+                                                                                     .sum(),
+                                                            MAX_ROUNDS,
+                                                            MAX_STATES,
+                                                            ctx::checkpoint);
+            final Absorption absorption = chain.run(ctx.evaluate(initial));
+            if (!absorption.isComplete()) {
+                throw new EvaluationException(format("[%s] has not stopped after %d rounds over %d states in %s of cases",
+                                                     this, absorption.getRoundsRun(), absorption.getStates(), formatAsPercentage(absorption.getRemaining())));
+            }
+
+            return (outcome == Outcome.ROUNDS ? absorption.getRounds() : absorption.getFinalStates()).stream();
+        }
+
+        @Override
+        public List<Expression<?>> children() {
+            return List.of(initial, step, condition);
+        }
+
+        @Override
+        public Integer sample(RuntimeContext ctx, Random random) {
+            int state = initial.sample(ctx, random);
+            for (int round = 0; round < MAX_ROUNDS; round++) {
+                final RuntimeContext stateCtx = bind(ctx, state);
+                if (condition.sample(stateCtx, random)) {
+                    return outcome == Outcome.ROUNDS ? round : state;
+                }
+                state = step.sample(stateCtx, random);
+            }
+
+            throw new EvaluationException(format("[%s] has not stopped after %d rounds", this, MAX_ROUNDS));
+        }
+
+        private RuntimeContext bind(RuntimeContext ctx, int state) {
+            return ctx.with(identifier, new Constant<>(Types.INTEGER_TYPE, state));
+        }
+
+        @Override
+        public boolean isConstant() {
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return format("%s %s <- %s then %s until %s", outcome.keyword, identifier, initial, step, condition);
+        }
+    }
 }
@@ -1,20 +1,45 @@
 package ca.mbarkley.jsim.model;
 
 import ca.mbarkley.jsim.model.Expression.Constant;
+import ca.mbarkley.jsim.prob.Event;
+import ca.mbarkley.jsim.util.PersistentMap;
 import lombok.Value;
 
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.stream.Stream;
 
 @Value
-class RuntimeContext {
-    Map<String, Constant<?>> definitions;
+public class RuntimeContext {
+    PersistentMap<String, Constant<?>> definitions;
+    EvaluationMonitor monitor;
+    EvaluationPlan plan;
+
+    public RuntimeContext(Map<String, Constant<?>> definitions, EvaluationMonitor monitor, EvaluationPlan plan) {
+        this.definitions = PersistentMap.copyOf(definitions);
+        this.monitor = monitor;
+        this.plan = plan;
+    }
+
+    public static RuntimeContext create(EvaluationMonitor monitor) {
+        return create(monitor, EvaluationPlan.DEFAULT);
+    }
+
+    public static RuntimeContext create(EvaluationMonitor monitor, EvaluationPlan plan) {
+        return new RuntimeContext(PersistentMap.empty(), monitor, plan);
+    }
 
     public RuntimeContext with(String identifier, Constant<?> value) {
-        final Map<String, Constant<?>> defCopy = new HashMap<>(definitions);
-        defCopy.put(identifier, value);
+        return new RuntimeContext(definitions.plus(identifier, value), monitor, plan);
+    }
+
+    /**
+     * @see EvaluationMonitor#checkpoint()
+     */
+    public void checkpoint() {
+        monitor.checkpoint();
+    }
 
-        return new RuntimeContext(Collections.unmodifiableMap(defCopy));
+    public <T extends Comparable<T>> Stream<Event<T>> evaluate(Expression<T> expression) {
+        return monitor.monitor(expression, () -> plan.events(expression, this));
     }
 }
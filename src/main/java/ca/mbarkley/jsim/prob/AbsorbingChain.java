@@ -0,0 +1,122 @@
+package ca.mbarkley.jsim.prob;
+
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.Stream;
+
+/**
+ * A Markov chain over integer states, where each round a state is first absorbed with some probability, and otherwise
+ * moves to a random next state. The chain is run by multiplying a sparse probability vector over the states reached so
+ * far with the transition matrix, one round at a time, so only the rows of reachable states are ever computed, and
+ * each row is computed once.
+ */
+@Value
+public class AbsorbingChain {
+    /**
+     * Chains stop once the probability of not having been absorbed is below this fraction of the initial probability.
+     */
+    public static final double TOLERANCE = 1e-12;
+
+    /**
+     * The distribution of the next state, from a state that is not absorbed.
+     */
+    IntFunction<Stream<Event<Integer>>> transitions;
+    /**
+     * The probability that a state is absorbed.
+     */
+    IntToDoubleFunction absorption;
+    int maxRounds;
+    int maxStates;
+    /**
+     * Called before every round, and may throw to stop the chain.
+     */
+    Runnable checkpoint;
+
+    @Value
+    public static class Absorption {
+        /**
+         * The probability of being absorbed after each number of rounds, starting from zero.
+         */
+        List<Event<Integer>> rounds;
+        /**
+         * The probability of being absorbed in each state.
+         */
+        List<Event<Integer>> finalStates;
+        /**
+         * The probability of not having been absorbed when the chain stopped, which is negligible unless the chain
+         * reached the maximum number of rounds or states.
+         */
+        double remaining;
+        /**
+         * True if the chain stopped because the remaining probability was negligible.
+         */
+        boolean complete;
+        int roundsRun;
+        int states;
+    }
+
+    /**
+     * @param initial The distribution of the initial state, whose probabilities need not total 1.
+     */
+    public Absorption run(Stream<Event<Integer>> initial) {
+        final Map<Integer, Event<Integer>[]> rows = new HashMap<>();
+        final Map<Integer, Double> absorptions = new HashMap<>();
+        final Map<Integer, Double> finalStates = new HashMap<>();
+        final List<Event<Integer>> rounds = new ArrayList<>();
+
+        final Map<Integer, Double> initialStates = new HashMap<>();
+        initial.forEach(event -> initialStates.merge(event.getValue(), event.getProbability(), Double::sum));
+        final double threshold = initialStates.values().stream().mapToDouble(Double::doubleValue).sum() * TOLERANCE;
+        Map<Integer, Double> current = initialStates;
+        double remaining = 0.0;
+        int round = 0;
+        for (; !current.isEmpty(); round++) {
+            checkpoint.run();
+            final Map<Integer, Double> next = new HashMap<>();
+            double absorbed = 0.0;
+            remaining = 0.0;
+            for (var entry : current.entrySet()) {
+                final int state = entry.getKey();
+                final double probability = entry.getValue();
+                final double absorbedProbability = probability * absorptions.computeIfAbsent(state, absorption::applyAsDouble);
+                if (absorbedProbability > 0.0) {
+                    finalStates.merge(state, absorbedProbability, Double::sum);
+                    absorbed += absorbedProbability;
+                }
+
+                final double continuing = probability - absorbedProbability;
+                if (continuing > 0.0) {
+                    for (var transition : rows.computeIfAbsent(state, this::row)) {
+                        next.merge(transition.getValue(), continuing * transition.getProbability(), Double::sum);
+                    }
+                    remaining += continuing;
+                }
+            }
+            if (absorbed > 0.0) {
+                rounds.add(new Event<>(round, absorbed));
+            }
+
+            if (remaining <= threshold || round + 1 >= maxRounds || rows.size() > maxStates) {
+                round++;
+                break;
+            }
+            current = next;
+        }
+
+        final List<Event<Integer>> finalStateEvents = new ArrayList<>();
+        finalStates.forEach((state, probability) -> finalStateEvents.add(new Event<>(state, probability)));
+
+        return new Absorption(rounds, finalStateEvents, remaining, remaining <= threshold, round, absorptions.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Event<Integer>[] row(int state) {
+        return transitions.apply(state).toArray(Event[]::new);
+    }
+}
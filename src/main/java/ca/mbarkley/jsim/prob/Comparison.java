@@ -0,0 +1,22 @@
+package ca.mbarkley.jsim.prob;
+
+import lombok.Value;
+
+/**
+ * How an independent draw from one distribution compares with a draw from another.
+ */
+@Value
+public class Comparison {
+    double greater;
+    double equal;
+    double less;
+    /**
+     * True if the first distribution first-order stochastically dominates the second: for every value, it is at least
+     * as likely to exceed that value, and for some value it is strictly more likely.
+     */
+    boolean dominates;
+    /**
+     * True if the second distribution stochastically dominates the first.
+     */
+    boolean dominated;
+}
@@ -0,0 +1,40 @@
+package ca.mbarkley.jsim.prob;
+
+import lombok.Value;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Pairwise comparisons of a list of distributions, where the comparison in row {@code i} and column {@code j}
+ * compares distribution {@code i} with distribution {@code j}.
+ */
+@Value
+public class ComparisonMatrix {
+    List<List<Comparison>> rows;
+
+    /**
+     * Compares every pair of distributions, computing rows in parallel. Each comparison is a single merge of two
+     * sorted supports, so this is much cheaper than evaluating {@code A > B} for every pair.
+     */
+    public static <T extends Comparable<T>> ComparisonMatrix of(List<Distribution<T>> distributions) {
+        final List<List<Comparison>> rows = IntStream.range(0, distributions.size())
+                                                     .parallel()
+                                                     .mapToObj(i -> distributions.stream()
+                                                                                 .map(distributions.get(i)::compare)
+                                                                                 .collect(toList()))
+                                                     .collect(toList());
+
+        return new ComparisonMatrix(rows);
+    }
+
+    public Comparison get(int row, int column) {
+        return rows.get(row).get(column);
+    }
+
+    public int size() {
+        return rows.size();
+    }
+}
@@ -0,0 +1,203 @@
+package ca.mbarkley.jsim.prob;
+
+import lombok.Value;
+
+import java.util.stream.Stream;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.sqrt;
+
+/**
+ * The first four cumulants of an integer distribution, together with the spacing of the lattice its values lie on.
+ * Cumulants of independent sums are sums of cumulants, so they can be propagated through sums of dice without
+ * building any distributions.
+ */
+@Value
+public class Cumulants {
+    private static final double SQRT_TWO_PI = sqrt(2.0 * Math.PI);
+    /**
+     * Approximations cover this many standard deviations on either side of the mean.
+     */
+    private static final double APPROXIMATION_WIDTH = 10.0;
+
+    double mean;
+    double variance;
+    /**
+     * The third cumulant.
+     */
+    double k3;
+    /**
+     * The fourth cumulant.
+     */
+    double k4;
+    /**
+     * The greatest common divisor of the differences between possible values, or zero for constants.
+     */
+    int span;
+
+    public static Cumulants constant(int value) {
+        return new Cumulants(value, 0.0, 0.0, 0.0, 0);
+    }
+
+    /**
+     * @return The cumulants of one fair die with faces {@code 1} to {@code sides}.
+     */
+    public static Cumulants die(int sides) {
+        if (sides == 1) {
+            return constant(1);
+        }
+        final double squared = (double) sides * sides;
+        // A discrete uniform distribution is symmetric, and its excess kurtosis is -6(s^2 + 1) / 5(s^2 - 1)
+        return new Cumulants((sides + 1) / 2.0, (squared - 1.0) / 12.0, 0.0, -(squared * squared - 1.0) / 120.0, 1);
+    }
+
+    /**
+     * @return The cumulants of the sum of {@code numberOfDice} fair dice with {@code diceSides} sides each.
+     */
+    public static Cumulants dicePool(int numberOfDice, int diceSides) {
+        return die(diceSides).times(numberOfDice);
+    }
+
+    public static Cumulants of(Stream<Event<Integer>> events) {
+        final double[] moments = new double[5];
+        final int[] span = new int[]{0};
+        final Integer[] first = new Integer[1];
+        events.forEach(event -> {
+            final int value = event.getValue();
+            if (first[0] == null) {
+                first[0] = value;
+            } else {
+                span[0] = gcd(span[0], abs(value - first[0]));
+            }
+            double power = event.getProbability();
+            for (int i = 0; i < moments.length; i++) {
+                moments[i] += power;
+                power *= value;
+            }
+        });
+
+        final double m1 = moments[1], m2 = moments[2], m3 = moments[3], m4 = moments[4];
+        final double variance = m2 - m1 * m1;
+        final double k3 = m3 - 3 * m2 * m1 + 2 * m1 * m1 * m1;
+        final double centralFourth = m4 - 4 * m3 * m1 + 6 * m2 * m1 * m1 - 3 * m1 * m1 * m1 * m1;
+
+        return new Cumulants(m1, Math.max(0.0, variance), k3, centralFourth - 3 * variance * variance, span[0]);
+    }
+
+    public Cumulants plus(Cumulants other) {
+        return new Cumulants(mean + other.mean, variance + other.variance, k3 + other.k3, k4 + other.k4, gcd(span, other.span));
+    }
+
+    public Cumulants minus(Cumulants other) {
+        return plus(other.negate());
+    }
+
+    public Cumulants negate() {
+        return new Cumulants(-mean, variance, -k3, k4, span);
+    }
+
+    public Cumulants scale(int factor) {
+        final double f = factor;
+        return new Cumulants(mean * f, variance * f * f, k3 * f * f * f, k4 * f * f * f * f, span * abs(factor));
+    }
+
+    /**
+     * @return The cumulants of the sum of {@code number} independent copies of this distribution.
+     */
+    public Cumulants times(int number) {
+        return new Cumulants(mean * number, variance * number, k3 * number, k4 * number, number == 0 ? 0 : span);
+    }
+
+    public double getStandardDeviation() {
+        return sqrt(variance);
+    }
+
+    public double getSkewness() {
+        return variance > 0.0 ? k3 / Math.pow(variance, 1.5) : 0.0;
+    }
+
+    public double getExcessKurtosis() {
+        return variance > 0.0 ? k4 / (variance * variance) : 0.0;
+    }
+
+    /**
+     * Approximates the distribution with an Edgeworth expansion, which corrects a normal approximation for skewness
+     * and kurtosis. Its relative error shrinks with the number of independent terms as n^(-3/2), so it is very
+     * accurate for large pools.
+     *
+     * @param min The smallest possible value, which must lie on the lattice of this distribution.
+     * @param max The largest possible value.
+     */
+    public DenseDistribution edgeworth(int min, int max) {
+        if (span == 0 || variance == 0.0) {
+            return DenseDistribution.constant((int) Math.round(mean));
+        }
+
+        final double sd = getStandardDeviation();
+        final long lowestStep = Math.max(0, (long) Math.floor((mean - APPROXIMATION_WIDTH * sd - min) / span));
+        final long highestStep = Math.min((max - (long) min) / span, (long) Math.ceil((mean + APPROXIMATION_WIDTH * sd - min) / span));
+        final int low = (int) (min + lowestStep * span);
+        final int high = (int) (min + highestStep * span);
+
+        final double[] probabilities = new double[high - low + 1];
+        double total = 0.0;
+        for (int value = low; value <= high; value += span) {
+            // On a lattice, the probability of each value is the expanded density times the lattice spacing
+            final double p = Math.max(0.0, edgeworthDensity((value - mean) / sd) * span / sd);
+            probabilities[value - low] = p;
+            total += p;
+        }
+        for (int i = 0; i < probabilities.length; i++) {
+            probabilities[i] /= total;
+        }
+
+        return new DenseDistribution(low, probabilities);
+    }
+
+    /**
+     * @return A rough bound on the absolute error of any probability from {@link #edgeworth(int, int)}, taken as the
+     * size of the last correction terms of the expansion.
+     */
+    public double edgeworthError() {
+        if (span == 0 || variance == 0.0) {
+            return 0.0;
+        }
+
+        final double skewness = getSkewness();
+        final double kurtosis = getExcessKurtosis();
+        double largest = 0.0;
+        for (double z = -APPROXIMATION_WIDTH; z <= APPROXIMATION_WIDTH; z += 0.01) {
+            final double z2 = z * z;
+            final double he4 = z2 * z2 - 6 * z2 + 3;
+            final double he6 = z2 * z2 * z2 - 15 * z2 * z2 + 45 * z2 - 15;
+            largest = Math.max(largest, abs(phi(z) * (kurtosis / 24.0 * he4 + skewness * skewness / 72.0 * he6)));
+        }
+
+        return largest * span / getStandardDeviation();
+    }
+
+    private double edgeworthDensity(double z) {
+        final double skewness = getSkewness();
+        final double kurtosis = getExcessKurtosis();
+        final double z2 = z * z;
+        final double he3 = z2 * z - 3 * z;
+        final double he4 = z2 * z2 - 6 * z2 + 3;
+        final double he6 = z2 * z2 * z2 - 15 * z2 * z2 + 45 * z2 - 15;
+
+        return phi(z) * (1.0 + skewness / 6.0 * he3 + kurtosis / 24.0 * he4 + skewness * skewness / 72.0 * he6);
+    }
+
+    private static double phi(double z) {
+        return Math.exp(-z * z / 2.0) / SQRT_TWO_PI;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            final int t = a % b;
+            a = b;
+            b = t;
+        }
+
+        return abs(a);
+    }
+}
@@ -0,0 +1,213 @@
+package ca.mbarkley.jsim.prob;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * An integer distribution stored as an array of probabilities over a contiguous range of outcomes. Sums and
+ * differences of these distributions are direct convolutions, which avoid the hashing and boxing of
+ * {@link Event#productOfIndependent} when supports are dense.
+ */
+public class DenseDistribution {
+    private static final Runnable NO_CHECKPOINT = () -> {};
+    private static final int CHECKPOINT_MASK = 63;
+
+    private final int offset;
+    private final double[] probabilities;
+
+    DenseDistribution(int offset, double[] probabilities) {
+        this.offset = offset;
+        this.probabilities = probabilities;
+    }
+
+    /**
+     * Events need not total 1, as with conditioned expressions. If there are no events at all, the result is a
+     * distribution with no probability mass.
+     */
+    public static DenseDistribution of(Stream<Event<Integer>> events) {
+        final List<Event<Integer>> eventList = events.collect(toList());
+        if (eventList.isEmpty()) {
+            return new DenseDistribution(0, new double[]{0.0});
+        }
+        final int min = eventList.stream().mapToInt(Event::getValue).min().orElseThrow();
+        final int max = eventList.stream().mapToInt(Event::getValue).max().orElseThrow();
+        final double[] probabilities = new double[max - min + 1];
+        for (var event : eventList) {
+            probabilities[event.getValue() - min] += event.getProbability();
+        }
+
+        return new DenseDistribution(min, probabilities);
+    }
+
+    public static DenseDistribution constant(int value) {
+        return new DenseDistribution(value, new double[]{1.0});
+    }
+
+    /**
+     * @return The distribution of the sum of {@code numberOfDice} fair dice with {@code diceSides} sides each.
+     */
+    public static DenseDistribution dicePool(int numberOfDice, int diceSides) {
+        return dicePool(numberOfDice, diceSides, NO_CHECKPOINT);
+    }
+
+    /**
+     * @param checkpoint Called after adding each die, and may throw to stop the computation.
+     */
+    public static DenseDistribution dicePool(int numberOfDice, int diceSides, Runnable checkpoint) {
+        DenseDistribution result = constant(0);
+        for (int i = 0; i < numberOfDice; i++) {
+            checkpoint.run();
+            result = result.plusDie(diceSides);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return The distribution of the sum of the {@code keep} highest of {@code numberOfDice} fair dice with
+     * {@code diceSides} sides each.
+     */
+    public static DenseDistribution keepHighest(int numberOfDice, int diceSides, int keep) {
+        final int kept = Math.min(keep, numberOfDice);
+        final double[][] binomials = binomials(numberOfDice);
+        final double[] facePowers = new double[numberOfDice + 1];
+        facePowers[0] = 1.0;
+        for (int j = 1; j <= numberOfDice; j++) {
+            facePowers[j] = facePowers[j - 1] / diceSides;
+        }
+
+        // Assign dice to faces from highest to lowest, so that the first dice assigned are the kept ones.
+        // probabilities[c][sum] is the probability that exactly c dice show the faces assigned so far, and that the
+        // kept ones among them sum to sum.
+        double[][] probabilities = new double[numberOfDice + 1][kept * diceSides + 1];
+        probabilities[0][0] = 1.0;
+        for (int face = diceSides; face >= 1; face--) {
+            final double[][] next = new double[numberOfDice + 1][kept * diceSides + 1];
+            for (int assigned = 0; assigned <= numberOfDice; assigned++) {
+                for (int sum = 0; sum < probabilities[assigned].length; sum++) {
+                    final double p = probabilities[assigned][sum];
+                    if (p != 0.0) {
+                        for (int j = 0; assigned + j <= numberOfDice; j++) {
+                            final int keptWithFace = Math.max(0, Math.min(j, kept - assigned));
+                            next[assigned + j][sum + keptWithFace * face] += p * binomials[numberOfDice - assigned][j] * facePowers[j];
+                        }
+                    }
+                }
+            }
+            probabilities = next;
+        }
+
+        return new DenseDistribution(kept, Arrays.copyOfRange(probabilities[numberOfDice], kept, kept * diceSides + 1));
+    }
+
+    /**
+     * @return The distribution of the sum of the {@code keep} lowest of {@code numberOfDice} fair dice with
+     * {@code diceSides} sides each.
+     */
+    public static DenseDistribution keepLowest(int numberOfDice, int diceSides, int keep) {
+        // Reflecting every face v to (sides + 1 - v) swaps the lowest and highest dice
+        final int kept = Math.min(keep, numberOfDice);
+        return constant(kept * (diceSides + 1)).minus(keepHighest(numberOfDice, diceSides, keep));
+    }
+
+    private static double[][] binomials(int n) {
+        final double[][] binomials = new double[n + 1][];
+        for (int i = 0; i <= n; i++) {
+            binomials[i] = new double[i + 1];
+            binomials[i][0] = binomials[i][i] = 1.0;
+            for (int j = 1; j < i; j++) {
+                binomials[i][j] = binomials[i - 1][j - 1] + binomials[i - 1][j];
+            }
+        }
+
+        return binomials;
+    }
+
+    /**
+     * Adds one fair die to this distribution, using a sliding window sum so that the cost is linear in the support.
+     */
+    public DenseDistribution plusDie(int diceSides) {
+        final double[] next = new double[probabilities.length + diceSides - 1];
+        final double faceProbability = 1.0 / diceSides;
+        double window = 0.0;
+        for (int i = 0; i < next.length; i++) {
+            if (i < probabilities.length) {
+                window += probabilities[i];
+            }
+            if (i - diceSides >= 0) {
+                window -= probabilities[i - diceSides];
+            }
+            next[i] = window * faceProbability;
+        }
+
+        return new DenseDistribution(offset + 1, next);
+    }
+
+    public DenseDistribution plus(DenseDistribution other) {
+        return plus(other, NO_CHECKPOINT);
+    }
+
+    /**
+     * @param checkpoint Called periodically, and may throw to stop the computation.
+     */
+    public DenseDistribution plus(DenseDistribution other, Runnable checkpoint) {
+        final double[] result = new double[probabilities.length + other.probabilities.length - 1];
+        for (int i = 0; i < probabilities.length; i++) {
+            if ((i & CHECKPOINT_MASK) == 0) {
+                checkpoint.run();
+            }
+            final double p = probabilities[i];
+            if (p != 0.0) {
+                for (int j = 0; j < other.probabilities.length; j++) {
+                    result[i + j] += p * other.probabilities[j];
+                }
+            }
+        }
+
+        return new DenseDistribution(offset + other.offset, result);
+    }
+
+    public DenseDistribution minus(DenseDistribution other) {
+        return minus(other, NO_CHECKPOINT);
+    }
+
+    public DenseDistribution minus(DenseDistribution other, Runnable checkpoint) {
+        return plus(other.negate(), checkpoint);
+    }
+
+    public DenseDistribution negate() {
+        final double[] reversed = new double[probabilities.length];
+        for (int i = 0; i < probabilities.length; i++) {
+            reversed[probabilities.length - 1 - i] = probabilities[i];
+        }
+
+        return new DenseDistribution(-(offset + probabilities.length - 1), reversed);
+    }
+
+    public int getMin() {
+        return offset;
+    }
+
+    public int getMax() {
+        return offset + probabilities.length - 1;
+    }
+
+    public double probabilityOf(int value) {
+        final int index = value - offset;
+        return index >= 0 && index < probabilities.length ? probabilities[index] : 0.0;
+    }
+
+    public double[] toArray() {
+        return Arrays.copyOf(probabilities, probabilities.length);
+    }
+
+    public Stream<Event<Integer>> events() {
+        return IntStream.range(0, probabilities.length)
+                        .filter(i -> probabilities[i] > 0.0)
+                        .mapToObj(i -> new Event<>(offset + i, probabilities[i]));
+    }
+}
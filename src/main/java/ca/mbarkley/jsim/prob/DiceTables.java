@@ -0,0 +1,173 @@
+package ca.mbarkley.jsim.prob;
+
+import lombok.Value;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Precomputed distributions of common dice pools, generated during the build by {@link #main(String[])} and shipped
+ * as a class path resource. The resource is read the first time a table is needed, and individual distributions are
+ * only decoded when they are looked up. Pool distributions are symmetric, so only their lower halves are stored.
+ * If the resource is missing (for example when running from an IDE without a build), every lookup is empty.
+ */
+public class DiceTables {
+    static final String RESOURCE = "dice-tables.bin";
+
+    private static final int MAGIC = 0x4A534454;
+    private static final int VERSION = 1;
+    private static final int[] SIDES = {4, 6, 8, 10, 12, 20, 100};
+    private static final int MAX_POOL_DICE = 50;
+    private static final int MAX_KEEP_DICE = 6;
+
+    private static final byte POOL = 0;
+    private static final byte KEEP_HIGHEST = 1;
+    private static final byte KEEP_LOWEST = 2;
+
+    private DiceTables() {}
+
+    @Value
+    private static class Key {
+        byte kind;
+        int numberOfDice;
+        int diceSides;
+        int keep;
+    }
+
+    @Value
+    private static class Entry {
+        int min;
+        int width;
+        int storedLength;
+        int offset;
+    }
+
+    public static Optional<DenseDistribution> dicePool(int numberOfDice, int diceSides) {
+        return lookup(new Key(POOL, numberOfDice, diceSides, numberOfDice));
+    }
+
+    public static Optional<DenseDistribution> keepHighest(int numberOfDice, int diceSides, int keep) {
+        return lookup(new Key(KEEP_HIGHEST, numberOfDice, diceSides, keep));
+    }
+
+    public static Optional<DenseDistribution> keepLowest(int numberOfDice, int diceSides, int keep) {
+        return lookup(new Key(KEEP_LOWEST, numberOfDice, diceSides, keep));
+    }
+
+    private static Optional<DenseDistribution> lookup(Key key) {
+        final Entry entry = Holder.INDEX.get(key);
+        if (entry == null) {
+            return Optional.empty();
+        }
+
+        final ByteBuffer data = Holder.DATA.duplicate();
+        data.position(entry.getOffset());
+        final double[] probabilities = new double[entry.getWidth()];
+        for (int i = 0; i < entry.getStoredLength(); i++) {
+            probabilities[i] = data.getDouble();
+        }
+        for (int i = entry.getStoredLength(); i < entry.getWidth(); i++) {
+            probabilities[i] = probabilities[entry.getWidth() - 1 - i];
+        }
+
+        return Optional.of(new DenseDistribution(entry.getMin(), probabilities));
+    }
+
+    /**
+     * Loads the resource on first use, by the class loader's guarantee that nested classes are initialized lazily.
+     */
+    private static class Holder {
+        private static final Map<Key, Entry> INDEX = new HashMap<>();
+        private static final ByteBuffer DATA;
+
+        static {
+            ByteBuffer data = ByteBuffer.allocate(0);
+            try (InputStream in = DiceTables.class.getResourceAsStream(RESOURCE)) {
+                if (in != null) {
+                    data = ByteBuffer.wrap(in.readAllBytes()).asReadOnlyBuffer();
+                    readIndex(data);
+                }
+            } catch (IOException | RuntimeException e) {
+                INDEX.clear();
+            }
+            DATA = data;
+        }
+
+        private static void readIndex(ByteBuffer data) {
+            if (data.getInt() != MAGIC || data.getInt() != VERSION) {
+                return;
+            }
+
+            final int count = data.getInt();
+            for (int i = 0; i < count; i++) {
+                final Key key = new Key(data.get(), data.getInt(), data.getInt(), data.getInt());
+                INDEX.put(key, new Entry(data.getInt(), data.getInt(), data.getInt(), data.getInt()));
+            }
+        }
+    }
+
+    /**
+     * Writes the tables to the file given as the only argument.
+     */
+    public static void main(String[] args) throws IOException {
+        final Path output = Paths.get(args[0]);
+        Files.createDirectories(output.getParent());
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(output)))) {
+            write(out);
+        }
+    }
+
+    static void write(DataOutputStream out) throws IOException {
+        final Map<Key, DenseDistribution> distributions = new LinkedHashMap<>();
+        for (var sides : SIDES) {
+            for (int n = 1; n <= MAX_POOL_DICE; n++) {
+                distributions.put(new Key(POOL, n, sides, n), DenseDistribution.dicePool(n, sides));
+            }
+            for (int n = 2; n <= MAX_KEEP_DICE; n++) {
+                for (int keep = 1; keep < n; keep++) {
+                    distributions.put(new Key(KEEP_HIGHEST, n, sides, keep), DenseDistribution.keepHighest(n, sides, keep));
+                    distributions.put(new Key(KEEP_LOWEST, n, sides, keep), DenseDistribution.keepLowest(n, sides, keep));
+                }
+            }
+        }
+
+        final int headerBytes = 3 * Integer.BYTES;
+        final int indexEntryBytes = 1 + 7 * Integer.BYTES;
+        int offset = headerBytes + distributions.size() * indexEntryBytes;
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(distributions.size());
+        for (var e : distributions.entrySet()) {
+            final Key key = e.getKey();
+            final DenseDistribution distribution = e.getValue();
+            final int width = distribution.getMax() - distribution.getMin() + 1;
+            final int storedLength = storedLength(key, width);
+            out.writeByte(key.getKind());
+            out.writeInt(key.getNumberOfDice());
+            out.writeInt(key.getDiceSides());
+            out.writeInt(key.getKeep());
+            out.writeInt(distribution.getMin());
+            out.writeInt(width);
+            out.writeInt(storedLength);
+            out.writeInt(offset);
+            offset += storedLength * Double.BYTES;
+        }
+        for (var e : distributions.entrySet()) {
+            final double[] probabilities = e.getValue().toArray();
+            for (int i = 0; i < storedLength(e.getKey(), probabilities.length); i++) {
+                out.writeDouble(probabilities[i]);
+            }
+        }
+    }
+
+    private static int storedLength(Key key, int width) {
+        return key.getKind() == POOL ? (width + 1) / 2 : width;
+    }
+}
@@ -0,0 +1,224 @@
+package ca.mbarkley.jsim.prob;
+
+import java.util.*;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * An immutable probability distribution over a finite set of ordered values. Unlike the maps returned by
+ * {@link ca.mbarkley.jsim.model.Expression#calculateResults()}, instances are safe to share between threads and
+ * support lookups by value in logarithmic time. Cumulative probabilities are indexed as prefix sums, so that tail,
+ * range and quantile queries also take logarithmic time.
+ */
+public final class Distribution<T extends Comparable<T>> {
+    private static final double DOMINANCE_TOLERANCE = 1e-12;
+
+    private final List<T> values;
+    private final double[] probabilities;
+    /**
+     * The probability of all values before each index, with the total probability at the end.
+     */
+    private final double[] cumulative;
+
+    private Distribution(List<T> values, double[] probabilities) {
+        this.values = values;
+        this.probabilities = probabilities;
+        this.cumulative = new double[probabilities.length + 1];
+        for (int i = 0; i < probabilities.length; i++) {
+            cumulative[i + 1] = cumulative[i] + probabilities[i];
+        }
+    }
+
+    public static <T extends Comparable<T>> Distribution<T> of(Map<T, Event<T>> results) {
+        return of(results.values().stream());
+    }
+
+    public static <T extends Comparable<T>> Distribution<T> of(Stream<Event<T>> events) {
+        final TreeMap<T, Double> sorted = new TreeMap<>();
+        events.forEach(event -> sorted.merge(event.getValue(), event.getProbability(), Double::sum));
+
+        final List<T> values = new ArrayList<>(sorted.size());
+        final double[] probabilities = new double[sorted.size()];
+        int i = 0;
+        for (var entry : sorted.entrySet()) {
+            values.add(entry.getKey());
+            probabilities[i++] = entry.getValue();
+        }
+
+        return new Distribution<>(Collections.unmodifiableList(values), probabilities);
+    }
+
+    public double probabilityOf(T value) {
+        final int index = Collections.binarySearch(values, value);
+        return index >= 0 ? probabilities[index] : 0.0;
+    }
+
+    /**
+     * @return The probability of a value less than or equal to the given value.
+     */
+    public double probabilityAtMost(T value) {
+        return cumulative[upperIndex(value)];
+    }
+
+    /**
+     * @return The probability of a value strictly less than the given value.
+     */
+    public double probabilityLessThan(T value) {
+        return cumulative[lowerIndex(value)];
+    }
+
+    /**
+     * @return The probability of a value greater than or equal to the given value.
+     */
+    public double probabilityAtLeast(T value) {
+        return cumulative[values.size()] - cumulative[lowerIndex(value)];
+    }
+
+    /**
+     * @return The probability of a value strictly greater than the given value.
+     */
+    public double probabilityGreaterThan(T value) {
+        return cumulative[values.size()] - cumulative[upperIndex(value)];
+    }
+
+    /**
+     * @return The probability of a value between the given values, inclusive.
+     */
+    public double probabilityBetween(T low, T high) {
+        return Math.max(0.0, cumulative[upperIndex(high)] - cumulative[lowerIndex(low)]);
+    }
+
+    /**
+     * @return The smallest value whose cumulative probability is at least the given probability.
+     */
+    public T quantile(double probability) {
+        if (probability < 0.0 || probability > 1.0) {
+            throw new IllegalArgumentException(String.format("Quantile probability [%s] must be between 0 and 1", probability));
+        }
+
+        // Find the first prefix sum past the target, allowing for rounding in the total
+        final double target = Math.min(probability, cumulative[values.size()]) - 1e-12;
+        int low = 1, high = values.size();
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (cumulative[mid] >= target) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+
+        return values.get(low - 1);
+    }
+
+    public T median() {
+        return quantile(0.5);
+    }
+
+    /**
+     * Compares an independent draw from this distribution with a draw from another, with a single merge of their
+     * sorted values.
+     */
+    public Comparison compare(Distribution<T> other) {
+        double greater = 0.0, equal = 0.0;
+        // The largest and smallest difference between the cumulative probabilities of this and the other distribution
+        double highestDifference = 0.0, lowestDifference = 0.0;
+        int i = 0, j = 0;
+        while (i < values.size() || j < other.values.size()) {
+            final int order = i == values.size() ? 1 : j == other.values.size() ? -1 : values.get(i).compareTo(other.values.get(j));
+            if (order <= 0) {
+                greater += probabilities[i] * other.cumulative[j];
+                if (order == 0) {
+                    equal += probabilities[i] * other.probabilities[j];
+                }
+                i++;
+            }
+            if (order >= 0) {
+                j++;
+            }
+            final double difference = cumulative[i] - other.cumulative[j];
+            highestDifference = Math.max(highestDifference, difference);
+            lowestDifference = Math.min(lowestDifference, difference);
+        }
+
+        final double less = Math.max(0.0, cumulative[values.size()] * other.cumulative[other.values.size()] - greater - equal);
+        // A distribution dominates if its cumulative probability is never higher, allowing for rounding in prefix sums
+        final boolean dominates = highestDifference <= DOMINANCE_TOLERANCE && lowestDifference < -DOMINANCE_TOLERANCE;
+        final boolean dominated = lowestDifference >= -DOMINANCE_TOLERANCE && highestDifference > DOMINANCE_TOLERANCE;
+
+        return new Comparison(greater, equal, less, dominates, dominated);
+    }
+
+    /**
+     * @return The index of the first value not less than the given value.
+     */
+    private int lowerIndex(T value) {
+        final int index = Collections.binarySearch(values, value);
+        return index >= 0 ? index : -(index + 1);
+    }
+
+    /**
+     * @return The index of the first value greater than the given value.
+     */
+    private int upperIndex(T value) {
+        final int index = Collections.binarySearch(values, value);
+        return index >= 0 ? index + 1 : -(index + 1);
+    }
+
+    /**
+     * @return The possible values in ascending order.
+     */
+    public List<T> getValues() {
+        return values;
+    }
+
+    public T getMin() {
+        return values.get(0);
+    }
+
+    public T getMax() {
+        return values.get(values.size() - 1);
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * @return Events for every value in ascending order.
+     */
+    public Stream<Event<T>> events() {
+        return IntStream.range(0, values.size())
+                        .mapToObj(i -> new Event<>(values.get(i), probabilities[i]));
+    }
+
+    /**
+     * @return A map from each value to its probability, iterated in ascending order of value.
+     */
+    public Map<T, Double> toMap() {
+        final Map<T, Double> map = new LinkedHashMap<>();
+        for (int i = 0; i < values.size(); i++) {
+            map.put(values.get(i), probabilities[i]);
+        }
+
+        return Collections.unmodifiableMap(map);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final Distribution<?> that = (Distribution<?>) o;
+        return values.equals(that.values) && Arrays.equals(probabilities, that.probabilities);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * values.hashCode() + Arrays.hashCode(probabilities);
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+}
@@ -2,8 +2,11 @@ package ca.mbarkley.jsim.prob;
 
 import lombok.Value;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
 import java.util.function.BiFunction;
 import java.util.function.BinaryOperator;
 import java.util.function.Function;
@@ -16,9 +19,27 @@ import static java.util.stream.Collectors.reducing;
 
 @Value
 public class Event<T> {
+    private static final double NORMALIZATION_TOLERANCE = 1e-9;
+
     T value;
     double probability;
 
+    /**
+     * Rescales events whose total probability is not 1, such as those of an expression conditioned with
+     * {@code given}, so that it is. Events that already total 1, up to rounding, are returned unchanged.
+     */
+    public static <T> Map<T, Event<T>> normalize(Map<T, Event<T>> events) {
+        final double total = events.values().stream().mapToDouble(Event::getProbability).sum();
+        if (Math.abs(total - 1.0) <= NORMALIZATION_TOLERANCE) {
+            return events;
+        }
+
+        final Map<T, Event<T>> normalized = new HashMap<>();
+        events.forEach((value, event) -> normalized.put(value, new Event<>(value, event.getProbability() / total)));
+
+        return normalized;
+    }
+
     public static <T> Stream<Event<T>> productOfIndependent(List<Stream<Event<T>>> streams, BinaryOperator<T> combiner) {
         final Optional<Stream<Event<T>>> product = streams.stream()
                                                           .reduce((lefts, rights) -> productOfIndependent(lefts,
@@ -38,6 +59,22 @@ public class Event<T> {
                 .map(e -> new Event<>(e.getKey(), e.getValue()));
     }
 
+    /**
+     * Draws a value from a list of events whose probabilities sum to one.
+     */
+    public static <T> T sample(List<Event<T>> events, Random random) {
+        final double target = random.nextDouble();
+        double cumulative = 0.0;
+        for (var event : events) {
+            cumulative += event.getProbability();
+            if (target < cumulative) {
+                return event.getValue();
+            }
+        }
+
+        return events.get(events.size() - 1).getValue();
+    }
+
     public static Stream<Event<Integer>> singleDieEvents(int diceSides) {
         return unfold(new Event<>(1, 1.0 / ((double) diceSides)), e -> {
             if (e.getValue() < diceSides) {
@@ -0,0 +1,241 @@
+package ca.mbarkley.jsim.util;
+
+import java.util.*;
+
+/**
+ * An immutable hash array mapped trie. {@link #plus(Object, Object)} returns a new map that shares all but
+ * O(log<sub>32</sub> n) nodes with this one, so building a map of n entries one entry at a time takes O(n log n) time
+ * instead of the O(n<sup>2</sup>) of copying a {@link HashMap} for every entry. Null keys and values are not allowed.
+ */
+public final class PersistentMap<K, V> extends AbstractMap<K, V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(new BitmapNode<>(0, new Object[0]), 0);
+
+    private final BitmapNode<K, V> root;
+    private final int size;
+
+    private PersistentMap(BitmapNode<K, V> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+        if (map instanceof PersistentMap) {
+            return (PersistentMap<K, V>) map;
+        }
+
+        PersistentMap<K, V> result = empty();
+        for (var entry : map.entrySet()) {
+            result = result.plus(entry.getKey(), entry.getValue());
+        }
+
+        return result;
+    }
+
+    /**
+     * @return A map with the same entries as this one, except that the given key maps to the given value.
+     */
+    public PersistentMap<K, V> plus(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        final boolean[] added = new boolean[1];
+        final BitmapNode<K, V> newRoot = root.plus(0, hash(key), key, value, added);
+
+        return newRoot == root ? this : new PersistentMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    @Override
+    public V get(Object key) {
+        return key == null ? null : root.get(0, hash(key), key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                final List<Entry<K, V>> entries = new ArrayList<>(size);
+                root.collect(entries);
+
+                return Collections.unmodifiableList(entries).iterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private static int hash(Object key) {
+        final int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private interface Node<K, V> {
+        V get(int shift, int hash, Object key);
+
+        Node<K, V> plus(int shift, int hash, K key, V value, boolean[] added);
+
+        void collect(List<Entry<K, V>> entries);
+    }
+
+    /**
+     * A node with up to 32 children, stored compactly with a bitmap of which of the 32 possible slots are present.
+     * Each child is either a {@link SimpleImmutableEntry} or a sub-node.
+     */
+    private static final class BitmapNode<K, V> implements Node<K, V> {
+        private final int bitmap;
+        private final Object[] children;
+
+        BitmapNode(int bitmap, Object[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V get(int shift, int hash, Object key) {
+            final int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+
+            final Object child = children[Integer.bitCount(bitmap & (bit - 1))];
+            if (child instanceof Node) {
+                return ((Node<K, V>) child).get(shift + BITS, hash, key);
+            } else {
+                final Entry<K, V> entry = (Entry<K, V>) child;
+                return entry.getKey().equals(key) ? entry.getValue() : null;
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public BitmapNode<K, V> plus(int shift, int hash, K key, V value, boolean[] added) {
+            final int bit = 1 << ((hash >>> shift) & MASK);
+            final int index = Integer.bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) == 0) {
+                final Object[] newChildren = new Object[children.length + 1];
+                System.arraycopy(children, 0, newChildren, 0, index);
+                newChildren[index] = new SimpleImmutableEntry<>(key, value);
+                System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+                added[0] = true;
+
+                return new BitmapNode<>(bitmap | bit, newChildren);
+            }
+
+            final Object child = children[index];
+            final Object newChild;
+            if (child instanceof Node) {
+                final Node<K, V> node = (Node<K, V>) child;
+                newChild = node.plus(shift + BITS, hash, key, value, added);
+                if (newChild == node) {
+                    return this;
+                }
+            } else {
+                final Entry<K, V> entry = (Entry<K, V>) child;
+                if (entry.getKey().equals(key)) {
+                    if (entry.getValue() == value) {
+                        return this;
+                    }
+                    newChild = new SimpleImmutableEntry<>(key, value);
+                } else {
+                    newChild = merge(shift + BITS, entry, hash, key, value);
+                    added[0] = true;
+                }
+            }
+
+            final Object[] newChildren = children.clone();
+            newChildren[index] = newChild;
+
+            return new BitmapNode<>(bitmap, newChildren);
+        }
+
+        private static <K, V> Node<K, V> merge(int shift, Entry<K, V> existing, int hash, K key, V value) {
+            final int existingHash = hash(existing.getKey());
+            if (existingHash == hash || shift >= Integer.SIZE) {
+                return new CollisionNode<K, V>(List.of(existing)).plus(shift, hash, key, value, new boolean[1]);
+            }
+
+            final BitmapNode<K, V> node = new BitmapNode<>(1 << ((existingHash >>> shift) & MASK), new Object[]{existing});
+            return node.plus(shift, hash, key, value, new boolean[1]);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void collect(List<Entry<K, V>> entries) {
+            for (var child : children) {
+                if (child instanceof Node) {
+                    ((Node<K, V>) child).collect(entries);
+                } else {
+                    entries.add((Entry<K, V>) child);
+                }
+            }
+        }
+    }
+
+    /**
+     * A node for keys whose hashes are completely equal.
+     */
+    private static final class CollisionNode<K, V> implements Node<K, V> {
+        private final List<Entry<K, V>> entries;
+
+        CollisionNode(List<Entry<K, V>> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public V get(int shift, int hash, Object key) {
+            for (var entry : entries) {
+                if (entry.getKey().equals(key)) {
+                    return entry.getValue();
+                }
+            }
+
+            return null;
+        }
+
+        @Override
+        public Node<K, V> plus(int shift, int hash, K key, V value, boolean[] added) {
+            final List<Entry<K, V>> newEntries = new ArrayList<>(entries.size() + 1);
+            boolean replaced = false;
+            for (var entry : entries) {
+                if (entry.getKey().equals(key)) {
+                    newEntries.add(new SimpleImmutableEntry<>(key, value));
+                    replaced = true;
+                } else {
+                    newEntries.add(entry);
+                }
+            }
+            if (!replaced) {
+                newEntries.add(new SimpleImmutableEntry<>(key, value));
+                added[0] = true;
+            }
+
+            return new CollisionNode<>(newEntries);
+        }
+
+        @Override
+        public void collect(List<Entry<K, V>> entries) {
+            entries.addAll(this.entries);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package ca.mbarkley.jsim;
+
+import ca.mbarkley.jsim.api.CompiledExpression;
+import ca.mbarkley.jsim.api.CompiledScript;
+import ca.mbarkley.jsim.api.JSim;
+import ca.mbarkley.jsim.eval.EvaluationException;
+import ca.mbarkley.jsim.eval.EvaluationException.InvalidSyntaxException;
+import ca.mbarkley.jsim.eval.EvaluationException.UndefinedIdentifierException;
+import ca.mbarkley.jsim.prob.Distribution;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class ApiTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void compilesScriptIntoReusableExpressions() {
+        final CompiledScript script = JSim.create().compile("define x = d4; x + 1; x > 2");
+
+        assertThat(script.getExpressions()).hasSize(2);
+        final CompiledExpression<?> sum = script.getExpressions().get(0);
+        assertThat((List<Object>) sum.distribution().getValues()).containsExactly(2, 3, 4, 5);
+        assertThat(sum.probabilityOf(3)).isCloseTo(0.25, within(1e-9));
+        assertThat(sum.distribution()).isSameAs(sum.distribution());
+        assertThat(script.getExpressions().get(1).probabilityOf(true)).isCloseTo(0.5, within(1e-9));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void distributionsAnswerCumulativeQueries() {
+        final Distribution<Integer> distribution = (Distribution<Integer>) JSim.create().compileExpression("2d6").distribution();
+
+        assertThat(distribution.probabilityAtLeast(10)).isCloseTo(6.0 / 36.0, within(1e-9));
+        assertThat(distribution.probabilityGreaterThan(10)).isCloseTo(3.0 / 36.0, within(1e-9));
+        assertThat(distribution.probabilityAtMost(3)).isCloseTo(3.0 / 36.0, within(1e-9));
+        assertThat(distribution.probabilityLessThan(3)).isCloseTo(1.0 / 36.0, within(1e-9));
+        assertThat(distribution.probabilityBetween(6, 8)).isCloseTo(16.0 / 36.0, within(1e-9));
+        assertThat(distribution.probabilityBetween(20, 30)).isZero();
+        assertThat(distribution.probabilityAtLeast(0)).isCloseTo(1.0, within(1e-9));
+        assertThat(distribution.median()).isEqualTo(7);
+        assertThat(distribution.quantile(0.0)).isEqualTo(2);
+        assertThat(distribution.quantile(1.0 / 36.0)).isEqualTo(2);
+        assertThat(distribution.quantile(0.95)).isEqualTo(11);
+        assertThat(distribution.quantile(1.0)).isEqualTo(12);
+    }
+
+    @Test
+    public void definitionsAreImmutable() {
+        final JSim base = JSim.create();
+        final JSim withDefinition = base.define("define attack = d20 + 5");
+
+        assertThat(withDefinition.compileExpression("attack >= 15").probabilityOf(true)).isCloseTo(0.55, within(1e-9));
+        assertThatThrownBy(() -> base.compile("attack >= 15")).isInstanceOf(UndefinedIdentifierException.class);
+    }
+
+    @Test
+    public void invalidSyntaxIsReportedAsEvaluationException() {
+        assertThatThrownBy(() -> JSim.create().compile("2d6 +")).isInstanceOf(InvalidSyntaxException.class)
+                                                                  .hasMessageStartingWith("Invalid symbol");
+    }
+
+    @Test
+    public void misusedScriptsAreReportedAsEvaluationException() {
+        assertThatThrownBy(() -> JSim.create().compileExpression("define x = d6")).isInstanceOf(EvaluationException.class)
+                                                                                 .hasMessageStartingWith("Script has no expressions");
+        assertThatThrownBy(() -> JSim.create().define("define x = d6; x + 1")).isInstanceOf(EvaluationException.class)
+                                                                              .hasMessageStartingWith("Only definitions");
+        assertThatThrownBy(() -> JSim.create().compile("for k in 1..2: d6 + k")).isInstanceOf(EvaluationException.class)
+                                                                               .hasMessageStartingWith("Only expressions");
+    }
+
+    @Test
+    public void handlesCanBeSharedBetweenThreads() throws Exception {
+        final CompiledExpression<?> expression = JSim.create().compileExpression("4d6H3");
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Distribution<?>>> futures = executor.invokeAll(List.of(expression::distribution,
+                                                                                     expression::distribution,
+                                                                                     expression::distribution,
+                                                                                     expression::distribution));
+            for (var future : futures) {
+                assertThat(future.get()).isEqualTo(futures.get(0).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ca.mbarkley.jsim;
+
+import ca.mbarkley.jsim.eval.BestFirstEnumerator;
+import ca.mbarkley.jsim.eval.BestFirstEnumerator.TopOutcomes;
+import ca.mbarkley.jsim.eval.EvaluationBudget;
+import ca.mbarkley.jsim.eval.Parser;
+import ca.mbarkley.jsim.eval.Planner;
+import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.prob.Event;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Comparator.reverseOrder;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+public class BestFirstEnumeratorTest {
+    private final Parser parser = new Parser();
+    private final BestFirstEnumerator enumerator = new BestFirstEnumerator(EvaluationBudget.UNLIMITED, Planner.EXACT);
+
+    @Test
+    public void topOutcomesMatchFullDistribution() {
+        for (var script : List.of("d20 * d20 * d12", "(d6 + 2) * d8 - d4", "define die = ['a, 'b, 'c]; die + die + die + 2'a", "3d6H2 * 2d4 > 10")) {
+            final Expression<?> expression = parser.parse(script).getExpressions().get(0);
+            final Map<?, ? extends Event<?>> exact = expression.calculateResults();
+            final TopOutcomes<?> top = enumerator.enumerate(expression, 5);
+
+            final List<Double> expected = exact.values()
+                                               .stream()
+                                               .map(Event::getProbability)
+                                               .sorted(reverseOrder())
+                                               .limit(5)
+                                               .collect(toList());
+            assertThat(top.getEvents()).as(script).hasSize(expected.size());
+            for (int i = 0; i < expected.size(); i++) {
+                final Event<?> event = top.getEvents().get(i);
+                assertThat(event.getProbability()).as(script).isLessThanOrEqualTo(exact.get(event.getValue()).getProbability() + 1e-12)
+                                                  .isGreaterThanOrEqualTo(exact.get(event.getValue()).getProbability() - top.getUnexplored() - 1e-12)
+                                                  .isCloseTo(expected.get(i), offset(top.getUnexplored() + 1e-12));
+            }
+            final double listed = top.getEvents().stream().mapToDouble(Event::getProbability).sum();
+            assertThat(listed + top.getRemainder()).as(script).isCloseTo(1.0, offset(1e-9));
+        }
+    }
+
+    @Test
+    public void enumerationIsBounded() {
+        final Expression<?> expression = parser.parse("d100 * d100 * d100 * d100").getExpressions().get(0);
+        final TopOutcomes<?> top = new BestFirstEnumerator(EvaluationBudget.UNLIMITED, Planner.EXACT, 10_000).enumerate(expression, 3);
+
+        assertThat(top.getEvents()).hasSize(3);
+        assertThat(top.getUnexplored()).isGreaterThan(0.0);
+        assertThat(top.getRemainder()).isGreaterThan(top.getUnexplored());
+    }
+}
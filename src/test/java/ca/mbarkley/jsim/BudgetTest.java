@@ -0,0 +1,114 @@
+package ca.mbarkley.jsim;
+
+import ca.mbarkley.jsim.eval.EvaluationBudget;
+import ca.mbarkley.jsim.eval.EvaluationBudget.Overrun;
+import ca.mbarkley.jsim.eval.EvaluationException.BudgetExceededException;
+import ca.mbarkley.jsim.eval.Parser;
+import ca.mbarkley.jsim.eval.SupportEstimate;
+import ca.mbarkley.jsim.eval.SupportEstimator;
+import ca.mbarkley.jsim.model.EvaluationMonitor;
+import ca.mbarkley.jsim.model.Expression;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.data.Offset.offset;
+
+public class BudgetTest {
+    Parser parser = new Parser();
+    SupportEstimator estimator = new SupportEstimator();
+
+    @Test
+    public void dicePoolBounds() {
+        final SupportEstimate estimate = estimator.estimate(parse("3d6"));
+
+        assertThat(estimate.getMin()).isEqualTo(3.0);
+        assertThat(estimate.getMax()).isEqualTo(18.0);
+        assertThat(estimate.getSupport()).isEqualTo(16.0);
+    }
+
+    @Test
+    public void productBoundsMultiply() {
+        final SupportEstimate estimate = estimator.estimate(parse("2d6 * d4 - 1"));
+
+        assertThat(estimate.getMin()).isEqualTo(1.0);
+        assertThat(estimate.getMax()).isEqualTo(47.0);
+        assertThat(estimate.getSupport()).isEqualTo(44.0);
+    }
+
+    @Test
+    public void supportIsUpperBound() {
+        for (var script : new String[]{"2d6 + d8", "3d6H2 - d4", "d6 * d6 % 5", "let x <- d6 in x * 2d4", "(2d6) / d3"}) {
+            final Expression<?> expression = parse(script);
+
+            assertThat(estimator.estimate(expression).getSupport()).as(script)
+                                                                   .isGreaterThanOrEqualTo(expression.calculateResults().size());
+        }
+    }
+
+    @Test
+    public void comparisonHasBooleanSupport() {
+        assertThat(estimator.estimate(parse("1000d1000 > 3")).getSupport()).isEqualTo(2.0);
+    }
+
+    @Test
+    public void hugeProductIsRejected() {
+        final EvaluationBudget budget = new EvaluationBudget(60_000, 1024 * 1024 * 1024, Overrun.REJECT, 1000);
+
+        assertThatThrownBy(() -> budget.calculateResults(parse("1000d1000 * 1000d1000"), EvaluationMonitor.NONE))
+                .isInstanceOf(BudgetExceededException.class);
+    }
+
+    @Test
+    public void hugeProductIsSampled() {
+        final EvaluationBudget budget = new EvaluationBudget(60_000, 1024 * 1024 * 1024, Overrun.SAMPLE, 1000);
+
+        final EvaluationBudget.Result<?> result = budget.calculateResults(parse("500d20 * 500d20 > 1000"), EvaluationMonitor.NONE);
+
+        assertThat(result.isSampled()).isTrue();
+        assertThat(result.getResults().get(true).getProbability()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void smallStatementIsEvaluatedExactly() {
+        final EvaluationBudget budget = new EvaluationBudget(60_000, 1024 * 1024 * 1024, Overrun.SAMPLE, 1000);
+
+        final EvaluationBudget.Result<?> result = budget.calculateResults(parse("2d6 > 7"), EvaluationMonitor.NONE);
+
+        assertThat(result.isSampled()).isFalse();
+        assertThat(result.getResults().get(true).getProbability()).isCloseTo(15.0 / 36.0, offset(0.0001));
+    }
+
+    @Test
+    public void longVectorSumFitsAvailableMemory() {
+        final String script = "define coin = ['heads, 'tails]\n" + String.join(" + ", Collections.nCopies(40, "coin"));
+        final Expression<?> expression = parser.parse(script).getExpressions().get(0);
+
+        assertThat(estimator.estimate(expression).getSupport()).isGreaterThanOrEqualTo(41.0).isLessThan(10_000.0);
+        assertThat(EvaluationBudget.forAvailableMemory().calculateResults(expression, EvaluationMonitor.NONE).getResults()).hasSize(41);
+    }
+
+    @Test
+    public void defaultBudgetRejectsSmallButExpensiveStatements() {
+        final Expression<?> expression = parse("1000d1000 > 1000d1000");
+
+        assertThatThrownBy(() -> EvaluationBudget.forAvailableMemory().calculateResults(expression, EvaluationMonitor.NONE))
+                .isInstanceOf(BudgetExceededException.class);
+    }
+
+    @Test
+    public void vectorSupportIsUpperBound() {
+        for (var script : new String[]{"define die = ['a, 'b, 'c]; die + die + 2'a", "define die = ['a, 'b, 'c]; die + die - die", "define coin = ['heads, 'tails]; coin + coin - coin"}) {
+            final Expression<?> expression = parser.parse(script).getExpressions().get(0);
+
+            assertThat(estimator.estimate(expression).getSupport()).as(script)
+                                                                   .isGreaterThanOrEqualTo(expression.calculateResults().size());
+        }
+    }
+
+    private Expression<?> parse(String script) {
+        return parser.parse(script).getExpressions().get(0);
+    }
+}
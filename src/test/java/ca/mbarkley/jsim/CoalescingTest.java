@@ -0,0 +1,88 @@
+package ca.mbarkley.jsim;
+
+import ca.mbarkley.jsim.eval.CoalescingEvaluator;
+import ca.mbarkley.jsim.eval.EvaluationBudget;
+import ca.mbarkley.jsim.eval.Parser;
+import ca.mbarkley.jsim.model.EvaluationMonitor;
+import ca.mbarkley.jsim.model.Expression;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CoalescingTest {
+    private final Parser parser = new Parser();
+    private final CoalescingEvaluator coalescer = new CoalescingEvaluator();
+
+    @Test
+    public void concurrentEqualExpressionsShareOneEvaluation() throws Exception {
+        final int threads = 8;
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger evaluations = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<EvaluationBudget.Result<?>>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                // Parse separately so that requests share structurally equal, but not identical, expressions
+                final Expression<?> expression = parser.parse("4d6H3").getExpressions().get(0);
+                futures.add(executor.submit(() -> evaluate(expression, evaluations, started, release)));
+            }
+            started.await();
+            while (coalescer.getCoalesced() < threads - 1) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            final EvaluationBudget.Result<?> first = futures.get(0).get();
+            for (var future : futures) {
+                assertThat(future.get()).isSameAs(first);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(evaluations.get()).isEqualTo(1);
+        assertThat(coalescer.getCoalesced()).isEqualTo(threads - 1);
+        assertThat(coalescer.getCoalescingRatio()).isEqualTo((threads - 1) / (double) threads);
+    }
+
+    @Test
+    public void sequentialRequestsAreNotCoalesced() {
+        final Expression<?> expression = parser.parse("2d6").getExpressions().get(0);
+
+        coalescer.evaluate((Expression) expression, () -> EvaluationBudget.UNLIMITED.calculateResults(expression, EvaluationMonitor.NONE));
+        coalescer.evaluate((Expression) expression, () -> EvaluationBudget.UNLIMITED.calculateResults(expression, EvaluationMonitor.NONE));
+
+        assertThat(coalescer.getCoalesced()).isZero();
+    }
+
+    @Test
+    public void failuresArePropagatedAndNotRetained() {
+        final Expression<?> expression = parser.parse("2d6").getExpressions().get(0);
+
+        assertThatThrownBy(() -> coalescer.evaluate((Expression) expression, () -> {
+            throw new IllegalStateException("failed");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(coalescer.evaluate((Expression) expression, () -> EvaluationBudget.UNLIMITED.calculateResults(expression, EvaluationMonitor.NONE))).isNotNull();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private EvaluationBudget.Result<?> evaluate(Expression<?> expression, AtomicInteger evaluations, CountDownLatch started, CountDownLatch release) {
+        return coalescer.evaluate((Expression) expression, () -> {
+            evaluations.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return EvaluationBudget.UNLIMITED.calculateResults(expression, EvaluationMonitor.NONE);
+        });
+    }
+}
@@ -0,0 +1,88 @@
+package ca.mbarkley.jsim;
+
+import ca.mbarkley.jsim.cli.MatrixProcessor;
+import ca.mbarkley.jsim.eval.EvaluationBudget;
+import ca.mbarkley.jsim.eval.EvaluationException;
+import ca.mbarkley.jsim.eval.Parser;
+import ca.mbarkley.jsim.eval.Planner;
+import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.prob.Comparison;
+import ca.mbarkley.jsim.prob.ComparisonMatrix;
+import ca.mbarkley.jsim.prob.Distribution;
+import ca.mbarkley.jsim.prob.Event;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+
+public class ComparisonMatrixTest {
+    private final Parser parser = new Parser();
+
+    @Test
+    public void comparisonsMatchEvaluatedComparisons() {
+        final List<String> expressions = List.of("2d6", "d12 + 1", "3d4H2", "d20 - 4");
+        final List<Distribution<Integer>> distributions = List.of(distribution("2d6"), distribution("d12 + 1"), distribution("3d4H2"), distribution("d20 - 4"));
+        final ComparisonMatrix matrix = ComparisonMatrix.of(distributions);
+
+        for (int i = 0; i < expressions.size(); i++) {
+            for (int j = 0; j < expressions.size(); j++) {
+                final Comparison comparison = matrix.get(i, j);
+                final String pair = expressions.get(i) + " vs " + expressions.get(j);
+                assertThat(comparison.getGreater()).as(pair).isCloseTo(probabilityOfTrue(expressions.get(i) + " > " + expressions.get(j)), offset(1e-12));
+                assertThat(comparison.getEqual()).as(pair).isCloseTo(probabilityOfTrue(expressions.get(i) + " = " + expressions.get(j)), offset(1e-12));
+                assertThat(comparison.getLess()).as(pair).isCloseTo(probabilityOfTrue(expressions.get(i) + " < " + expressions.get(j)), offset(1e-12));
+            }
+        }
+    }
+
+    @Test
+    public void dominance() {
+        final Comparison shifted = distribution("d6 + 1").compare(distribution("d6"));
+        assertThat(shifted.isDominates()).isTrue();
+        assertThat(shifted.isDominated()).isFalse();
+
+        final Comparison reversed = distribution("d6").compare(distribution("d6 + 1"));
+        assertThat(reversed.isDominates()).isFalse();
+        assertThat(reversed.isDominated()).isTrue();
+
+        final Comparison crossing = distribution("d6").compare(distribution("2d3"));
+        assertThat(crossing.isDominates()).isFalse();
+        assertThat(crossing.isDominated()).isFalse();
+
+        final Comparison same = distribution("d6").compare(distribution("d6"));
+        assertThat(same.isDominates()).isFalse();
+        assertThat(same.isDominated()).isFalse();
+    }
+
+    @Test
+    public void matrixEvaluatesDistinctStatements() {
+        final String csv = new MatrixProcessor(EvaluationBudget.UNLIMITED, Planner.EXACT, true).compare("d6 + 1; d6; d6 + 1");
+
+        assertThat(csv.split("\n")).containsExactly("row,column,greater,equal,less,dominates",
+                                                    "\"1d6 + 1\",\"1d6 + 1\",0.416667,0.166667,0.416667,false",
+                                                    "\"1d6 + 1\",\"1d6\",0.583333,0.138889,0.277778,true",
+                                                    "\"1d6\",\"1d6 + 1\",0.277778,0.138889,0.583333,false",
+                                                    "\"1d6\",\"1d6\",0.416667,0.166667,0.416667,false");
+    }
+
+    @Test
+    public void matrixRejectsMixedTypes() {
+        assertThatThrownBy(() -> new MatrixProcessor(EvaluationBudget.UNLIMITED, Planner.EXACT, false).compare("d6; d6 > 3"))
+                .isInstanceOf(EvaluationException.InvalidTypeException.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Distribution<Integer> distribution(String expression) {
+        return Distribution.of(((Expression<Integer>) parser.parse(expression).getExpressions().get(0)).calculateResults());
+    }
+
+    @SuppressWarnings("unchecked")
+    private double probabilityOfTrue(String expression) {
+        final Map<Boolean, Event<Boolean>> results = ((Expression<Boolean>) parser.parse(expression).getExpressions().get(0)).calculateResults();
+        return results.containsKey(true) ? results.get(true).getProbability() : 0.0;
+    }
+}
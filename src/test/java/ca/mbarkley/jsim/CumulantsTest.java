@@ -0,0 +1,96 @@
+package ca.mbarkley.jsim;
+
+import ca.mbarkley.jsim.eval.CumulantAnalyzer;
+import ca.mbarkley.jsim.eval.EvaluationBudget;
+import ca.mbarkley.jsim.eval.Parser;
+import ca.mbarkley.jsim.eval.Planner;
+import ca.mbarkley.jsim.eval.StatisticsCalculator;
+import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.prob.Cumulants;
+import ca.mbarkley.jsim.prob.DenseDistribution;
+import ca.mbarkley.jsim.prob.Event;
+import org.junit.Test;
+
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.data.Offset.offset;
+
+public class CumulantsTest {
+    Parser parser = new Parser();
+    CumulantAnalyzer analyzer = new CumulantAnalyzer();
+
+    @Test
+    public void analyticCumulantsMatchExactDistribution() {
+        for (var script : new String[]{"3d6", "2d8 - d4 + 3", "3 * 2d6", "(d10 + d12) * 2 - 5"}) {
+            final Expression<?> expression = parse(script);
+            final Cumulants analytic = analyzer.analyze(expression).orElseThrow();
+            final Cumulants exact = Cumulants.of(integerEvents(expression));
+
+            assertThat(analytic.getMean()).as(script).isCloseTo(exact.getMean(), offset(1e-9));
+            assertThat(analytic.getVariance()).as(script).isCloseTo(exact.getVariance(), offset(1e-9));
+            assertThat(analytic.getK3()).as(script).isCloseTo(exact.getK3(), offset(1e-6));
+            assertThat(analytic.getK4()).as(script).isCloseTo(exact.getK4(), offset(1e-6));
+            assertThat(analytic.getSpan()).as(script).isEqualTo(exact.getSpan());
+        }
+    }
+
+    @Test
+    public void onlyIndependentSumsAreAnalyzed() {
+        assertThat(analyzer.analyze(parse("3d6H2 + 1"))).isEmpty();
+        assertThat(analyzer.analyze(parse("let x <- d6 in x + x"))).isEmpty();
+        assertThat(analyzer.analyze(parse("2d6 * d4"))).isEmpty();
+        assertThat(analyzer.analyze(parse("2d6 > 7"))).isEmpty();
+    }
+
+    @Test
+    public void edgeworthApproximationIsWithinItsErrorEstimate() {
+        final Cumulants cumulants = Cumulants.dicePool(200, 6);
+        final DenseDistribution approximation = cumulants.edgeworth(200, 1200);
+        final DenseDistribution exact = DenseDistribution.dicePool(200, 6);
+        final double error = cumulants.edgeworthError();
+
+        assertThat(error).isLessThan(1e-4);
+        for (int value = 200; value <= 1200; value++) {
+            assertThat(approximation.probabilityOf(value)).as("%d", value).isCloseTo(exact.probabilityOf(value), offset(error));
+        }
+    }
+
+    @Test
+    public void edgeworthApproximationRespectsLattice() {
+        final Cumulants cumulants = Cumulants.dicePool(100, 6).scale(3);
+
+        assertThat(cumulants.edgeworth(300, 1800).events().mapToInt(Event::getValue)).allMatch(value -> value % 3 == 0);
+    }
+
+    @Test
+    public void statisticsEvaluateOnlyWhatOperatorsNeed() {
+        final StatisticsCalculator statistics = new StatisticsCalculator(EvaluationBudget.UNLIMITED, Planner.EXACT);
+        final Expression<?> expression = parse("3d6H2 + 2d6 * 3 + 1000000d6");
+        final Cumulants exactPart = Cumulants.of(integerEvents(parse("3d6H2 + 2d6 * 3")));
+
+        final Cumulants result = statistics.calculate(expression);
+
+        assertThat(result.getMean()).isCloseTo(exactPart.getMean() + 3_500_000, offset(1e-6));
+        assertThat(result.getVariance()).isCloseTo(exactPart.getVariance() + 1_000_000 * 35.0 / 12.0, offset(1e-3));
+    }
+
+    @Test
+    public void statisticsOfBooleansCountTrueAsOne() {
+        final StatisticsCalculator statistics = new StatisticsCalculator(EvaluationBudget.UNLIMITED, Planner.EXACT);
+
+        final Cumulants result = statistics.calculate(parse("d6 > 4"));
+
+        assertThat(result.getMean()).isCloseTo(1.0 / 3.0, offset(1e-9));
+        assertThat(result.getVariance()).isCloseTo(2.0 / 9.0, offset(1e-9));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Stream<Event<Integer>> integerEvents(Expression<?> expression) {
+        return ((Expression<Integer>) expression).calculateResults().values().stream();
+    }
+
+    private Expression<?> parse(String script) {
+        return parser.parse(script).getExpressions().get(0);
+    }
+}
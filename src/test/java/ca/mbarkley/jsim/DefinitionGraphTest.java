@@ -0,0 +1,91 @@
+package ca.mbarkley.jsim;
+
+import ca.mbarkley.jsim.eval.Definition;
+import ca.mbarkley.jsim.eval.DefinitionGraph;
+import ca.mbarkley.jsim.eval.DefinitionGraph.Update;
+import ca.mbarkley.jsim.eval.Parser;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DefinitionGraphTest {
+    private final Parser parser = new Parser();
+    private final DefinitionGraph graph = new DefinitionGraph();
+
+    @Test
+    public void parserRecordsDefinitionReferences() {
+        final List<Definition> definitions = parser.parse("define die = d6\ndefine attack = let x <- die in x + 5").getDefinitions();
+
+        assertThat(definitions).extracting(Definition::getIdentifier).containsExactly("die", "attack");
+        assertThat(definitions.get(1).getSource()).isEqualTo("define attack = let x <- die in x + 5");
+        assertThat(definitions.get(1).getReferences()).contains("die");
+    }
+
+    @Test
+    public void redefinitionRecomputesTransitiveDependentsOnly() {
+        define("define die = d6\ndefine attack = die + 5\ndefine damage = attack * 2\ndefine other = d8");
+
+        final Update update = define("define die = d10");
+
+        assertThat(update.getRecomputed()).containsExactly("attack", "damage");
+        assertThat(update.getFailures()).isEmpty();
+        assertThat(graph.lookup("damage").orElseThrow().toString()).contains("1d10");
+        assertThat(evaluate("damage").keySet()).contains(30);
+    }
+
+    @Test
+    public void unchangedRedefinitionRecomputesNothing() {
+        define("define die = d6\ndefine attack = die + 5");
+
+        assertThat(define("define die = 1d6").getRecomputed()).isEmpty();
+        assertThat(graph.isCurrent(" define die = 1d6")).isTrue();
+        assertThat(graph.isCurrent("define die = d6")).isFalse();
+    }
+
+    @Test
+    public void dependentsThatNoLongerTypeCheckKeepTheirPreviousValue() {
+        define("define die = d6\ndefine attack = die + 5");
+
+        final Update update = define("define die = ['a, 'b]");
+
+        assertThat(update.getFailures()).containsOnlyKeys("attack");
+        assertThat(evaluate("attack").keySet()).contains(11);
+    }
+
+    @Test
+    public void selfReferentialDefinitionCanBeRedefined() {
+        define("define x = 1");
+        define("define x = x + 1");
+
+        final Update update = define("define x = 3");
+
+        assertThat(update.getFailures()).isEmpty();
+        assertThat(evaluate("x").keySet()).containsExactly(3);
+    }
+
+    @Test
+    public void removedDefinitionsLeaveScopeAndDependentsKeepTheirPreviousValue() {
+        define("define die = d6\ndefine attack = die + 5\ndefine other = d8");
+
+        final Update update = graph.remove(Set.of("die"));
+
+        assertThat(update.getFailures()).containsOnlyKeys("attack");
+        assertThat(graph.lookup("die")).isEmpty();
+        assertThat(graph.getScope().getDefinitions()).containsOnlyKeys("attack", "other");
+        assertThat(graph.isCurrent("define die = d6")).isFalse();
+        assertThat(evaluate("attack").keySet()).contains(11);
+    }
+
+    private Update define(String script) {
+        return graph.define(parser.parse(graph.getScope(), script).getDefinitions());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Object, ?> evaluate(String identifier) {
+        return (Map<Object, ?>) graph.lookup(identifier).orElseThrow().calculateResults();
+    }
+}
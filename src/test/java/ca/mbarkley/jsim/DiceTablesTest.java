@@ -0,0 +1,51 @@
+package ca.mbarkley.jsim;
+
+import ca.mbarkley.jsim.eval.Parser;
+import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.prob.DenseDistribution;
+import ca.mbarkley.jsim.prob.DiceTables;
+import ca.mbarkley.jsim.prob.Event;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.data.Offset.offset;
+
+public class DiceTablesTest {
+    private final Parser parser = new Parser();
+
+    @Test
+    public void tablesAreGeneratedForCommonPools() {
+        assertThat(DiceTables.dicePool(3, 6)).isPresent();
+        assertThat(DiceTables.keepHighest(4, 6, 3)).isPresent();
+        assertThat(DiceTables.keepLowest(2, 20, 1)).isPresent();
+        assertThat(DiceTables.dicePool(3, 7)).isEmpty();
+    }
+
+    @Test
+    public void tabledPoolsMatchConvolution() {
+        final double[] tabled = DiceTables.dicePool(7, 10).orElseThrow().toArray();
+        final double[] computed = DenseDistribution.dicePool(7, 10).toArray();
+
+        assertThat(tabled).containsExactly(computed, offset(1e-12));
+    }
+
+    @Test
+    public void keptDiceMatchEnumeration() {
+        // 5d7 is not in the tables, so these are enumerated
+        assertMatchesEnumeration(DenseDistribution.keepHighest(5, 7, 3), "5d7H3");
+        assertMatchesEnumeration(DenseDistribution.keepLowest(5, 7, 2), "5d7L2");
+        assertMatchesEnumeration(DiceTables.keepHighest(4, 6, 3).orElseThrow(), "4d6H3");
+    }
+
+    @SuppressWarnings("unchecked")
+    private void assertMatchesEnumeration(DenseDistribution distribution, String script) {
+        final Map<Integer, Event<Integer>> expected = ((Expression<Integer>) parser.parse(script).getExpressions().get(0)).calculateResults();
+
+        assertThat(distribution.getMin()).isEqualTo(expected.keySet().stream().mapToInt(n -> n).min().orElseThrow());
+        assertThat(distribution.getMax()).isEqualTo(expected.keySet().stream().mapToInt(n -> n).max().orElseThrow());
+        expected.forEach((value, event) -> assertThat(distribution.probabilityOf(value)).as(script + " " + value)
+                                                                                          .isCloseTo(event.getProbability(), offset(1e-12)));
+    }
+}
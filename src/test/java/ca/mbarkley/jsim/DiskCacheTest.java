@@ -0,0 +1,82 @@
+package ca.mbarkley.jsim;
+
+import ca.mbarkley.jsim.eval.DiskCache;
+import ca.mbarkley.jsim.eval.EvaluationBudget;
+import ca.mbarkley.jsim.eval.Parser;
+import ca.mbarkley.jsim.model.EvaluationMonitor;
+import ca.mbarkley.jsim.model.Expression;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DiskCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Parser parser = new Parser();
+
+    @Test
+    public void reusesResultsAcrossInstances() throws IOException {
+        final Path directory = folder.getRoot().toPath();
+        final AtomicInteger evaluations = new AtomicInteger();
+
+        final EvaluationBudget.Result<Integer> first = evaluate(new DiskCache(directory, 1024 * 1024), "4d6H3", evaluations);
+        final EvaluationBudget.Result<Integer> second = evaluate(new DiskCache(directory, 1024 * 1024), "4d6H3", evaluations);
+
+        assertThat(evaluations.get()).isEqualTo(1);
+        assertThat(second.getResults()).isEqualTo(first.getResults());
+        try (var files = Files.list(directory)) {
+            assertThat(files.count()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void distinguishesCustomDiceWithTheSameName() {
+        final DiskCache cache = new DiskCache(folder.getRoot().toPath(), 1024 * 1024);
+        final AtomicInteger evaluations = new AtomicInteger();
+
+        final EvaluationBudget.Result<Integer> first = evaluate(cache, "define die = [1, 2]; die", evaluations);
+        final EvaluationBudget.Result<Integer> second = evaluate(cache, "define die = [3, 4]; die", evaluations);
+
+        assertThat(evaluations.get()).isEqualTo(2);
+        assertThat(second.getResults()).containsOnlyKeys(3, 4);
+        assertThat(first.getResults()).containsOnlyKeys(1, 2);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedFilesWhenFull() throws IOException {
+        final Path directory = folder.getRoot().toPath();
+        final DiskCache cache = new DiskCache(directory, 1500);
+        final AtomicInteger evaluations = new AtomicInteger();
+
+        for (int sides = 4; sides <= 20; sides += 2) {
+            evaluate(cache, "3d" + sides, evaluations);
+        }
+
+        long totalBytes = 0;
+        try (var files = Files.list(directory)) {
+            for (var file : (Iterable<Path>) files::iterator) {
+                totalBytes += Files.size(file);
+            }
+        }
+        assertThat(totalBytes).isLessThanOrEqualTo(1500);
+        evaluate(cache, "3d20", evaluations);
+        assertThat(evaluations.get()).isEqualTo(9);
+    }
+
+    @SuppressWarnings("unchecked")
+    private EvaluationBudget.Result<Integer> evaluate(DiskCache cache, String script, AtomicInteger evaluations) {
+        final Expression<Integer> expression = (Expression<Integer>) parser.parse(script).getExpressions().get(0);
+        return cache.computeIfAbsent(expression, () -> {
+            evaluations.incrementAndGet();
+            return EvaluationBudget.UNLIMITED.calculateResults(expression, EvaluationMonitor.NONE);
+        });
+    }
+}
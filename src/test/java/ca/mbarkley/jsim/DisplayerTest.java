@@ -1,8 +1,14 @@
 package ca.mbarkley.jsim;
 
 import ca.mbarkley.jsim.cli.Displayer;
+import ca.mbarkley.jsim.cli.DistributionQueries;
+import ca.mbarkley.jsim.eval.EvaluationBudget;
 import ca.mbarkley.jsim.eval.Parser;
+import ca.mbarkley.jsim.eval.Planner;
+import ca.mbarkley.jsim.eval.Sweep;
+import ca.mbarkley.jsim.eval.SweepEvaluator;
 import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.prob.Distribution;
 import org.junit.Test;
 
 import java.util.List;
@@ -20,7 +26,7 @@ public class DisplayerTest {
         final String sortedHistogram = displayer.createSortedHistogram("2d6", stmts.get(0).calculateResults().values().stream());
         assertThat(sortedHistogram).isEqualTo(
                 "" +
-                        "--------------------------------------------------------- 2d6  ---------------------------------------------------------\n" +
+                        "----------------------------------------------- 2d6 (mean 7.00, sd 2.42) -----------------------------------------------\n" +
                         "2  |******************                                                                                             2.78%\n" +
                         "3  |************************************                                                                           5.56%\n" +
                         "4  |******************************************************                                                         8.33%\n" +
@@ -34,4 +40,27 @@ public class DisplayerTest {
                         "12 |******************                                                                                             2.78%\n"
         );
     }
-}
\ No newline at end of file
+
+    @Test
+    public void distributionQueries() {
+        final Distribution<?> distribution = Distribution.of(parser.parse("2d6").getExpressions().get(0).calculateResults());
+
+        assertThat(DistributionQueries.probability(distribution, " >= 10")).isEqualTo("P(>= 10) = 16.67%\n");
+        assertThat(DistributionQueries.probability(distribution, " 6..8")).isEqualTo("P(6..8) = 44.44%\n");
+        assertThat(DistributionQueries.quantiles(distribution, " 0.5 0.95")).isEqualTo("Q(0.5) = 7\nQ(0.95) = 11\n");
+    }
+
+    @Test
+    public void sweepTable() {
+        final Sweep sweep = parser.parse("for k in 0..3: 2d6 + k > 7").getSweeps().get(0);
+        final String table = new Displayer(() -> 40).createSweepTable(sweep, new SweepEvaluator(EvaluationBudget.UNLIMITED, Planner.EXACT).evaluate(sweep));
+
+        assertThat(table).isEqualTo("" +
+                                            "------ for k in 0..3: 2d6 + k > 7 ------\n" +
+                                            "k |  P(true)\n" +
+                                            "0 |   41.67%\n" +
+                                            "1 |   58.33%\n" +
+                                            "2 |   72.22%\n" +
+                                            "3 |   83.33%\n");
+    }
+}
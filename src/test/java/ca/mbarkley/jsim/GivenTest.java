@@ -0,0 +1,87 @@
+package ca.mbarkley.jsim;
+
+import ca.mbarkley.jsim.eval.EvaluationBudget;
+import ca.mbarkley.jsim.eval.EvaluationException;
+import ca.mbarkley.jsim.eval.EvaluationException.InvalidTypeException;
+import ca.mbarkley.jsim.eval.Parser;
+import ca.mbarkley.jsim.eval.Planner;
+import ca.mbarkley.jsim.eval.Sampler;
+import ca.mbarkley.jsim.model.EvaluationMonitor;
+import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.prob.Event;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+
+public class GivenTest {
+    private final Parser parser = new Parser();
+
+    @Test
+    public void givenConditionsOnBoundValue() {
+        final Map<Integer, Event<Integer>> results = evaluate("let x <- 2d6 in x given x > 7");
+
+        assertThat(results).containsOnlyKeys(8, 9, 10, 11, 12);
+        final double total = 15.0;
+        assertThat(results.get(8).getProbability()).isCloseTo(5 / total, offset(1e-12));
+        assertThat(results.get(10).getProbability()).isCloseTo(3 / total, offset(1e-12));
+        assertThat(results.get(12).getProbability()).isCloseTo(1 / total, offset(1e-12));
+    }
+
+    @Test
+    public void givenIndependentConditionDoesNotChangeResults() {
+        final Map<Integer, Event<Integer>> results = evaluate("d6 given d4 > 2");
+        final Map<Integer, Event<Integer>> expected = evaluate("d6");
+
+        assertThat(results.keySet()).isEqualTo(expected.keySet());
+        expected.forEach((value, event) -> assertThat(results.get(value).getProbability()).isCloseTo(event.getProbability(), offset(1e-12)));
+    }
+
+    @Test
+    public void givenConditionsInsideLargerExpressions() {
+        final Map<Integer, Event<Integer>> results = evaluate("(let x <- d6 in x given x >= 5) + 1");
+
+        assertThat(results).containsOnlyKeys(6, 7);
+        assertThat(results.get(6).getProbability()).isCloseTo(0.5, offset(1e-12));
+    }
+
+    @Test
+    public void givenHasLowestPrecedence() {
+        assertThat(parser.parse("let x <- d6 in x + 1 given x > 2 and x < 5").getExpressions().get(0).toString())
+                .isEqualTo("let x <- 1d6 in x + 1 given x > 2 and x < 5");
+        assertThat(evaluate("let x <- d6 in x + 1 given x > 2 and x < 5")).containsOnlyKeys(4, 5);
+    }
+
+    @Test
+    public void impossibleConditionIsAnError() {
+        assertThatThrownBy(() -> evaluate("let x <- d6 in x given x > 6")).isInstanceOf(EvaluationException.class)
+                                                                        .hasMessageContaining("never true");
+    }
+
+    @Test
+    public void nonBooleanConditionIsRejected() {
+        assertThatThrownBy(() -> parser.parse("d6 given d4")).isInstanceOf(InvalidTypeException.class);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void samplingRejectsSamplesWhereConditionIsFalse() {
+        final Expression<Integer> expression = (Expression<Integer>) parser.parse("let x <- 2d6 in x given x > 7").getExpressions().get(0);
+        final Map<Integer, Event<Integer>> sampled = new Sampler(100_000, new Random(7)).calculateResults(expression);
+
+        assertThat(sampled).containsOnlyKeys(8, 9, 10, 11, 12);
+        assertThat(sampled.get(8).getProbability()).isCloseTo(5 / 15.0, offset(0.01));
+        assertThat(sampled.get(12).getProbability()).isCloseTo(1 / 15.0, offset(0.01));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Integer, Event<Integer>> evaluate(String script) {
+        final Expression<Integer> expression = (Expression<Integer>) parser.parse(script).getExpressions().get(0);
+
+        return EvaluationBudget.UNLIMITED.calculateResults(expression, EvaluationMonitor.NONE, Planner.EXACT).getResults();
+    }
+}
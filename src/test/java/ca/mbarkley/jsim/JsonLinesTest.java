@@ -0,0 +1,108 @@
+package ca.mbarkley.jsim;
+
+import ca.mbarkley.jsim.cli.JsonLinesProcessor;
+import ca.mbarkley.jsim.cli.JsonRequestHandler;
+import ca.mbarkley.jsim.eval.CoalescingEvaluator;
+import ca.mbarkley.jsim.eval.EvaluationBudget;
+import ca.mbarkley.jsim.eval.Planner;
+import ca.mbarkley.jsim.eval.ResultCache;
+import ca.mbarkley.jsim.model.Expression;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class JsonLinesTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final JsonRequestHandler handler = new JsonRequestHandler(mapper, EvaluationBudget.UNLIMITED, Planner.EXACT);
+
+    @Test
+    public void evaluatesScriptWithDefinitions() {
+        final JsonNode response = handler.handle("{\"id\": \"a\", \"definitions\": [\"define x = d4\"], \"script\": \"x + 1; x > 2\"}");
+
+        assertThat(response.get("id").asText()).isEqualTo("a");
+        assertThat(response.has("error")).isFalse();
+        final JsonNode results = response.get("results");
+        assertThat(results).hasSize(2);
+        final JsonNode sum = results.get(0).get("distribution");
+        assertThat(sum).hasSize(4);
+        assertThat(sum.get(0).get("value").asInt()).isEqualTo(2);
+        assertThat(sum.get(0).get("probability").asDouble()).isCloseTo(0.25, within(1e-9));
+        final JsonNode comparison = results.get(1).get("distribution");
+        assertThat(comparison.get(1).get("value").isBoolean()).isTrue();
+        assertThat(comparison.get(1).get("probability").asDouble()).isCloseTo(0.5, within(1e-9));
+    }
+
+    @Test
+    public void reportsErrors() {
+        assertThat(handler.handle("{\"id\": 1, \"script\": \"2d6 +\"}").get("error").asText()).startsWith("Invalid symbol");
+        assertThat(handler.handle("{\"id\": 2, \"script\": \"y + 1\"}").has("error")).isTrue();
+        assertThat(handler.handle("not json").get("error").asText()).startsWith("Invalid request");
+        assertThat(handler.handle("{\"id\": 4, \"script\": ").get("id").asInt()).isEqualTo(4);
+        assertThat(handler.handle("{\"id\": 3, \"script\": \"d6; for k in 0..2: d6 + k\"}").get("error").asText()).startsWith("Only expressions");
+    }
+
+    @Test
+    public void errorsWithoutMessagesAreNamed() {
+        final JsonRequestHandler failing = new JsonRequestHandler(mapper, EvaluationBudget.UNLIMITED, Planner.EXACT, ResultCache.NONE, new CoalescingEvaluator() {
+            @Override
+            public <T extends Comparable<T>> EvaluationBudget.Result<T> evaluate(Expression<T> expression, Supplier<EvaluationBudget.Result<T>> evaluation) {
+                throw new IllegalStateException();
+            }
+        });
+
+        assertThat(failing.handle("{\"id\": 1, \"script\": \"d6\"}").get("error").asText()).isEqualTo("IllegalStateException");
+    }
+
+    @Test
+    public void writesResponsesInRequestOrder() throws IOException {
+        final StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            input.append(String.format("{\"id\": %d, \"script\": \"%dd6\"}\n", i, 1 + i % 7));
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new JsonLinesProcessor(handler, mapper, 4, true).process(new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8)),
+                                                                 new PrintStream(out, true, StandardCharsets.UTF_8));
+
+        final List<Integer> ids = new ArrayList<>();
+        for (var line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            ids.add(mapper.readTree(line).get("id").asInt());
+        }
+        assertThat(ids).hasSize(50).isSorted();
+    }
+
+    @Test(timeout = 30_000)
+    public void failingRequestsStillGetResponses() throws IOException {
+        final JsonRequestHandler failing = new JsonRequestHandler(mapper, EvaluationBudget.UNLIMITED, Planner.EXACT) {
+            @Override
+            public ObjectNode handle(String requestLine) {
+                throw new IllegalStateException();
+            }
+        };
+        final String input = "{\"id\": 1, \"script\": \"d6\"}\n".repeat(100);
+
+        for (var ordered : new boolean[]{false, true}) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new JsonLinesProcessor(failing, mapper, 1, ordered).process(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)),
+                                                                        new PrintStream(out, true, StandardCharsets.UTF_8));
+
+            final String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+            assertThat(lines).as("ordered = " + ordered).hasSize(100);
+            assertThat(mapper.readTree(lines[0]).get("error").asText()).isEqualTo("Internal error: IllegalStateException");
+            assertThat(mapper.readTree(lines[0]).get("id").asInt()).isEqualTo(1);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package ca.mbarkley.jsim;
 
+import ca.mbarkley.jsim.eval.Evaluation;
 import ca.mbarkley.jsim.eval.Parser;
 import ca.mbarkley.jsim.model.*;
 import ca.mbarkley.jsim.model.BooleanExpression.IntegerComparisons;
@@ -328,4 +329,32 @@ public class ParserTest {
                                               .isEqualTo(5);
         }
     }
+
+    @Test
+    public void newerKeywordsCanBeUsedAsIdentifiers() {
+        final String script = "define rounds = 3; define given = d6; define then = 1; let until <- given in until + rounds + then; " +
+                              "repeat repeat <- 0 then repeat + 1 until repeat >= rounds; for solve in 1..2: given + solve";
+        final Evaluation eval = parser.parse(script);
+
+        assertThat(eval.getExpressions()).hasSize(2);
+        assertThat(eval.getExpressions().get(0).toString()).isEqualTo("let until <- 1d6 in until + 3 + 1");
+        assertThat(eval.getSweeps().get(0).getVariable()).isEqualTo("solve");
+    }
+
+    @Test
+    public void warmUpScriptIsValid() {
+        Parser.warmUp();
+    }
+
+    @Test
+    public void parserIsReusableAfterFailure() {
+        try {
+            parser.parse("2d6 +");
+            fail("Expected parse failure");
+        } catch (RecognitionException re) {
+            // expected
+        }
+
+        assertThat(parser.parse("3d8").getExpressions()).containsExactly(new HomogeneousDicePool(3, 8));
+    }
 }
@@ -0,0 +1,64 @@
+package ca.mbarkley.jsim;
+
+import ca.mbarkley.jsim.eval.Evaluation;
+import ca.mbarkley.jsim.eval.Parser;
+import ca.mbarkley.jsim.util.PersistentMap;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PersistentMapTest {
+
+    @Test
+    public void manyInsertionsMatchHashMap() {
+        PersistentMap<Integer, Integer> map = PersistentMap.empty();
+        final Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            final int key = (i * 7919) % 5_000;
+            map = map.plus(key, i);
+            expected.put(key, i);
+        }
+
+        assertThat(map).isEqualTo(expected);
+        assertThat(map.size()).isEqualTo(5_000);
+        assertThat(map.get(5_001)).isNull();
+    }
+
+    @Test
+    public void previousVersionsAreUnchanged() {
+        final PersistentMap<String, Integer> first = PersistentMap.<String, Integer>empty().plus("a", 1);
+        final PersistentMap<String, Integer> second = first.plus("a", 2).plus("b", 3);
+
+        assertThat(first).isEqualTo(Map.of("a", 1));
+        assertThat(second).isEqualTo(Map.of("a", 2, "b", 3));
+    }
+
+    @Test
+    public void collidingHashes() {
+        // "Aa" and "BB" have the same hash code
+        final PersistentMap<String, Integer> map = PersistentMap.<String, Integer>empty()
+                                                                .plus("Aa", 1)
+                                                                .plus("BB", 2)
+                                                                .plus("Aa", 3)
+                                                                .plus("AaBB", 4)
+                                                                .plus("BBAa", 5);
+
+        assertThat(map).isEqualTo(Map.of("Aa", 3, "BB", 2, "AaBB", 4, "BBAa", 5));
+    }
+
+    @Test
+    public void scriptWithManyDefinitions() {
+        final String script = IntStream.range(0, 2_000)
+                                       .mapToObj(i -> i == 0 ? "define x0 = 1" : "define x" + i + " = x" + (i - 1))
+                                       .collect(Collectors.joining("\n"));
+        final Evaluation evaluation = new Parser().parse(script + "\nx1999 + 1");
+
+        assertThat(evaluation.getContext().getDefinitions()).hasSize(2_000);
+        assertThat((Map<Object, ?>) evaluation.getExpressions().get(0).calculateResults()).containsOnlyKeys(2);
+    }
+}
@@ -0,0 +1,103 @@
+package ca.mbarkley.jsim;
+
+import ca.mbarkley.jsim.eval.Parser;
+import ca.mbarkley.jsim.eval.Planner;
+import ca.mbarkley.jsim.eval.Planner.Plan;
+import ca.mbarkley.jsim.eval.Planner.Strategy;
+import ca.mbarkley.jsim.model.EvaluationMonitor;
+import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.model.RuntimeContext;
+import ca.mbarkley.jsim.prob.Event;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.data.Offset.offset;
+
+public class PlannerTest {
+    Parser parser = new Parser();
+
+    @Test
+    public void largePoolsAreConvolvedDensely() {
+        final Expression<?> expression = parse("50d20 + 10d6 - 3");
+        final Plan plan = Planner.EXACT.plan(expression);
+
+        assertThat(plan.getNodePlan(expression).getStrategy()).isEqualTo(Strategy.DENSE);
+        assertThat(plan.getNodePlan(expression.children().get(0)).getStrategy()).isEqualTo(Strategy.DENSE);
+        assertThat(plan.isApproximate()).isFalse();
+    }
+
+    @Test
+    public void denseResultsMatchSparseResults() {
+        for (var script : new String[]{"20d6 + 3d8 - 5", "let x <- d4 in 10d6 - x", "3d6 - 2d6 > 1"}) {
+            final Expression<?> expression = parse(script);
+            final Map<?, ? extends Event<?>> sparse = expression.calculateResults();
+            final Map<?, ? extends Event<?>> planned = calculateWithPlan(expression, Planner.EXACT);
+
+            assertThat(planned.keySet()).as(script).isEqualTo(sparse.keySet());
+            sparse.forEach((value, event) -> assertThat(planned.get(value).getProbability()).as(script + " " + value)
+                                                                                            .isCloseTo(event.getProbability(), offset(1e-9)));
+        }
+    }
+
+    @Test
+    public void exactPlannerNeverSamples() {
+        final Expression<?> expression = parse("100d6H50 + 2d6");
+
+        assertThat(Planner.EXACT.plan(expression).isApproximate()).isFalse();
+    }
+
+    @Test
+    public void tolerantPlannerSamplesExpensiveNodes() {
+        final Expression<?> expression = parse("100d6H50 + 2d6");
+        final Plan plan = new Planner(0.01).plan(expression);
+
+        assertThat(plan.getNodePlan(expression.children().get(0)).getStrategy()).isEqualTo(Strategy.SAMPLED);
+        assertThat(plan.explain(expression)).contains("HighDice [100d6H50] (strategy=sampled");
+    }
+
+    @Test
+    public void tolerantPlannerKeepsCheapNodesExact() {
+        final Expression<?> expression = parse("2d6 > 7");
+        final Plan plan = new Planner(0.01).plan(expression);
+
+        assertThat(plan.isApproximate()).isFalse();
+    }
+
+    @Test
+    public void hugePoolsAreApproximatedAboveThreshold() {
+        final Expression<?> expression = parse("1000000d6 + 5000d20 - 7");
+        final Plan plan = new Planner(0.0, 100_000).plan(expression);
+
+        assertThat(plan.getNodePlan(expression).getStrategy()).isEqualTo(Strategy.APPROXIMATE);
+        assertThat(plan.isApproximate()).isTrue();
+        assertThat(plan.describeApproximation()).startsWith("approximated, error < ");
+
+        final Map<?, ? extends Event<?>> results = calculateWithPlan(expression, new Planner(0.0, 100_000));
+        final double total = results.values().stream().mapToDouble(Event::getProbability).sum();
+        assertThat(total).isCloseTo(1.0, offset(1e-9));
+        assertThat(results.containsKey(3_552_493)).isTrue();
+    }
+
+    @Test
+    public void smallPoolsAreNotApproximated() {
+        final Expression<?> expression = parse("10d6 + 5");
+
+        assertThat(new Planner(0.0, 100_000).plan(expression).isApproximate()).isFalse();
+    }
+
+    @Test
+    public void defaultPlannerApproximatesOnlyHugeSupports() {
+        assertThat(Planner.DEFAULT.plan(parse("1000000d6")).isApproximate()).isTrue();
+        assertThat(Planner.DEFAULT.plan(parse("1000d100 + 7")).isApproximate()).isFalse();
+    }
+
+    private Map<?, ? extends Event<?>> calculateWithPlan(Expression<?> expression, Planner planner) {
+        return expression.calculateResults(RuntimeContext.create(EvaluationMonitor.NONE, planner.plan(expression)));
+    }
+
+    private Expression<?> parse(String script) {
+        return parser.parse(script).getExpressions().get(0);
+    }
+}
@@ -0,0 +1,53 @@
+package ca.mbarkley.jsim;
+
+import ca.mbarkley.jsim.eval.Parser;
+import ca.mbarkley.jsim.eval.Profiler;
+import ca.mbarkley.jsim.eval.Profiler.NodeStats;
+import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.model.Expression.BinaryOpExpression;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProfilerTest {
+    Parser parser = new Parser();
+
+    @Test
+    public void profiledResultsMatchUnprofiled() {
+        final Expression<?> expression = parser.parse("2d6 + 1 > 6").getExpressions().get(0);
+
+        assertThat(expression.calculateResults(new Profiler())).isEqualTo(expression.calculateResults());
+    }
+
+    @Test
+    public void recordsStatsForEveryNode() {
+        final BinaryOpExpression<?, ?> expression = (BinaryOpExpression<?, ?>) parser.parse("2d6 + 1 > 6").getExpressions().get(0);
+        final Profiler profiler = new Profiler();
+
+        expression.calculateResults(profiler);
+
+        final NodeStats root = profiler.getStats(expression);
+        assertThat(root.getCalls()).isEqualTo(1);
+        assertThat(root.getPeakSupport()).isEqualTo(2);
+
+        final NodeStats sum = profiler.getStats(expression.getLeft());
+        assertThat(sum.getPeakSupport()).isEqualTo(11);
+        assertThat(sum.getEventsAfterRegrouping()).isEqualTo(11);
+
+        assertThat(profiler.render(expression)).contains("BinaryOpExpression [2d6 + 1 > 6]")
+                                               .contains("-> HomogeneousDicePool [2d6]")
+                                               .doesNotContain("never executed");
+    }
+
+    @Test
+    public void letBodyIsProfiledPerBinding() {
+        final Expression<?> expression = parser.parse("let d <- d6 in d > 3").getExpressions().get(0);
+        final Profiler profiler = new Profiler();
+
+        expression.calculateResults(profiler);
+
+        final NodeStats body = profiler.getStats(expression.children().get(1));
+        assertThat(body.getCalls()).isEqualTo(6);
+        assertThat(body.getPeakSupport()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,96 @@
+package ca.mbarkley.jsim;
+
+import ca.mbarkley.jsim.eval.EvaluationBudget;
+import ca.mbarkley.jsim.eval.EvaluationException.CancelledException;
+import ca.mbarkley.jsim.eval.Parser;
+import ca.mbarkley.jsim.eval.Planner;
+import ca.mbarkley.jsim.eval.Profiler;
+import ca.mbarkley.jsim.eval.ProgressMonitor;
+import ca.mbarkley.jsim.eval.Sampler;
+import ca.mbarkley.jsim.model.EvaluationMonitor;
+import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.prob.Event;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ProgressMonitorTest {
+    Parser parser = new Parser();
+
+    @Test
+    public void countsEventsWithoutChangingResults() {
+        final Expression<?> expression = parser.parse("2d6 + 1 > 6").getExpressions().get(0);
+        final ProgressMonitor progress = new ProgressMonitor(new Profiler());
+
+        assertThat(expression.calculateResults(progress)).isEqualTo(expression.calculateResults());
+        assertThat(progress.getEvents()).isGreaterThan(0);
+        assertThat(progress.getLargestSupport()).isGreaterThanOrEqualTo(11);
+    }
+
+    @Test
+    public void cancelledMonitorStopsEvaluation() {
+        final Expression<?> expression = parser.parse("2d6").getExpressions().get(0);
+        final ProgressMonitor progress = new ProgressMonitor();
+        progress.cancel();
+
+        assertThatThrownBy(() -> expression.calculateResults(progress)).isInstanceOf(CancelledException.class);
+    }
+
+    @Test
+    public void cancellingFromAnotherThreadStopsSlowEvaluation() throws Exception {
+        final Expression<?> expression = parser.parse("let x <- 40d12 in x + 40d10").getExpressions().get(0);
+        final ProgressMonitor progress = new ProgressMonitor();
+        final CompletableFuture<Object> result = CompletableFuture.supplyAsync(() -> expression.calculateResults(progress));
+
+        while (progress.getEvents() == 0) {
+            Thread.sleep(1);
+        }
+        progress.cancel();
+
+        assertThatThrownBy(() -> result.get(10, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+                                                                    .hasCauseInstanceOf(CancelledException.class);
+    }
+
+    @Test
+    public void interruptStopsSampling() {
+        final Expression<?> expression = parser.parse("10d6").getExpressions().get(0);
+        Thread.currentThread().interrupt();
+        try {
+            assertThatThrownBy(() -> new Sampler(1_000_000).calculateResults(expression)).isInstanceOf(CancelledException.class);
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void denseAndRepeatedEvaluationsReachCheckpoints() {
+        for (var script : new String[]{"500d6", "(200d6) + (300d8)", "rounds x <- 0 then x + d6 until x >= 1000"}) {
+            final Expression<?> expression = parser.parse(script).getExpressions().get(0);
+            final AtomicInteger checkpoints = new AtomicInteger();
+            final EvaluationMonitor cancelAtCheckpoint = new EvaluationMonitor() {
+                @Override
+                public <T extends Comparable<T>> Stream<Event<T>> monitor(Expression<T> expression, Supplier<Stream<Event<T>>> events) {
+                    return events.get();
+                }
+
+                @Override
+                public void checkpoint() {
+                    if (checkpoints.incrementAndGet() == 3) {
+                        throw new CancelledException();
+                    }
+                }
+            };
+
+            assertThatThrownBy(() -> EvaluationBudget.UNLIMITED.calculateResults(expression, cancelAtCheckpoint, Planner.EXACT)).as(script)
+                                                                                                                              .isInstanceOf(CancelledException.class);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package ca.mbarkley.jsim;
+
+import ca.mbarkley.jsim.eval.EvaluationBudget;
+import ca.mbarkley.jsim.eval.Parser;
+import ca.mbarkley.jsim.eval.Planner;
+import ca.mbarkley.jsim.eval.ProgressiveEvaluation;
+import ca.mbarkley.jsim.eval.ProgressiveEvaluation.Estimate;
+import ca.mbarkley.jsim.model.EvaluationMonitor;
+import ca.mbarkley.jsim.model.Expression;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class ProgressiveEvaluationTest {
+    Parser parser = new Parser();
+
+    @Test
+    public void finishesWithExactResult() throws Exception {
+        final Expression<Integer> expression = parse("2d6 + 1");
+
+        final Estimate<Integer> result = ProgressiveEvaluation.start(expression, EvaluationBudget.UNLIMITED, Planner.EXACT)
+                                                              .getResult()
+                                                              .get(10, TimeUnit.SECONDS);
+
+        assertThat(result.isExact()).isTrue();
+        assertThat(result.getStandardError()).isZero();
+        assertThat(result.getResults()).isEqualTo(expression.calculateResults());
+    }
+
+    @Test
+    public void fallsBackToSamplesWhenExactEvaluationExceedsBudget() throws Exception {
+        final Expression<Integer> expression = parse("3d6");
+        final EvaluationBudget budget = new EvaluationBudget(0, Long.MAX_VALUE, EvaluationBudget.Overrun.REJECT, 200_000);
+
+        final Estimate<Integer> result = ProgressiveEvaluation.start(expression, budget, Planner.EXACT)
+                                                              .getResult()
+                                                              .get(30, TimeUnit.SECONDS);
+
+        assertThat(result.isExact()).isFalse();
+        assertThat(result.getSamples()).isGreaterThanOrEqualTo(200_000);
+        assertThat(result.getResults().get(10).getProbability()).isCloseTo(27.0 / 216.0, within(0.01));
+    }
+
+    @Test
+    public void publishesEveryEstimateToSubscribers() throws Exception {
+        final Expression<Integer> expression = parse("3d6");
+        // Exact evaluation is rejected, so every estimate is sampled and sampling runs until the budget's sample count
+        final EvaluationBudget budget = new EvaluationBudget(0, Long.MAX_VALUE, EvaluationBudget.Overrun.REJECT, 200_000);
+        final List<Estimate<Integer>> estimates = new CopyOnWriteArrayList<>();
+        final CompletableFuture<Void> completed = new CompletableFuture<>();
+
+        final ProgressiveEvaluation<Integer> evaluation = ProgressiveEvaluation.start(expression, budget, Planner.EXACT, EvaluationMonitor.NONE, new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(Estimate<Integer> item) {
+                estimates.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                completed.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                completed.complete(null);
+            }
+        });
+        completed.get(30, TimeUnit.SECONDS);
+
+        final Estimate<Integer> result = evaluation.getResult().get();
+        assertThat(result.isExact()).isFalse();
+        assertThat(estimates).isNotEmpty()
+                             .allMatch(estimate -> !estimate.isExact());
+        assertThat(estimates.get(0).getSamples()).isEqualTo(1_000);
+        assertThat(estimates.get(estimates.size() - 1)).isEqualTo(result);
+    }
+
+    @Test
+    public void cancellingInterruptsExactEvaluation() throws Exception {
+        final Expression<Integer> expression = parse("let x <- 30d12 in x + 1d100 * 1d100");
+        final ProgressiveEvaluation<Integer> evaluation = ProgressiveEvaluation.start(expression, EvaluationBudget.UNLIMITED, Planner.EXACT);
+        while (evaluation.getLatest() == null) {
+            Thread.sleep(1);
+        }
+
+        evaluation.cancel();
+
+        evaluation.getResult().get(10, TimeUnit.SECONDS);
+        final long deadline = System.currentTimeMillis() + 10_000;
+        while (exactThreadIsAlive() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(exactThreadIsAlive()).isFalse();
+    }
+
+    private static boolean exactThreadIsAlive() {
+        return Thread.getAllStackTraces().keySet().stream().anyMatch(thread -> thread.getName().equals("jsim-exact") && thread.isAlive());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Expression<Integer> parse(String expression) {
+        return (Expression<Integer>) parser.parse(expression).getExpressions().get(0);
+    }
+}
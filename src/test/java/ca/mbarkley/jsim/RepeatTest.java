@@ -0,0 +1,91 @@
+package ca.mbarkley.jsim;
+
+import ca.mbarkley.jsim.eval.EvaluationBudget;
+import ca.mbarkley.jsim.eval.EvaluationException;
+import ca.mbarkley.jsim.eval.EvaluationException.InvalidTypeException;
+import ca.mbarkley.jsim.eval.Parser;
+import ca.mbarkley.jsim.eval.Planner;
+import ca.mbarkley.jsim.eval.Sampler;
+import ca.mbarkley.jsim.model.EvaluationMonitor;
+import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.prob.Event;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+
+public class RepeatTest {
+    private final Parser parser = new Parser();
+
+    @Test
+    public void roundsCountsStepsUntilConditionIsTrue() {
+        final Map<Integer, Event<Integer>> results = evaluate("rounds x <- 0 then x + d6 until x >= 3");
+
+        assertThat(results).containsOnlyKeys(1, 2, 3);
+        assertThat(results.get(1).getProbability()).isCloseTo(24 / 36.0, offset(1e-12));
+        assertThat(results.get(2).getProbability()).isCloseTo(11 / 36.0, offset(1e-12));
+        assertThat(results.get(3).getProbability()).isCloseTo(1 / 36.0, offset(1e-12));
+    }
+
+    @Test
+    public void repeatGivesFinalState() {
+        final Map<Integer, Event<Integer>> results = evaluate("repeat x <- 0 then x + d6 until x >= 3");
+
+        assertThat(results).containsOnlyKeys(3, 4, 5, 6, 7, 8);
+        // 3 is reached by 3, 1 + 2, 2 + 1 or 1 + 1 + 1
+        assertThat(results.get(3).getProbability()).isCloseTo(1 / 6.0 + 2 / 36.0 + 1 / 216.0, offset(1e-12));
+        // 8 is reached by 2 + 6 or 1 + 1 + 6
+        assertThat(results.get(8).getProbability()).isCloseTo(1 / 36.0 + 1 / 216.0, offset(1e-12));
+    }
+
+    @Test
+    public void conditionIsCheckedBeforeFirstStep() {
+        assertThat(evaluate("rounds x <- 5 then x - 1 until x <= 5")).containsOnlyKeys(0);
+        assertThat(evaluate("repeat x <- d4 then x - 1 until x <= 2")).containsOnlyKeys(1, 2);
+    }
+
+    @Test
+    public void randomConditionsStopWithGeometricTail() {
+        final Map<Integer, Event<Integer>> results = evaluate("rounds x <- 0 then x until d6 = 6");
+
+        assertThat(results.get(0).getProbability()).isCloseTo(1 / 6.0, offset(1e-12));
+        assertThat(results.get(3).getProbability()).isCloseTo(Math.pow(5 / 6.0, 3) / 6.0, offset(1e-12));
+        assertThat(results.values().stream().mapToDouble(Event::getProbability).sum()).isCloseTo(1.0, offset(1e-9));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void samplingAgreesWithExactEvaluation() {
+        final String script = "rounds hp <- 40 then hp - 2d6 until hp <= 0";
+        final Expression<Integer> expression = (Expression<Integer>) parser.parse(script).getExpressions().get(0);
+        final Map<Integer, Event<Integer>> exact = evaluate(script);
+        final Map<Integer, Event<Integer>> sampled = new Sampler(100_000, new Random(11)).calculateResults(expression);
+
+        exact.forEach((rounds, event) -> assertThat(sampled.getOrDefault(rounds, new Event<>(rounds, 0.0)).getProbability())
+                .as("rounds = " + rounds)
+                .isCloseTo(event.getProbability(), offset(0.01)));
+    }
+
+    @Test
+    public void processThatNeverStopsIsAnError() {
+        assertThatThrownBy(() -> evaluate("repeat x <- 0 then x until x > 0")).isInstanceOf(EvaluationException.class)
+                                                                            .hasMessageContaining("has not stopped");
+    }
+
+    @Test
+    public void stateMustBeInteger() {
+        assertThatThrownBy(() -> parser.parse("repeat x <- 0 then x > 1 until x > 0")).isInstanceOf(InvalidTypeException.class);
+        assertThatThrownBy(() -> parser.parse("repeat x <- 0 then x + 1 until x")).isInstanceOf(InvalidTypeException.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Integer, Event<Integer>> evaluate(String script) {
+        final Expression<Integer> expression = (Expression<Integer>) parser.parse(script).getExpressions().get(0);
+
+        return EvaluationBudget.UNLIMITED.calculateResults(expression, EvaluationMonitor.NONE, Planner.EXACT).getResults();
+    }
+}
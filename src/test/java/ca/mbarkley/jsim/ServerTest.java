@@ -0,0 +1,84 @@
+package ca.mbarkley.jsim;
+
+import ca.mbarkley.jsim.cli.JsonRequestHandler;
+import ca.mbarkley.jsim.cli.Server;
+import ca.mbarkley.jsim.eval.CoalescingEvaluator;
+import ca.mbarkley.jsim.eval.EvaluationBudget;
+import ca.mbarkley.jsim.eval.Planner;
+import ca.mbarkley.jsim.eval.ResultCache;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ServerTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private Server server;
+
+    @Before
+    public void startServer() throws IOException {
+        final ResultCache cache = new ResultCache(16);
+        final CoalescingEvaluator coalescer = new CoalescingEvaluator();
+        server = new Server(0, 2, mapper, new JsonRequestHandler(mapper, EvaluationBudget.UNLIMITED, Planner.EXACT, cache, coalescer), cache, coalescer);
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    public void sharesDefinitionsAndResultsBetweenRequests() throws IOException {
+        final JsonNode defined = request("POST", "/definitions", "{\"definitions\": \"define x = d4\"}");
+        assertThat(defined.get("definitions").get(0).asText()).isEqualTo("x");
+
+        final JsonNode first = request("POST", "/evaluate", "{\"id\": 1, \"script\": \"x + 1\"}");
+        final JsonNode second = request("POST", "/evaluate", "{\"id\": 2, \"script\": \"d4 + 1\"}");
+        assertThat(first.get("results")).isEqualTo(second.get("results"));
+
+        final JsonNode metrics = request("GET", "/metrics", null);
+        assertThat(metrics.get("requests").asLong()).isEqualTo(3);
+        assertThat(metrics.get("cache").get("hits").asLong()).isEqualTo(1);
+        assertThat(metrics.get("cache").get("misses").asLong()).isEqualTo(1);
+    }
+
+    @Test
+    public void reportsErrorsWithBadRequestStatus() throws IOException {
+        final HttpURLConnection connection = connect("POST", "/evaluate", "{\"script\": \"2d6 +\"}");
+
+        assertThat(connection.getResponseCode()).isEqualTo(400);
+    }
+
+    private JsonNode request(String method, String path, String body) throws IOException {
+        final HttpURLConnection connection = connect(method, path, body);
+        assertThat(connection.getResponseCode()).isEqualTo(200);
+        try (InputStream in = connection.getInputStream()) {
+            return mapper.readTree(IOUtils.toString(in, StandardCharsets.UTF_8));
+        }
+    }
+
+    private HttpURLConnection connect(String method, String path, String body) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        return connection;
+    }
+}
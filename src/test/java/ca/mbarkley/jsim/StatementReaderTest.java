@@ -0,0 +1,42 @@
+package ca.mbarkley.jsim;
+
+import ca.mbarkley.jsim.cli.StatementReader;
+import ca.mbarkley.jsim.cli.StatementReader.Statement;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StatementReaderTest {
+
+    @Test
+    public void splitsOnNewlinesAndSemicolons() throws IOException {
+        final List<Statement> statements = readAll("define x = d4\nx + 1; x > 2\n");
+
+        assertThat(statements).containsExactly(new Statement("define x = d4", 1, 0),
+                                               new Statement("x + 1", 2, 0),
+                                               new Statement(" x > 2", 2, 6));
+    }
+
+    @Test
+    public void skipsBlankStatements() throws IOException {
+        final List<Statement> statements = readAll("\n\n  ;2d6;;\n\nd8");
+
+        assertThat(statements).containsExactly(new Statement("2d6", 3, 3),
+                                               new Statement("d8", 5, 0));
+    }
+
+    private List<Statement> readAll(String script) throws IOException {
+        final StatementReader reader = new StatementReader(new StringReader(script));
+        final List<Statement> statements = new ArrayList<>();
+        for (var next = reader.next(); next.isPresent(); next = reader.next()) {
+            statements.add(next.get());
+        }
+
+        return statements;
+    }
+}
@@ -0,0 +1,121 @@
+package ca.mbarkley.jsim;
+
+import ca.mbarkley.jsim.eval.EvaluationBudget;
+import ca.mbarkley.jsim.eval.EvaluationException;
+import ca.mbarkley.jsim.eval.ExpressionStatement;
+import ca.mbarkley.jsim.eval.Parser;
+import ca.mbarkley.jsim.eval.Planner;
+import ca.mbarkley.jsim.eval.Solve;
+import ca.mbarkley.jsim.eval.Statement;
+import ca.mbarkley.jsim.eval.Sweep;
+import ca.mbarkley.jsim.eval.SweepEvaluator;
+import ca.mbarkley.jsim.model.EvaluationMonitor;
+import ca.mbarkley.jsim.model.Expression;
+import ca.mbarkley.jsim.prob.Event;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+
+public class SweepTest {
+    private final Parser parser = new Parser();
+    private final SweepEvaluator evaluator = new SweepEvaluator(EvaluationBudget.UNLIMITED, Planner.EXACT);
+
+    @Test
+    public void sweepBindsVariableToEachValue() {
+        final Sweep sweep = parser.parse("for k in 0..3: 2d6 + k > 7").getSweeps().get(0);
+
+        assertThat(sweep.toString()).isEqualTo("for k in 0..3: 2d6 + k > 7");
+        assertThat(sweep.getExpressions()).containsExactly(parser.parse("2d6 + 0 > 7").getExpressions().get(0),
+                                                           parser.parse("2d6 + 1 > 7").getExpressions().get(0),
+                                                           parser.parse("2d6 + 2 > 7").getExpressions().get(0),
+                                                           parser.parse("2d6 + 3 > 7").getExpressions().get(0));
+    }
+
+    @Test
+    public void sweptVariableCanCountDice() {
+        final Sweep sweep = parser.parse("for n in 1..3: nd6H1").getSweeps().get(0);
+
+        assertThat(sweep.getExpressions()).containsExactly(parser.parse("1d6H1").getExpressions().get(0),
+                                                           parser.parse("2d6H1").getExpressions().get(0),
+                                                           parser.parse("3d6H1").getExpressions().get(0));
+    }
+
+    @Test
+    public void onlySweptVariableCountsDice() {
+        assertThatThrownBy(() -> parser.parse("define a = 2; ad6")).isInstanceOf(EvaluationException.UndefinedIdentifierException.class);
+        assertThatThrownBy(() -> parser.parse("define a = 2; for n in 1..3: ad6 + n")).isInstanceOf(EvaluationException.UndefinedIdentifierException.class);
+        assertThat(parser.parse("for n in 1..2: let x <- d4 in x + nd6").getSweeps().get(0).bind(2).toString()).isEqualTo("let x <- 1d4 in x + 2d6");
+    }
+
+    @Test
+    public void sharedEvaluationMatchesIndependentEvaluation() {
+        for (var script : List.of("for k in 0..6: 3d6 + d4 - k >= 10", "for n in 0..12: nd6 >= 20", "for n in 1..8: let x <- nd4 in x + x")) {
+            final Sweep sweep = parser.parse(script).getSweeps().get(0);
+            final List<EvaluationBudget.Result<?>> results = evaluator.evaluate(sweep);
+
+            for (int i = 0; i < results.size(); i++) {
+                final Expression<?> expression = sweep.getExpressions().get(i);
+                final var expected = EvaluationBudget.UNLIMITED.calculateResults(expression, EvaluationMonitor.NONE, Planner.EXACT).getResults();
+                final var actual = results.get(i).getResults();
+                assertThat(actual.keySet()).as(expression.toString()).isEqualTo(expected.keySet());
+                expected.forEach((value, event) -> assertThat(actual.get(value).getProbability()).as(expression + " = " + value)
+                                                                                                 .isCloseTo(event.getProbability(), offset(1e-12)));
+            }
+        }
+    }
+
+    @Test
+    public void emptyRangeIsRejected() {
+        assertThatThrownBy(() -> parser.parse("for k in 3..2: d6 + k")).isInstanceOf(EvaluationException.class);
+    }
+
+    @Test
+    public void solveFindsSmallestValueReachingTarget() {
+        final Solve solve = parser.parse("solve n in 1..30: nd6 >= 30 @ 90%").getSolves().get(0);
+        final Solve.Solution solution = evaluator.solve(solve).orElseThrow();
+
+        assertThat(solution.getValue()).isEqualTo(11);
+        assertThat(probabilityOfTrue("10d6 >= 30")).isLessThan(0.9);
+        assertThat(solution.getProbability()).isCloseTo(probabilityOfTrue("11d6 >= 30"), offset(1e-12))
+                                             .isGreaterThanOrEqualTo(0.9);
+    }
+
+    @Test
+    public void solveReportsWhenNoValueReachesTarget() {
+        assertThat(evaluator.solve(parser.parse("solve k in 0..3: d20 + k >= 20 @ 50%").getSolves().get(0))).isEmpty();
+        assertThat(evaluator.solve(parser.parse("solve k in 0..20: d20 + k >= 20 @ 100%").getSolves().get(0)).orElseThrow().getValue()).isEqualTo(19);
+    }
+
+    @Test(timeout = 10_000)
+    public void solveOnlyParsesCandidatesItReaches() {
+        final Solve solve = parser.parse("solve n in 1..1000000: nd6 >= 10 @ 50%").getSolves().get(0);
+
+        assertThat(evaluator.solve(solve).orElseThrow().getValue()).isEqualTo(3);
+    }
+
+    @Test
+    public void solveNeedsBooleanExpression() {
+        assertThatThrownBy(() -> parser.parse("solve n in 1..3: nd6 @ 50%")).isInstanceOf(EvaluationException.InvalidTypeException.class);
+    }
+
+    @Test
+    public void statementsKeepScriptOrder() {
+        final List<Statement> statements = parser.parse("solve n in 1..3: nd6 > 6 @ 50%; 2d6 > 11; for k in 0..2: d6 + k > 3; d4").getStatements();
+
+        assertThat(statements).hasSize(4);
+        assertThat(statements.get(0)).isInstanceOf(Solve.class);
+        assertThat(statements.get(1)).isEqualTo(new ExpressionStatement(parser.parse("2d6 > 11").getExpressions().get(0)));
+        assertThat(statements.get(2)).isInstanceOf(Sweep.class);
+        assertThat(statements.get(3)).isEqualTo(new ExpressionStatement(parser.parse("d4").getExpressions().get(0)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private double probabilityOfTrue(String expression) {
+        return ((Map<Boolean, Event<Boolean>>) (Map<?, ?>) parser.parse(expression).getExpressions().get(0).calculateResults()).get(true).getProbability();
+    }
+}